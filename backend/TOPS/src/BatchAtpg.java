@@ -0,0 +1,443 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Test set generation for a whole fault list, with TOPS running on several target faults at once.
+ * <p>
+ * Worker threads, each with its own {@link TopsAtpg}, take target faults in list order and skip any
+ * fault already detected. The calling thread collects the test cubes they produce, fills their
+ * unassigned inputs, and fault-simulates them in blocks of up to 64 patterns with the
+ * pattern-parallel simulator against every fault still undetected. A fault detected by any pattern
+ * is dropped before a worker targets it. A block is simulated as soon as the workers have nothing
+ * more queued, so that dropping keeps pace with generation, and a cube whose target was detected
+ * while it waited is discarded rather than added to the test set.
+ * <p>
+ * The backtrack limit bounds the time spent on any one fault. Once TOPS has been through the
+ * whole list, the faults it aborted and no pattern has detected go to the workers'
+ * {@link SatAtpg}s, grouped by {@link SatAtpg#outputCone output cone}: a worker takes one cone at a
+ * time, so its solver keeps what it learns within the cone and starts afresh for the next. SAT
+ * either finds a test or proves the fault redundant within its conflict limit; a fault beyond both
+ * limits is reported as aborted unless a later pattern happens to detect it.
+ */
+public class BatchAtpg {
+    public enum Fill { ZERO, ONE, RANDOM }
+
+    private static final int PENDING = 0;
+    private static final int DETECTED = 1;
+    private static final int REDUNDANT = 2;
+    private static final int ABORTED = 3;
+    private static final long POLL_MILLIS = 10;
+
+    private CompiledCircuit compiled;
+    private int parallelism;
+    private int backtrackLimit = TopsAtpg.DEFAULT_BACKTRACK_LIMIT;
+    private int satConflictLimit = SatAtpg.DEFAULT_CONFLICT_LIMIT;
+    private Fill fill = Fill.RANDOM;
+    private long seed = 1;
+
+    public BatchAtpg(CompiledCircuit compiled) {
+        this(compiled, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param compiled    The compiled circuit.
+     * @param parallelism Number of worker threads generating tests.
+     */
+    public BatchAtpg(CompiledCircuit compiled, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.compiled = compiled;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the number of backtracks after which a target fault is aborted.
+     */
+    public void setBacktrackLimit(int backtrackLimit) {
+        if (backtrackLimit < 0) {
+            throw new IllegalArgumentException("Backtrack limit must not be negative: " + backtrackLimit);
+        }
+        this.backtrackLimit = backtrackLimit;
+    }
+
+    /**
+     * Sets the conflict limit of the SAT fallback for faults TOPS aborts, or 0 to turn it off.
+     */
+    public void setSatConflictLimit(int satConflictLimit) {
+        if (satConflictLimit < 0) {
+            throw new IllegalArgumentException("Conflict limit must not be negative: " + satConflictLimit);
+        }
+        this.satConflictLimit = satConflictLimit;
+    }
+
+    /**
+     * Sets how unassigned inputs of a test cube are filled, and the seed of random fill.
+     */
+    public void setFill(Fill fill, long seed) {
+        this.fill = Objects.requireNonNull(fill);
+        this.seed = seed;
+    }
+
+    /**
+     * Generates a test set for a fault list.
+     *
+     * @param faults The fault list.
+     * @return The patterns and the status of every fault.
+     */
+    public Result generate(List<Fault> faults) {
+        long startTime = System.currentTimeMillis();
+        FaultIndex index = new FaultIndex(compiled, faults);
+        AtomicIntegerArray state = new AtomicIntegerArray(index.size());
+        BlockingQueue<Cube> cubes = new LinkedBlockingQueue<>();
+        AtomicInteger nextFault = new AtomicInteger();
+        AtomicInteger nextCone = new AtomicInteger();
+        AtomicInteger workersLeft = new AtomicInteger(parallelism);
+        Phaser topsDone = new Phaser(parallelism);
+
+        // Build the shared netlist analyses once, before the workers race for them
+        List<TopsAtpg> generators = new ArrayList<>(parallelism);
+        List<SatAtpg> solvers = new ArrayList<>(parallelism);
+        for (int w = 0; w < parallelism; w++) {
+            TopsAtpg atpg = new TopsAtpg(compiled);
+            atpg.setBacktrackLimit(backtrackLimit);
+            generators.add(atpg);
+            SatAtpg sat = null;
+            if (satConflictLimit > 0) {
+                sat = new SatAtpg(compiled);
+                sat.setConflictLimit(satConflictLimit);
+            }
+            solvers.add(sat);
+        }
+        int[][] cones = satConeGroups(index, solvers.get(0));
+
+        Result result = new Result(new PatternSet(compiled.getPrimaryInputNames()));
+        try (ExecutorService pool = Executors.newFixedThreadPool(parallelism)) {
+            List<Future<?>> workers = new ArrayList<>(parallelism);
+            for (int w = 0; w < parallelism; w++) {
+                TopsAtpg atpg = generators.get(w);
+                SatAtpg sat = solvers.get(w);
+                workers.add(pool.submit(() -> {
+                    boolean arrived = false;
+                    try {
+                        target(atpg, index, state, nextFault, cubes);
+                        // The SAT groups are complete only when every worker is through the list
+                        arrived = true;
+                        topsDone.arriveAndAwaitAdvance();
+                        if (sat != null) {
+                            fallBack(sat, index, state, cones, nextCone, cubes);
+                        }
+                    } finally {
+                        if (!arrived) {
+                            topsDone.arriveAndDeregister();
+                        }
+                        workersLeft.decrementAndGet();
+                    }
+                }));
+            }
+            simulate(index, state, cubes, workersLeft, result);
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Test generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Test generation failed", e.getCause());
+        }
+
+        for (int f = 0; f < index.size(); f++) {
+            switch (state.get(f)) {
+                case DETECTED -> result.detected.add(index.fault(f));
+                case REDUNDANT -> result.redundant.add(index.fault(f));
+                default -> result.aborted.add(index.fault(f));
+            }
+        }
+        for (TopsAtpg atpg : generators) {
+            result.backtracks += atpg.getTotalBacktracks();
+        }
+        for (SatAtpg sat : solvers) {
+            if (sat != null) {
+                result.satConflicts += sat.getTotalConflicts();
+            }
+        }
+        result.faultCount = index.size();
+        result.timeMillis = System.currentTimeMillis() - startTime;
+        return result;
+    }
+
+    /**
+     * Worker loop: generates tests with TOPS for the faults nobody has detected yet.
+     */
+    private static void target(TopsAtpg atpg, FaultIndex index, AtomicIntegerArray state,
+                               AtomicInteger nextFault, BlockingQueue<Cube> cubes) {
+        int f;
+        while ((f = nextFault.getAndIncrement()) < index.size()) {
+            if (state.get(f) != PENDING) {
+                continue;
+            }
+            TopsAtpg.Result test = atpg.generate(index.line[f], index.gate[f], index.stuckAt[f]);
+            switch (test.getStatus()) {
+                case DETECTED -> cubes.add(new Cube(f, test.getPattern()));
+                case REDUNDANT -> state.compareAndSet(f, PENDING, REDUNDANT);
+                case ABORTED -> state.compareAndSet(f, PENDING, ABORTED);
+            }
+        }
+    }
+
+    /**
+     * Worker loop: takes one output cone at a time and runs SAT on its faults TOPS aborted and no
+     * pattern has detected since.
+     */
+    private static void fallBack(SatAtpg sat, FaultIndex index, AtomicIntegerArray state, int[][] cones,
+                                 AtomicInteger nextCone, BlockingQueue<Cube> cubes) {
+        int c;
+        while ((c = nextCone.getAndIncrement()) < cones.length) {
+            for (int f : cones[c]) {
+                if (state.get(f) != ABORTED) {
+                    continue;
+                }
+                TopsAtpg.Result test = sat.generate(index.line[f], index.gate[f], index.stuckAt[f]);
+                switch (test.getStatus()) {
+                    case DETECTED -> cubes.add(new Cube(f, test.getPattern()));
+                    case REDUNDANT -> state.compareAndSet(f, ABORTED, REDUNDANT);
+                    case ABORTED -> {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups the faults by SAT output cone, in output order. Faults reaching no output are left
+     * out; TOPS proves them redundant.
+     */
+    private static int[][] satConeGroups(FaultIndex index, SatAtpg sat) {
+        if (sat == null) {
+            return new int[0][];
+        }
+        Map<Integer, List<Integer>> byCone = new TreeMap<>();
+        for (int f = 0; f < index.size(); f++) {
+            int cone = sat.outputCone(index.line[f], index.gate[f]);
+            if (cone >= 0) {
+                byCone.computeIfAbsent(cone, k -> new ArrayList<>()).add(f);
+            }
+        }
+        return byCone.values().stream()
+                .map(group -> group.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * Coordinator loop: fills and simulates the queued cubes until every worker is done.
+     */
+    private void simulate(FaultIndex index, AtomicIntegerArray state, BlockingQueue<Cube> cubes,
+                          AtomicInteger workersLeft, Result result) throws InterruptedException {
+        PatternParallelFaultSimulator simulator = new PatternParallelFaultSimulator(compiled);
+        Random random = new Random(seed);
+        boolean[] detected = new boolean[index.size()];
+        int[] remaining = PatternParallelFaultSimulator.allFaults(index);
+        int[] simulated = new int[remaining.length];
+        int remainingCount = remaining.length;
+        long[] words = new long[compiled.getNumInputs()];
+        List<Cube> block = new ArrayList<>(64);
+
+        // A worker queues its last cube before it counts itself out
+        while (workersLeft.get() > 0 || !cubes.isEmpty()) {
+            Cube first = cubes.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                continue;
+            }
+            block.clear();
+            block.add(first);
+            cubes.drainTo(block, 63);
+            // A cube whose target an earlier pattern already detects was generated too late
+            block.removeIf(cube -> state.get(cube.fault) == DETECTED);
+            if (block.isEmpty()) {
+                continue;
+            }
+
+            Arrays.fill(words, 0L);
+            for (int p = 0; p < block.size(); p++) {
+                byte[] cube = block.get(p).pattern;
+                for (int i = 0; i < cube.length; i++) {
+                    if (fillValue(cube[i], random) != 0) {
+                        words[i] |= 1L << p;
+                    }
+                }
+            }
+
+            // Faults proven redundant need not be simulated any more
+            int kept = 0;
+            for (int k = 0; k < remainingCount; k++) {
+                if (state.get(remaining[k]) != REDUNDANT) {
+                    remaining[kept++] = remaining[k];
+                }
+            }
+            System.arraycopy(remaining, 0, simulated, 0, kept);
+            int simulatedCount = kept;
+            remainingCount = simulator.simulateBlock(index, words, block.size(), remaining, kept, detected);
+            for (int k = 0; k < simulatedCount; k++) {
+                if (detected[simulated[k]]) {
+                    state.set(simulated[k], DETECTED);
+                }
+            }
+            for (Cube cube : block) {
+                if (!detected[cube.fault]) {
+                    throw new IllegalStateException("Generated test does not detect " + index.fault(cube.fault));
+                }
+            }
+            result.patterns.addWords(words, block.size());
+        }
+    }
+
+    private int fillValue(byte value, Random random) {
+        if (value != TopsAtpg.UNASSIGNED) {
+            return value;
+        }
+        return switch (fill) {
+            case ZERO -> 0;
+            case ONE -> 1;
+            case RANDOM -> random.nextInt(2);
+        };
+    }
+
+    /**
+     * A test cube and the fault it was generated for.
+     */
+    private record Cube(int fault, byte[] pattern) {
+    }
+
+    /**
+     * Outcome of a batch run.
+     */
+    public static class Result {
+        private PatternSet patterns;
+        private List<Fault> detected = new ArrayList<>();
+        private List<Fault> redundant = new ArrayList<>();
+        private List<Fault> aborted = new ArrayList<>();
+        private int faultCount;
+        private long backtracks;
+        private long satConflicts;
+        private long timeMillis;
+
+        Result(PatternSet patterns) {
+            this.patterns = patterns;
+        }
+
+        /**
+         * Returns the filled test patterns, in the order they were simulated.
+         */
+        public PatternSet getPatterns() {
+            return patterns;
+        }
+
+        public List<Fault> getDetectedFaults() {
+            return detected;
+        }
+
+        /**
+         * Returns the faults proven untestable.
+         */
+        public List<Fault> getRedundantFaults() {
+            return redundant;
+        }
+
+        /**
+         * Returns the faults given up at the backtrack limit and detected by no pattern.
+         */
+        public List<Fault> getAbortedFaults() {
+            return aborted;
+        }
+
+        /**
+         * Returns the detected fraction of the fault list.
+         */
+        public double getCoverage() {
+            return faultCount == 0 ? 1.0 : (double) detected.size() / faultCount;
+        }
+
+        /**
+         * Returns the fraction of the fault list resolved either way: detected or proven redundant.
+         */
+        public double getEfficiency() {
+            return faultCount == 0 ? 1.0 : (double) (detected.size() + redundant.size()) / faultCount;
+        }
+
+        public long getBacktracks() {
+            return backtracks;
+        }
+
+        /**
+         * Returns the conflicts of the SAT fallback over all faults passed to it.
+         */
+        public long getSatConflicts() {
+            return satConflicts;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /**
+         * Returns the statistics of the run as text lines, as they are stored with the patterns.
+         */
+        public List<String> getSummary() {
+            return List.of(
+                    String.format("Faults: %d, patterns: %d, time: %d ms", faultCount, patterns.size(), timeMillis),
+                    String.format("Detected: %d, redundant: %d, aborted: %d, backtracks: %d, SAT conflicts: %d",
+                            detected.size(), redundant.size(), aborted.size(), backtracks, satConflicts),
+                    String.format(Locale.ROOT, "Fault coverage: %.2f%%, ATPG efficiency: %.2f%%",
+                            getCoverage() * 100, getEfficiency() * 100));
+        }
+
+        /**
+         * Writes the patterns to a pattern file, with the summary as header comments.
+         *
+         * @param path   The pattern file.
+         * @param format Text or binary encoding.
+         */
+        public void write(Path path, PatternWriter.Format format) throws IOException {
+            try (PatternWriter writer = new PatternWriter(path, patterns.getInputNames(), format, getSummary())) {
+                writer.write(patterns);
+            }
+        }
+    }
+
+    /**
+     * Generates a test set for the collapsed fault list of a benchmark and writes it as a binary
+     * pattern file, with the coverage and efficiency of the run in its header.
+     * <p>
+     * Arguments: {@code <bench file> [pattern file] [threads] [backtrack limit]}.
+     */
+    public static void main(String[] args) {
+        try {
+            String benchFilePath = args.length > 0 ? args[0] : "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c7522.bench";
+            Path patternFile = Path.of(args.length > 1 ? args[1] : benchFilePath + ".pat");
+            CompiledCircuit compiled = NetlistCache.load(benchFilePath);
+            NetlistCache.loadLearning(benchFilePath, compiled);
+
+            List<Fault> faults = new FaultListBuilder(compiled).buildCollapsed();
+            BatchAtpg atpg = args.length > 2
+                    ? new BatchAtpg(compiled, Integer.parseInt(args[2]))
+                    : new BatchAtpg(compiled);
+            if (args.length > 3) {
+                atpg.setBacktrackLimit(Integer.parseInt(args[3]));
+            }
+            Result result = atpg.generate(faults);
+            result.write(patternFile, PatternWriter.Format.BINARY);
+
+            System.out.println(benchFilePath + " on " + atpg.parallelism + " threads");
+            for (String line : result.getSummary()) {
+                System.out.println(line);
+            }
+            System.out.println("Patterns written to " + patternFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,426 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming parser from a {@code .bench} file straight to a {@link CompiledCircuit}.
+ * <p>
+ * The file is memory-mapped and tokenized byte by byte; no {@code String} is created per line or
+ * per token. Signal names are interned into a dense symbol table (open addressing over the name
+ * bytes) and gates are appended to flat CSR arrays in one pass. A signal may be used before the
+ * gate driving it is declared; its symbol is created on first use and the drivers are resolved in
+ * a fixup step once the whole file has been read, when the netlist is levelized.
+ */
+public class BenchParser {
+    private static final byte[][] GATE_NAMES = {
+            "AND".getBytes(StandardCharsets.US_ASCII), "NAND".getBytes(StandardCharsets.US_ASCII),
+            "OR".getBytes(StandardCharsets.US_ASCII), "NOR".getBytes(StandardCharsets.US_ASCII),
+            "XOR".getBytes(StandardCharsets.US_ASCII), "XNOR".getBytes(StandardCharsets.US_ASCII),
+            "BUF".getBytes(StandardCharsets.US_ASCII), "BUFF".getBytes(StandardCharsets.US_ASCII),
+            "NOT".getBytes(StandardCharsets.US_ASCII)};
+    private static final byte[] GATE_OPCODES = {
+            CompiledCircuit.AND, CompiledCircuit.NAND, CompiledCircuit.OR, CompiledCircuit.NOR,
+            CompiledCircuit.XOR, CompiledCircuit.XNOR, CompiledCircuit.BUF, CompiledCircuit.BUF,
+            CompiledCircuit.NOT};
+    private static final byte[] INPUT = "INPUT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OUTPUT = "OUTPUT".getBytes(StandardCharsets.US_ASCII);
+
+    // Input being parsed
+    private MappedByteBuffer buffer;
+    private int pos;
+    private int limit;
+    private int lineNumber;
+    private int tokenStart;
+    private int tokenEnd;
+
+    // Symbol table: name bytes in a pool, open-addressed slots holding symbol + 1
+    private byte[] namePool = new byte[1 << 16];
+    private int namePoolSize;
+    private int[] nameStart = new int[1024];
+    private int[] nameLength = new int[1024];
+    private int[] nameHash = new int[1024];
+    private int numSymbols;
+    private int[] slots = new int[2048];
+
+    // Netlist in symbol space
+    private IntList inputs = new IntList();
+    private IntList outputs = new IntList();
+    private IntList gateOutput = new IntList();
+    private IntList faninOffset = new IntList();
+    private IntList fanin = new IntList();
+    private byte[] types = new byte[1024];
+
+    // Statistics of the last parse
+    private long bytesParsed;
+    private long parseNanos;
+
+    /**
+     * Parses and compiles a {@code .bench} file.
+     *
+     * @param filePath Path of the netlist.
+     * @return The compiled circuit.
+     * @throws IOException If the file cannot be read or is larger than 2 GB.
+     */
+    public static CompiledCircuit parse(String filePath) throws IOException {
+        return new BenchParser().parseFile(Path.of(filePath));
+    }
+
+    /**
+     * Parses and compiles a {@code .bench} file, recording the throughput.
+     */
+    public CompiledCircuit parseFile(Path path) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Netlist too large to map: " + path + " (" + size + " bytes)");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            limit = (int) size;
+        }
+        reset();
+        parseStatements();
+        CompiledCircuit compiled = CompiledCircuit.compile(symbolNames(), inputs.toArray(), outputs.toArray(),
+                Arrays.copyOf(types, gateOutput.size()), gateOutput.toArray(), faninOffset.toArray(), fanin.toArray());
+        buffer = null;
+        bytesParsed = limit;
+        parseNanos = System.nanoTime() - start;
+        return compiled;
+    }
+
+    public long getBytesParsed() {
+        return bytesParsed;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Returns the throughput of the last parse in MB/s, compilation included.
+     */
+    public double getThroughput() {
+        return parseNanos == 0 ? 0 : (bytesParsed / 1e6) / (parseNanos / 1e9);
+    }
+
+    private void reset() {
+        pos = 0;
+        lineNumber = 1;
+        namePoolSize = 0;
+        numSymbols = 0;
+        Arrays.fill(slots, 0);
+        inputs.clear();
+        outputs.clear();
+        gateOutput.clear();
+        faninOffset.clear();
+        fanin.clear();
+        faninOffset.add(0);
+    }
+
+    private void parseStatements() {
+        while (skipBlank()) {
+            readName();
+            int first = symbolOrKeyword();
+            byte next = expectAny();
+            if (next == '(' && first < 0) {
+                // INPUT(x) or OUTPUT(x)
+                readName();
+                int symbol = intern();
+                expect((byte) ')');
+                (first == -1 ? inputs : outputs).add(symbol);
+            } else if (next == '=' && first >= 0) {
+                int output = first;
+                readName();
+                byte type = gateType();
+                expect((byte) '(');
+                parseFanin();
+                addGate(type, output);
+            } else {
+                throw error("Invalid statement");
+            }
+        }
+    }
+
+    private void parseFanin() {
+        while (true) {
+            readName();
+            fanin.add(intern());
+            byte separator = expectAny();
+            if (separator == ')') {
+                return;
+            }
+            if (separator != ',') {
+                throw error("Expected ',' or ')' in gate inputs");
+            }
+        }
+    }
+
+    private void addGate(byte type, int output) {
+        int g = gateOutput.size();
+        if (g == types.length) {
+            types = Arrays.copyOf(types, g * 2);
+        }
+        types[g] = type;
+        gateOutput.add(output);
+        faninOffset.add(fanin.size());
+    }
+
+    /**
+     * Interns the current token unless it is the INPUT or OUTPUT keyword.
+     *
+     * @return The symbol, -1 for INPUT or -2 for OUTPUT.
+     */
+    private int symbolOrKeyword() {
+        int save = pos;
+        skipSpaces();
+        boolean paren = pos < limit && buffer.get(pos) == '(';
+        pos = save;
+        if (paren && tokenEquals(INPUT)) {
+            return -1;
+        }
+        if (paren && tokenEquals(OUTPUT)) {
+            return -2;
+        }
+        return intern();
+    }
+
+    private byte gateType() {
+        for (int i = 0; i < GATE_NAMES.length; i++) {
+            if (tokenEqualsIgnoreCase(GATE_NAMES[i])) {
+                return GATE_OPCODES[i];
+            }
+        }
+        throw error("Unknown gate type: " + tokenString());
+    }
+
+    // ---- Tokenizer ----
+
+    /**
+     * Skips whitespace, blank lines and comments.
+     *
+     * @return False at the end of the input.
+     */
+    private boolean skipBlank() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '#') {
+                while (pos < limit && buffer.get(pos) != '\n') {
+                    pos++;
+                }
+            } else if (b == '\n') {
+                lineNumber++;
+                pos++;
+            } else if (b == ' ' || b == '\t' || b == '\r') {
+                pos++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Reads a signal or keyword token into {@code tokenStart .. tokenEnd}.
+     */
+    private void readName() {
+        skipSpaces();
+        tokenStart = pos;
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '(' || b == ')' || b == ','
+                    || b == '=' || b == '#') {
+                break;
+            }
+            pos++;
+        }
+        tokenEnd = pos;
+        if (tokenEnd == tokenStart) {
+            throw error("Expected a name");
+        }
+    }
+
+    private byte expectAny() {
+        skipSpaces();
+        if (pos >= limit) {
+            throw error("Unexpected end of file");
+        }
+        return buffer.get(pos++);
+    }
+
+    private void expect(byte b) {
+        if (expectAny() != b) {
+            throw error("Expected '" + (char) b + "'");
+        }
+    }
+
+    private boolean tokenEquals(byte[] word) {
+        if (tokenEnd - tokenStart != word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (buffer.get(tokenStart + i) != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean tokenEqualsIgnoreCase(byte[] word) {
+        if (tokenEnd - tokenStart != word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            // Upper-case ASCII letters by clearing bit 5
+            if ((buffer.get(tokenStart + i) & ~0x20) != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String tokenString() {
+        byte[] bytes = new byte[tokenEnd - tokenStart];
+        buffer.get(tokenStart, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at line " + lineNumber);
+    }
+
+    // ---- Symbol table ----
+
+    /**
+     * Returns the symbol of the current token, creating it on first use.
+     */
+    private int intern() {
+        int length = tokenEnd - tokenStart;
+        int hash = 0x811C9DC5; // FNV-1a
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            hash = (hash ^ buffer.get(i)) * 0x01000193;
+        }
+
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                int symbol = addSymbol(hash, length);
+                slots[slot] = symbol + 1;
+                if (numSymbols * 2 > slots.length) {
+                    rehash();
+                }
+                return symbol;
+            }
+            int s = entry - 1;
+            if (nameHash[s] == hash && nameLength[s] == length && sameName(s)) {
+                return s;
+            }
+        }
+    }
+
+    private boolean sameName(int symbol) {
+        int start = nameStart[symbol];
+        for (int i = 0; i < nameLength[symbol]; i++) {
+            if (namePool[start + i] != buffer.get(tokenStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addSymbol(int hash, int length) {
+        if (numSymbols == nameStart.length) {
+            nameStart = Arrays.copyOf(nameStart, numSymbols * 2);
+            nameLength = Arrays.copyOf(nameLength, numSymbols * 2);
+            nameHash = Arrays.copyOf(nameHash, numSymbols * 2);
+        }
+        if (namePoolSize + length > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, namePoolSize + length));
+        }
+        buffer.get(tokenStart, namePool, namePoolSize, length);
+        nameStart[numSymbols] = namePoolSize;
+        nameLength[numSymbols] = length;
+        nameHash[numSymbols] = hash;
+        namePoolSize += length;
+        return numSymbols++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int s = 0; s < numSymbols; s++) {
+            int slot = nameHash[s] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = s + 1;
+        }
+    }
+
+    private String[] symbolNames() {
+        String[] names = new String[numSymbols];
+        for (int s = 0; s < numSymbols; s++) {
+            names[s] = new String(namePool, nameStart[s], nameLength[s], StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    /**
+     * Growable list of primitive ints.
+     */
+    private static class IntList {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Parses every file given and reports its throughput.
+     */
+    public static void main(String[] args) {
+        try {
+            String[] benchmarkFiles = args.length > 0 ? args : new String[]{"C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c7522.bench"};
+            BenchParser parser = new BenchParser();
+            for (String benchmarkFile : benchmarkFiles) {
+                CompiledCircuit compiled = parser.parseFile(Path.of(benchmarkFile));
+                System.out.printf("%s: %s, %d bytes in %.2f ms, %.1f MB/s%n",
+                        benchmarkFile, compiled, parser.getBytesParsed(), parser.getParseNanos() / 1e6,
+                        parser.getThroughput());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.util.*;
+
+public class BenchmarkBytecodeEvaluator {
+    private static final int BLOCKS = 20000;    // 64-vector blocks per good-machine run
+    private static final int FAULT_BLOCKS = 64; // 64-vector blocks per fault re-simulation run
+    private static final int ROUNDS = 5;        // the first rounds warm up the JIT
+
+    public static void main(String[] args) {
+        try {
+            String benchDir = "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\";
+            String[] benches = args.length > 0 ? args : new String[]{"c499.bench", "c3540.bench", "c7522.bench"};
+            for (String bench : benches) {
+                String benchFilePath = bench.contains("/") || bench.contains("\\") ? bench : benchDir + bench;
+                CompiledCircuit compiled = NetlistCache.load(benchFilePath);
+
+                long startTime = System.nanoTime();
+                boolean generated = compiled.setBytecodeEvaluation(true);
+                long generateTime = System.nanoTime() - startTime;
+                compiled.setBytecodeEvaluation(false);
+                System.out.printf("%s: %d gates, generated in %.1f ms: %s%n", compiled, compiled.getNumGates(),
+                        generateTime / 1e6, generated ? "yes" : "no, interpreted only");
+                if (!generated) {
+                    continue;
+                }
+
+                // Both engines must agree on every line before timing means anything
+                verify(compiled);
+
+                FaultIndex index = new FaultIndex(compiled, new FaultListBuilder(compiled).buildCollapsed());
+                for (int round = 0; round < ROUNDS; round++) {
+                    boolean last = round == ROUNDS - 1;
+                    for (boolean bytecode : new boolean[]{false, true}) {
+                        compiled.setBytecodeEvaluation(bytecode);
+                        double goodTime = timeGoodMachine(compiled);
+                        double faultTime = timeFaultResimulation(compiled, index);
+                        if (last) {
+                            System.out.printf("  %-11s good machine %.2f ns/gate-block, faults %.2f ms/block%n",
+                                    bytecode ? "Bytecode:" : "Interpreted:", goodTime, faultTime);
+                        }
+                    }
+                }
+                compiled.setBytecodeEvaluation(false);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Simulates random blocks and returns the time per gate and block in nanoseconds.
+     */
+    private static double timeGoodMachine(CompiledCircuit compiled) {
+        long[] values = new long[compiled.getNumLines()];
+        Random random = new Random(7);
+        long startTime = System.nanoTime();
+        for (int block = 0; block < BLOCKS; block++) {
+            for (int i = 0; i < compiled.getNumInputs(); i++) {
+                values[i] = random.nextLong();
+            }
+            compiled.simulateWords(values);
+        }
+        return (double) (System.nanoTime() - startTime) / BLOCKS / compiled.getNumGates();
+    }
+
+    /**
+     * Re-simulates every fault site from its gate onward, as PPSFP does per block, and returns the
+     * time per block in milliseconds. Each site is inverted rather than stuck, so every fault is
+     * active and the cost does not depend on the patterns.
+     */
+    private static double timeFaultResimulation(CompiledCircuit compiled, FaultIndex index) {
+        long[] good = new long[compiled.getNumLines()];
+        long[] faulty = new long[compiled.getNumLines()];
+        Random random = new Random(5);
+        long startTime = System.nanoTime();
+        for (int block = 0; block < FAULT_BLOCKS; block++) {
+            for (int i = 0; i < compiled.getNumInputs(); i++) {
+                good[i] = random.nextLong();
+            }
+            compiled.simulateWords(good);
+            for (int f = 0; f < index.size(); f++) {
+                int line = index.line[f];
+                int firstGate = compiled.driver(line) + 1;
+                System.arraycopy(good, 0, faulty, 0, compiled.getNumInputs() + firstGate);
+                faulty[line] = ~good[line];
+                compiled.simulateWords(faulty, firstGate);
+            }
+        }
+        return (System.nanoTime() - startTime) / 1e6 / FAULT_BLOCKS;
+    }
+
+    /**
+     * Compares both engines over random blocks, from the first gate and from gates inside chunks.
+     */
+    private static void verify(CompiledCircuit compiled) {
+        Random random = new Random(3);
+        long[] interpreted = new long[compiled.getNumLines()];
+        long[] bytecode = new long[compiled.getNumLines()];
+        for (int trial = 0; trial < 200; trial++) {
+            int firstGate = trial % 2 == 0 ? 0 : random.nextInt(compiled.getNumGates());
+            for (int l = 0; l < interpreted.length; l++) {
+                interpreted[l] = random.nextLong();
+            }
+            System.arraycopy(interpreted, 0, bytecode, 0, interpreted.length);
+            compiled.setBytecodeEvaluation(false);
+            compiled.simulateWords(interpreted, firstGate);
+            compiled.setBytecodeEvaluation(true);
+            compiled.simulateWords(bytecode, firstGate);
+            if (!Arrays.equals(interpreted, bytecode)) {
+                throw new IllegalStateException("Generated code disagrees with the interpreter from gate " + firstGate);
+            }
+        }
+        compiled.setBytecodeEvaluation(false);
+    }
+}
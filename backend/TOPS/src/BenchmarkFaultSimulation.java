@@ -2,36 +2,31 @@ import java.util.*;
 
 public class BenchmarkFaultSimulation {
     public static void main(String[] args) {
-        Circuit circuit = new Circuit();
         try {
-            // Parse the benchmark file
+            // Load the levelized netlist, from its binary cache when up to date
             String benchFilePath = "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c499.bench";
-            circuit.parseBenchFile(benchFilePath);
+            CompiledCircuit compiled = NetlistCache.load(benchFilePath);
 
-            // Initialize FaultSimulator with the parsed circuit
-            FaultSimulator faultSimulator = new FaultSimulator(circuit);
+            // Initialize FaultSimulator with the compiled circuit
+            FaultSimulator faultSimulator = new FaultSimulator(compiled);
 
-            // Define all faults (stuck-at-0 and stuck-at-1)
-            List<Fault> faults = new ArrayList<>();
+            // Define the collapsed stem and fanout-branch faults
+            FaultListBuilder faultListBuilder = new FaultListBuilder(compiled);
+            List<Fault> faults = faultListBuilder.buildCollapsed();
+            System.out.printf("Faults: %d of %d after collapsing (ratio %.2f)%n",
+                    faults.size(), faultListBuilder.getUncollapsedCount(), faultListBuilder.getCollapseRatio());
 
-            // Add faults for each gate's output
-            for (Gate gate : circuit.gates) {
-                String node = gate.getOutput().getId();
-                faults.add(new Fault(node, 0)); // Stuck-at-0
-                faults.add(new Fault(node, 1)); // Stuck-at-1
-            }
+            // Generate exhaustive test vectors based on input signal names
+            PatternSet patterns = generateAllTestVectors(compiled.getPrimaryInputNames());
 
-            // Add faults for each primary output
-            for (String output : circuit.primaryOutputs) {
-                faults.add(new Fault(output, 0)); // Stuck-at-0
-                faults.add(new Fault(output, 1)); // Stuck-at-1
-            }
+            // Validate that the pattern header covers all required inputs
+            validateInputs(patterns, new HashSet<>(compiled.getPrimaryInputNames()));
 
-            // Generate exhaustive test vectors based on input signal names
-            List<Map<String, Integer>> testVectors = generateAllTestVectors(new HashSet<>(circuit.primaryInputs));
+            // The map-based engines take one map per vector
+            List<Map<String, Integer>> testVectors = patterns.toMaps();
 
-            // Validate that all test vectors include all required inputs
-            validateInputs(testVectors, new HashSet<>(circuit.primaryInputs));
+            // Share one good-machine response cache between all engines
+            GoodMachineCache goodMachineCache = faultSimulator.getGoodMachineCache(testVectors);
 
             // Perform serial fault simulation
             long startTime = System.currentTimeMillis();
@@ -43,11 +38,51 @@ public class BenchmarkFaultSimulation {
             double parallelCoverage = faultSimulator.parallelFaultSimulation(faults, testVectors);
             long parallelTime = System.currentTimeMillis() - startTime;
 
+            // Perform pattern-parallel (PPSFP) fault simulation
+            PatternParallelFaultSimulator patternParallel = new PatternParallelFaultSimulator(compiled);
+            startTime = System.currentTimeMillis();
+            double patternParallelCoverage = patternParallel.faultSimulation(faults, patterns);
+            long patternParallelTime = System.currentTimeMillis() - startTime;
+
+            // Perform wide-word PPSFP, one vector of patterns per line
+            WidePatternFaultSimulator widePatternParallel = new WidePatternFaultSimulator(compiled);
+            startTime = System.currentTimeMillis();
+            double widePatternParallelCoverage = widePatternParallel.faultSimulation(faults, patterns);
+            long widePatternParallelTime = System.currentTimeMillis() - startTime;
+
+            // Perform event-driven (selective-trace) fault simulation
+            EventDrivenFaultSimulator eventDriven = new EventDrivenFaultSimulator(compiled);
+            eventDriven.setGoodMachineCache(goodMachineCache);
+            startTime = System.currentTimeMillis();
+            double eventDrivenCoverage = eventDriven.faultSimulation(faults, testVectors);
+            long eventDrivenTime = System.currentTimeMillis() - startTime;
+
+            // Perform critical path tracing fault simulation
+            CriticalPathTracer criticalPathTracer = new CriticalPathTracer(compiled);
+            criticalPathTracer.setGoodMachineCache(goodMachineCache);
+            startTime = System.currentTimeMillis();
+            double criticalPathCoverage = criticalPathTracer.faultSimulation(faults, testVectors);
+            long criticalPathTime = System.currentTimeMillis() - startTime;
+
             // Print simulation results
             System.out.println("Serial Fault Coverage: " + (serialCoverage * 100) + "%");
             System.out.println("Serial Simulation Time: " + serialTime + " ms");
             System.out.println("Parallel Fault Coverage: " + (parallelCoverage * 100) + "%");
             System.out.println("Parallel Simulation Time: " + parallelTime + " ms");
+            System.out.println("Pattern-Parallel Fault Coverage: " + (patternParallelCoverage * 100) + "%");
+            System.out.println("Pattern-Parallel Simulation Time: " + patternParallelTime + " ms");
+            System.out.println("Wide Pattern-Parallel Fault Coverage: " + (widePatternParallelCoverage * 100) + "%");
+            System.out.println("Wide Pattern-Parallel Simulation Time: " + widePatternParallelTime + " ms"
+                    + " (" + widePatternParallel.getKernel().getName() + ")");
+            System.out.println("Event-Driven Fault Coverage: " + (eventDrivenCoverage * 100) + "%");
+            System.out.println("Event-Driven Simulation Time: " + eventDrivenTime + " ms"
+                    + " (" + eventDriven.getGateEvaluations() + " faulty gate evaluations)");
+            System.out.println("Critical Path Tracing Fault Coverage: " + (criticalPathCoverage * 100) + "%");
+            System.out.println("Critical Path Tracing Simulation Time: " + criticalPathTime + " ms"
+                    + " (" + criticalPathTracer.getStemChecks() + " stem checks)");
+            System.out.println("Good-Machine Cache: " + goodMachineCache.getSnapshotBytes() + " snapshot bytes, "
+                    + goodMachineCache.getHits() + " hits, " + goodMachineCache.getMisses() + " misses, "
+                    + goodMachineCache.getEvictions() + " evictions");
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -58,41 +93,26 @@ public class BenchmarkFaultSimulation {
      * Generates all possible test vectors for the given input signals.
      * Limits the number of test vectors to 2^10 = 1024 for performance reasons.
      *
-     * @param inputs A set of input line identifiers.
-     * @return A list of test vectors, each represented as a map from line IDs to binary values.
+     * @param inputs The input line identifiers, in column order.
+     * @return The test vectors, packed one bit per vector and input.
      */
-    private static List<Map<String, Integer>> generateAllTestVectors(Set<String> inputs) {
-        List<Map<String, Integer>> testVectors = new ArrayList<>();
-        List<String> inputList = new ArrayList<>(inputs);
-        int numInputs = inputList.size();
-        int maxVectors = 1 << Math.min(numInputs, 10); // Limit to 2^10 = 1024 vectors
-
-        for (int i = 0; i < maxVectors; i++) {
-            Map<String, Integer> vector = new HashMap<>();
-            for (int j = 0; j < numInputs; j++) {
-                if (j < 10) { // Only consider the first 10 inputs for generating test vectors
-                    vector.put(inputList.get(j), (i >> j) & 1);
-                } else {
-                    vector.put(inputList.get(j), 0); // Default value for inputs beyond the limit
-                }
-            }
-            testVectors.add(vector);
-        }
-        return testVectors;
+    private static PatternSet generateAllTestVectors(List<String> inputs) {
+        // Only the first 10 inputs are enumerated; the others stay at 0
+        return PatternSet.exhaustive(inputs, 10);
     }
 
     /**
-     * Validates that all test vectors include all required input signals.
+     * Validates that the pattern header names all required input signals. Every pattern holds a
+     * value for every column, so checking the header once covers all vectors.
      *
-     * @param testVectors A list of test vectors to validate.
-     * @param inputs      A set of input line identifiers that must be present in each test vector.
+     * @param patterns The test vectors to validate.
+     * @param inputs   A set of input line identifiers that must be present in each test vector.
      */
-    private static void validateInputs(List<Map<String, Integer>> testVectors, Set<String> inputs) {
-        for (Map<String, Integer> vector : testVectors) {
-            for (String input : inputs) {
-                if (!vector.containsKey(input)) {
-                    throw new IllegalStateException("Test vector missing value for input: " + input);
-                }
+    private static void validateInputs(PatternSet patterns, Set<String> inputs) {
+        Set<String> columns = new HashSet<>(patterns.getInputNames());
+        for (String input : inputs) {
+            if (!columns.contains(input)) {
+                throw new IllegalStateException("Test vector missing value for input: " + input);
             }
         }
     }
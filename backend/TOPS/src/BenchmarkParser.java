@@ -3,22 +3,32 @@ import java.util.*;
 
 public class BenchmarkParser {
     public static void main(String[] args) {
-        Circuit circuit = new Circuit();
         Scanner scanner = new Scanner(System.in);
         try {
-            // Parse the benchmark file
+            // Load the benchmark, from its binary netlist cache when up to date
             String filePath = "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\499.bench";
-            circuit.parseBenchFile(filePath);
+            long startTime = System.nanoTime();
+            CompiledCircuit compiled = NetlistCache.load(filePath);
+            System.out.printf("Loaded %s in %.2f ms%n", compiled, (System.nanoTime() - startTime) / 1e6);
 
-            // Print the parsed circuit for verification
-            circuit.printCircuit();
+            // Print the levelized netlist for verification
+            System.out.println("Primary Inputs: " + compiled.getPrimaryInputNames());
+            System.out.println("Gates:");
+            for (int g = 0; g < compiled.getNumGates(); g++) {
+                List<String> inputs = new ArrayList<>();
+                for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                    inputs.add(compiled.lineName(compiled.fanin[i]));
+                }
+                System.out.println(compiled.lineName(compiled.getNumInputs() + g) + " = "
+                        + CompiledCircuit.typeName(compiled.gateType[g]) + inputs);
+            }
 
             // Initialize inputValues with all primary inputs
             Map<String, Integer> inputValues = new HashMap<>();
 
             // Allow user to set input values through console
             System.out.println("\nSet the values for the following inputs:");
-            for (String input : circuit.primaryInputs) {
+            for (String input : compiled.getPrimaryInputNames()) {
                 System.out.print("Enter value for input " + input + " (0 or 1): ");
                 int value = scanner.nextInt();
                 while (value != 0 && value != 1) {
@@ -30,17 +40,18 @@ public class BenchmarkParser {
 
             // Print assigned input values
             System.out.println("\nAssigned Input Values:");
-            for (String input : circuit.primaryInputs) {
+            for (String input : compiled.getPrimaryInputNames()) {
                 System.out.println("Input " + input + ": " + inputValues.get(input));
             }
 
             // Initialize the Simulation class
-            Simulation simulation = new Simulation(circuit);
+            Simulation simulation = new Simulation(compiled);
 
             // Simulate the circuit without faults
             Map<String, Integer> outputValues = simulation.simulate(inputValues);
             System.out.println("\nOutput Values at the Gates:");
-            for (String output : circuit.primaryOutputs) {
+            for (int po : compiled.primaryOutputs) {
+                String output = compiled.lineName(po);
                 System.out.println("Output " + output + ": " + outputValues.get(output));
             }
 
@@ -0,0 +1,499 @@
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.*;
+
+/**
+ * Word-level simulation through generated bytecode: the levelized netlist is written out as one
+ * hidden class whose static methods evaluate consecutive gates as straight-line {@code long}
+ * operations, with no opcode dispatch or fanin loops left at run time.
+ * <p>
+ * Every gate output is stored to the value array, and also kept in a local variable when a later
+ * gate of the same method reads it, so the JIT sees the whole chunk as one dataflow graph. Each
+ * method stays below HotSpot's 8000-byte limit for compiling a method at all; the methods are far
+ * too big to be inlined, so a single dispatch method calls them in order through a
+ * {@code tableswitch} that falls through from the first chunk to run. Re-simulation from a gate
+ * inside a chunk interprets up to the end of that chunk and continues in generated code.
+ * <p>
+ * If the class cannot be generated or defined, the evaluator interprets every gate. So do netlists
+ * of more than {@link #MAX_CHUNKS} chunks: on those the JIT is still compiling chunks when a
+ * typical run is over, and chunks still interpreted as bytecode are slower than the gate loop.
+ */
+public class BytecodeEvaluator {
+    private static final int MAX_CHUNK_BYTES = 7900;  // HugeMethodLimit is 8000 bytecodes
+    // The JIT takes longer to compile more chunks than they save in a typical run
+    private static final int MAX_CHUNKS = 1024;
+
+    /**
+     * Implemented by the generated class.
+     */
+    public interface Body {
+        /**
+         * Evaluates every chunk from {@code firstChunk} to the end.
+         */
+        void evaluate(long[] values, int firstChunk);
+    }
+
+    private final CompiledCircuit compiled;
+    private final int[] chunkStart;  // first gate of each chunk, then numGates
+    private final Body body;         // null when generation failed
+
+    private BytecodeEvaluator(CompiledCircuit compiled, int[] chunkStart, Body body) {
+        this.compiled = compiled;
+        this.chunkStart = chunkStart;
+        this.body = body;
+    }
+
+    /**
+     * Generates the evaluator of a circuit, falling back to the interpreter when the class
+     * cannot be built.
+     *
+     * @param compiled The compiled circuit.
+     * @return The evaluator; {@link #isGenerated()} tells which path it runs.
+     */
+    public static BytecodeEvaluator create(CompiledCircuit compiled) {
+        try {
+            int[] chunkStart = chunks(compiled);
+            byte[] classFile = new Generator(compiled, chunkStart).generate();
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            Body body = (Body) lookup.lookupClass().getConstructor().newInstance();
+            return new BytecodeEvaluator(compiled, chunkStart, body);
+        } catch (ReflectiveOperationException | LinkageError | IllegalArgumentException e) {
+            // The netlist does not fit a class file, or the VM rejects the class
+            System.err.println("Bytecode generation failed, interpreting gates: " + e);
+            return new BytecodeEvaluator(compiled, new int[]{0, compiled.numGates}, null);
+        }
+    }
+
+    /**
+     * Returns true if gates run in generated code, false if the evaluator fell back to the
+     * interpreter.
+     */
+    public boolean isGenerated() {
+        return body != null;
+    }
+
+    public int getNumChunks() {
+        return chunkStart.length - 1;
+    }
+
+    /**
+     * Re-evaluates every gate from {@code firstGate} onward over bit-parallel words.
+     *
+     * @param values    Line words; every line before the first gate's output must be set.
+     * @param firstGate The first gate to evaluate.
+     */
+    public void simulateWords(long[] values, int firstGate) {
+        if (body == null) {
+            compiled.interpretWords(values, firstGate, compiled.numGates);
+            return;
+        }
+        if (firstGate >= compiled.numGates) {
+            return;
+        }
+        int chunk = Arrays.binarySearch(chunkStart, firstGate);
+        if (chunk < 0) {
+            // Inside a chunk: its gates before firstGate must not be evaluated again
+            chunk = -chunk - 1;
+            compiled.interpretWords(values, firstGate, chunkStart[chunk]);
+        }
+        body.evaluate(values, chunk);
+    }
+
+    /**
+     * Splits the gates into chunks whose code stays under {@link #MAX_CHUNK_BYTES}, using a
+     * bound on the bytes each gate can take.
+     */
+    private static int[] chunks(CompiledCircuit compiled) {
+        int[] start = new int[16];
+        int count = 0;
+        int bytes = MAX_CHUNK_BYTES;
+        for (int g = 0; g < compiled.numGates; g++) {
+            // Output address, input loads and operators, inversion, store with its local copy
+            int gateBytes = 1 + pushBytes(compiled.numInputs + g) + 3 + 5 + 1;
+            for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                gateBytes += Math.max(4, 2 + pushBytes(compiled.fanin[i])) + 1;
+            }
+            if (bytes + gateBytes > MAX_CHUNK_BYTES) {
+                if (count + 1 == start.length) {
+                    start = Arrays.copyOf(start, 2 * start.length);
+                }
+                start[count++] = g;
+                bytes = 1;  // return
+            }
+            bytes += gateBytes;
+        }
+        if (count > MAX_CHUNKS) {
+            throw new IllegalArgumentException("Circuit needs " + count + " chunks, more than the "
+                    + MAX_CHUNKS + " worth compiling");
+        }
+        start[count] = compiled.numGates;
+        return Arrays.copyOf(start, count + 1);
+    }
+
+    /**
+     * Returns the bytes {@link Generator#pushInt} takes for a non-negative value.
+     */
+    private static int pushBytes(int value) {
+        return value <= 5 ? 1 : value <= Byte.MAX_VALUE ? 2 : value <= Short.MAX_VALUE ? 3 : 11;
+    }
+
+    /**
+     * Writes the class file: a constructor, one static method per chunk, and the dispatch method.
+     */
+    private static class Generator {
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_STATIC = 0x0008;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private static final int ICONST_M1 = 0x02;
+        private static final int ICONST_0 = 0x03;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int ILOAD_2 = 0x1c;
+        private static final int LLOAD = 0x16;
+        private static final int LLOAD_0 = 0x1e;
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int LALOAD = 0x2f;
+        private static final int LSTORE = 0x37;
+        private static final int LSTORE_0 = 0x3f;
+        private static final int LASTORE = 0x50;
+        private static final int DUP2 = 0x5c;
+        private static final int ISHL = 0x78;
+        private static final int LAND = 0x7f;
+        private static final int IOR = 0x80;
+        private static final int LOR = 0x81;
+        private static final int LXOR = 0x83;
+        private static final int I2L = 0x85;
+        private static final int TABLESWITCH = 0xaa;
+        private static final int RETURN = 0xb1;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int WIDE = 0xc4;
+
+        private final CompiledCircuit compiled;
+        private final int[] chunkStart;
+        private final ConstantPool pool = new ConstantPool();
+        private final int[] localSlot;  // per line, the local holding it in the current chunk, or 0
+
+        Generator(CompiledCircuit compiled, int[] chunkStart) {
+            this.compiled = compiled;
+            this.chunkStart = chunkStart;
+            this.localSlot = new int[compiled.numLines];
+        }
+
+        byte[] generate() {
+            int thisClass = pool.classRef("GeneratedEvaluator");
+            int superClass = pool.classRef("java/lang/Object");
+            int bodyInterface = pool.classRef(Body.class.getName().replace('.', '/'));
+            int code = pool.utf8("Code");
+            int chunkDescriptor = pool.utf8("([J)V");
+
+            Bytes methods = new Bytes();
+            int methodCount = 0;
+
+            // public GeneratedEvaluator() { super(); }
+            Bytes init = new Bytes();
+            init.u1(ALOAD_0);
+            init.u1(INVOKESPECIAL);
+            init.u2(pool.methodRef(superClass, "<init>", "()V"));
+            init.u1(RETURN);
+            writeMethod(methods, ACC_PUBLIC, pool.utf8("<init>"), pool.utf8("()V"), code, 1, 1, init, null);
+            methodCount++;
+
+            int numChunks = chunkStart.length - 1;
+            int[] chunkMethod = new int[numChunks];
+            for (int c = 0; c < numChunks; c++) {
+                int name = pool.utf8("c" + c);
+                chunkMethod[c] = pool.methodRef(thisClass, "c" + c, "([J)V");
+                Bytes body = new Bytes();
+                int maxLocals = writeChunk(body, chunkStart[c], chunkStart[c + 1]);
+                if (body.size() > MAX_CHUNK_BYTES) {
+                    throw new IllegalArgumentException("Chunk " + c + " has " + body.size() + " bytes of code");
+                }
+                writeMethod(methods, ACC_PUBLIC | ACC_STATIC, name, chunkDescriptor, code, 8, maxLocals, body, null);
+                methodCount++;
+            }
+
+            Bytes frames = new Bytes();
+            Bytes dispatch = writeDispatch(chunkMethod, frames, pool.utf8("StackMapTable"));
+            writeMethod(methods, ACC_PUBLIC, pool.utf8("evaluate"), pool.utf8("([JI)V"), code, 1, 3, dispatch,
+                    numChunks > 0 ? frames : null);
+            methodCount++;
+
+            Bytes out = new Bytes();
+            out.u4(0xCAFEBABE);
+            out.u2(0);
+            out.u2(61);  // Java 17 class file
+            pool.write(out);
+            out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.u2(thisClass);
+            out.u2(superClass);
+            out.u2(1);
+            out.u2(bodyInterface);
+            out.u2(0);  // fields
+            out.u2(methodCount);
+            out.bytes(methods);
+            out.u2(0);  // attributes
+            return out.toByteArray();
+        }
+
+        /**
+         * Emits the gates of one chunk. Slot 0 holds the value array; each line read again
+         * within the chunk gets a two-slot local.
+         *
+         * @return The number of local slots used.
+         */
+        private int writeChunk(Bytes code, int from, int to) {
+            int numInputs = compiled.numInputs;
+            int nextSlot = 1;
+            for (int g = from; g < to; g++) {
+                int out = numInputs + g;
+                code.u1(ALOAD_0);
+                pushInt(code, out);
+
+                int type = compiled.gateType[g] & ~1;
+                int op = type == CompiledCircuit.AND ? LAND : type == CompiledCircuit.OR ? LOR : LXOR;
+                for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                    int in = compiled.fanin[i];
+                    if (localSlot[in] != 0) {
+                        localOp(code, LLOAD, LLOAD_0, localSlot[in]);
+                    } else {
+                        code.u1(ALOAD_0);
+                        pushInt(code, in);
+                        code.u1(LALOAD);
+                    }
+                    if (i > compiled.faninOffset[g]) {
+                        code.u1(op);
+                    }
+                }
+                if ((compiled.gateType[g] & 1) != 0) {
+                    code.u1(ICONST_M1);
+                    code.u1(I2L);
+                    code.u1(LXOR);
+                }
+
+                if (readInChunk(out, to)) {
+                    localSlot[out] = nextSlot;
+                    code.u1(DUP2);
+                    localOp(code, LSTORE, LSTORE_0, nextSlot);
+                    nextSlot += 2;
+                }
+                code.u1(LASTORE);
+            }
+            code.u1(RETURN);
+            for (int g = from; g < to; g++) {
+                localSlot[numInputs + g] = 0;
+            }
+            return nextSlot;
+        }
+
+        private boolean readInChunk(int line, int chunkEnd) {
+            for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+                if (compiled.fanout[i] < chunkEnd) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Emits the dispatch method: a {@code tableswitch} on the first chunk into a run of calls
+         * that fall through to the last one. Every case starts with the entry frame.
+         */
+        private Bytes writeDispatch(int[] chunkMethod, Bytes frames, int stackMapTable) {
+            Bytes code = new Bytes();
+            int n = chunkMethod.length;
+            if (n == 0) {
+                code.u1(RETURN);
+                return code;
+            }
+            code.u1(ILOAD_2);
+            code.u1(TABLESWITCH);
+            while (code.size() % 4 != 0) {
+                code.u1(0);
+            }
+            int first = code.size() + 12 + 4 * n;
+            code.u4(first + 4 * n - 1);  // default: return
+            code.u4(0);
+            code.u4(n - 1);
+            for (int c = 0; c < n; c++) {
+                code.u4(first + 4 * c - 1);
+            }
+            for (int c = 0; c < n; c++) {
+                code.u1(ALOAD_1);
+                code.u1(INVOKESTATIC);
+                code.u2(chunkMethod[c]);
+            }
+            code.u1(RETURN);
+
+            frames.u2(stackMapTable);
+            Bytes table = new Bytes();
+            table.u2(n + 1);
+            int previous = -1;
+            for (int c = 0; c <= n; c++) {
+                int delta = first + 4 * c - previous - 1;
+                if (delta < 64) {
+                    table.u1(delta);  // same_frame
+                } else {
+                    table.u1(251);    // same_frame_extended
+                    table.u2(delta);
+                }
+                previous = first + 4 * c;
+            }
+            frames.u4(table.size());
+            frames.bytes(table);
+            return code;
+        }
+
+        private void writeMethod(Bytes methods, int access, int name, int descriptor, int codeAttribute,
+                                 int maxStack, int maxLocals, Bytes code, Bytes stackMap) {
+            methods.u2(access);
+            methods.u2(name);
+            methods.u2(descriptor);
+            methods.u2(1);
+            methods.u2(codeAttribute);
+            int stackMapBytes = stackMap == null ? 0 : stackMap.size();
+            methods.u4(12 + code.size() + stackMapBytes);
+            methods.u2(maxStack);
+            methods.u2(maxLocals);
+            methods.u4(code.size());
+            methods.bytes(code);
+            methods.u2(0);  // exception table
+            methods.u2(stackMap == null ? 0 : 1);
+            if (stackMap != null) {
+                methods.bytes(stackMap);
+            }
+        }
+
+        /**
+         * Pushes an int; line ids past the {@code sipush} range are built from two halves so the
+         * constant pool does not grow with the circuit.
+         */
+        private static void pushInt(Bytes code, int value) {
+            if (value <= 5) {
+                code.u1(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                code.u1(BIPUSH);
+                code.u1(value);
+            } else if (value <= Short.MAX_VALUE) {
+                code.u1(SIPUSH);
+                code.u2(value);
+            } else {
+                code.u1(SIPUSH);
+                code.u2(value >>> 15);
+                code.u1(BIPUSH);
+                code.u1(15);
+                code.u1(ISHL);
+                code.u1(SIPUSH);
+                code.u2(value & 0x7FFF);
+                code.u1(IOR);
+            }
+        }
+
+        private static void localOp(Bytes code, int opcode, int shortForm, int slot) {
+            if (slot <= 3) {
+                code.u1(shortForm + slot);
+            } else if (slot <= 255) {
+                code.u1(opcode);
+                code.u1(slot);
+            } else {
+                code.u1(WIDE);
+                code.u1(opcode);
+                code.u2(slot);
+            }
+        }
+    }
+
+    /**
+     * The constant pool, sharing equal entries.
+     */
+    private static class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int CLASS = 7;
+        private static final int METHODREF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final Bytes entries = new Bytes();
+        private final Map<String, Integer> index = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            Integer existing = index.get("U" + value);
+            if (existing != null) {
+                return existing;
+            }
+            entries.u1(UTF8);
+            entries.utf(value);
+            return add("U" + value);
+        }
+
+        int classRef(String internalName) {
+            return entry(CLASS, utf8(internalName), -1);
+        }
+
+        int methodRef(int owner, String name, String descriptor) {
+            int nameAndType = entry(NAME_AND_TYPE, utf8(name), utf8(descriptor));
+            return entry(METHODREF, owner, nameAndType);
+        }
+
+        private int entry(int tag, int first, int second) {
+            String key = tag + ":" + first + ":" + second;
+            Integer existing = index.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            entries.u1(tag);
+            entries.u2(first);
+            if (second >= 0) {
+                entries.u2(second);
+            }
+            return add(key);
+        }
+
+        private int add(String key) {
+            if (count == 0xFFFF) {
+                throw new IllegalArgumentException("Constant pool overflow");
+            }
+            index.put(key, count);
+            return count++;
+        }
+
+        void write(Bytes out) {
+            out.u2(count);
+            out.bytes(entries);
+        }
+    }
+
+    /**
+     * Big-endian byte buffer.
+     */
+    private static class Bytes extends ByteArrayOutputStream {
+        void u1(int value) {
+            write(value);
+        }
+
+        void u2(int value) {
+            write(value >>> 8);
+            write(value);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void bytes(Bytes other) {
+            write(other.buf, 0, other.count);
+        }
+
+        void utf(String value) {
+            // Class, method and descriptor names here are plain ASCII
+            u2(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                write(value.charAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,619 @@
+import java.util.*;
+
+/**
+ * Incremental conflict-driven clause-learning SAT solver.
+ * <p>
+ * Variables are numbered from 0 and a literal is {@code 2 * var} for the variable and
+ * {@code 2 * var + 1} for its negation, so {@code lit ^ 1} negates a literal. The solver follows
+ * the MiniSat design: two watched literals per clause, first-UIP conflict analysis with local
+ * minimization of the learned clause, VSIDS variable activities in a binary heap with phase saving,
+ * Luby restarts, and periodic deletion of the less active half of the learned clauses.
+ * <p>
+ * Clauses and variables may be added between calls to {@link #solve}, and learned clauses are
+ * kept, so a sequence of related problems is solved on one instance. Assumptions give the
+ * temporary part of a problem: clauses guarded by an activation literal {@code a} as
+ * {@code (!a | ...)} only apply while {@code a} is assumed, and adding the unit clause {@code !a}
+ * afterwards retires them for good.
+ */
+public class CdclSolver {
+    public enum Status { SAT, UNSAT, UNKNOWN }
+
+    private static final byte FALSE = 0;
+    private static final byte TRUE = 1;
+    private static final byte UNDEF = 2;
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final int RESTART_BASE = 100;
+
+    private int numVars;
+    private byte[] assigns = new byte[16];      // per variable: FALSE, TRUE or UNDEF
+    private int[] level = new int[16];
+    private Clause[] reason = new Clause[16];
+    private boolean[] phase = new boolean[16];  // last value, tried first
+    private boolean[] seen = new boolean[16];
+    private double[] activity = new double[16];
+    private ClauseList[] watches = new ClauseList[32];  // clauses watching a literal, visited when it becomes false
+
+    private int[] trail = new int[16];
+    private int trailSize;
+    private int queueHead;
+    private int[] trailLimit = new int[16];     // trail size at the start of every decision level
+    private int decisionLevel;
+
+    private List<Clause> clauses = new ArrayList<>();
+    private List<Clause> learnts = new ArrayList<>();
+    private boolean ok = true;
+    private double varIncrement = 1;
+    private double clauseIncrement = 1;
+    private double maxLearnts;
+
+    // Variable order: a max-heap on activity
+    private int[] heap = new int[16];
+    private int[] heapIndex = new int[16];      // position in the heap, -1 when absent
+    private int heapSize;
+
+    private byte[] model;
+    private long conflicts;
+    private long decisions;
+    private long propagations;
+
+    private int[] learnt = new int[16];
+    private int learntSize;
+
+    /**
+     * Adds a variable.
+     *
+     * @return Its number.
+     */
+    public int newVar() {
+        int v = numVars++;
+        if (v == assigns.length) {
+            int capacity = 2 * v;
+            assigns = Arrays.copyOf(assigns, capacity);
+            level = Arrays.copyOf(level, capacity);
+            reason = Arrays.copyOf(reason, capacity);
+            phase = Arrays.copyOf(phase, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            activity = Arrays.copyOf(activity, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+            trailLimit = Arrays.copyOf(trailLimit, capacity + 1);
+            heap = Arrays.copyOf(heap, capacity);
+            heapIndex = Arrays.copyOf(heapIndex, capacity);
+            watches = Arrays.copyOf(watches, 2 * capacity);
+        }
+        assigns[v] = UNDEF;
+        watches[2 * v] = new ClauseList();
+        watches[2 * v + 1] = new ClauseList();
+        heapIndex[v] = -1;
+        heapInsert(v);
+        return v;
+    }
+
+    public int getNumVars() {
+        return numVars;
+    }
+
+    public int getNumClauses() {
+        return clauses.size();
+    }
+
+    public int getNumLearnts() {
+        return learnts.size();
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    /**
+     * Returns false once the clauses added are unsatisfiable without any assumption.
+     */
+    public boolean isOk() {
+        return ok;
+    }
+
+    /**
+     * Adds a clause.
+     *
+     * @param lits The literals; the array is not kept.
+     * @return False if the clause set has become unsatisfiable.
+     */
+    public boolean addClause(int... lits) {
+        if (!ok) {
+            return false;
+        }
+        cancelUntil(0);
+        int[] sorted = lits.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            int lit = sorted[i];
+            if ((lit >>> 1) >= numVars || lit < 0) {
+                throw new IllegalArgumentException("Literal of an unknown variable: " + lit);
+            }
+            byte value = value(lit);
+            if (value == TRUE || (size > 0 && sorted[size - 1] == (lit ^ 1))) {
+                // Satisfied at the root, or a tautology
+                return true;
+            }
+            if (value == FALSE || (size > 0 && sorted[size - 1] == lit)) {
+                continue;
+            }
+            sorted[size++] = lit;
+        }
+
+        if (size == 0) {
+            ok = false;
+        } else if (size == 1) {
+            enqueue(sorted[0], null);
+            ok = propagate() == null;
+        } else {
+            Clause clause = new Clause(Arrays.copyOf(sorted, size), false);
+            clauses.add(clause);
+            attach(clause);
+        }
+        return ok;
+    }
+
+    /**
+     * Solves the clauses under assumptions.
+     *
+     * @param assumptions   Literals taken as true for this call only.
+     * @param conflictLimit Conflicts after which the call gives up, or a negative value for none.
+     * @return SAT with a model, UNSAT if no model satisfies the assumptions, or UNKNOWN when the
+     * conflict limit is reached.
+     */
+    public Status solve(int[] assumptions, long conflictLimit) {
+        model = null;
+        if (!ok) {
+            return Status.UNSAT;
+        }
+        long conflictBudget = conflictLimit < 0 ? Long.MAX_VALUE : conflicts + conflictLimit;
+        maxLearnts = Math.max(maxLearnts, Math.max(2000, clauses.size() / 3.0));
+        Status status = null;
+        for (int restart = 0; status == null; restart++) {
+            status = search(luby(restart) * RESTART_BASE, assumptions, conflictBudget);
+            maxLearnts *= 1.05;
+        }
+        cancelUntil(0);
+        return status;
+    }
+
+    /**
+     * Returns the value of a variable in the model of the last satisfiable call.
+     */
+    public boolean modelValue(int var) {
+        if (model == null) {
+            throw new IllegalStateException("No model: the last call was not satisfiable");
+        }
+        return model[var] == TRUE;
+    }
+
+    /**
+     * Removes the clauses satisfied at the root level, such as those retired by a unit clause on
+     * their activation literal.
+     */
+    public void simplify() {
+        cancelUntil(0);
+        if (!ok || propagate() != null) {
+            ok = false;
+            return;
+        }
+        removeSatisfied(clauses);
+        removeSatisfied(learnts);
+    }
+
+    private void removeSatisfied(List<Clause> list) {
+        list.removeIf(clause -> {
+            for (int lit : clause.lits) {
+                if (value(lit) == TRUE) {
+                    clause.deleted = true;
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private Status search(long conflictsBeforeRestart, int[] assumptions, long conflictBudget) {
+        long conflictCount = 0;
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                conflicts++;
+                conflictCount++;
+                if (decisionLevel == 0) {
+                    ok = false;
+                    return Status.UNSAT;
+                }
+                int backtrackLevel = analyze(conflict);
+                cancelUntil(backtrackLevel);
+                if (learntSize == 1) {
+                    enqueue(learnt[0], null);
+                } else {
+                    Clause clause = new Clause(Arrays.copyOf(learnt, learntSize), true);
+                    learnts.add(clause);
+                    attach(clause);
+                    bumpClause(clause);
+                    enqueue(learnt[0], clause);
+                }
+                varIncrement /= VAR_DECAY;
+                clauseIncrement /= CLAUSE_DECAY;
+                continue;
+            }
+
+            if (conflictCount >= conflictsBeforeRestart) {
+                cancelUntil(0);
+                return null;
+            }
+            if (conflicts >= conflictBudget) {
+                return Status.UNKNOWN;
+            }
+            if (learnts.size() - trailSize >= maxLearnts) {
+                reduceLearnts();
+            }
+
+            // Assumptions take the first decision levels, one each
+            int next = -1;
+            while (decisionLevel < assumptions.length) {
+                int lit = assumptions[decisionLevel];
+                byte value = value(lit);
+                if (value == TRUE) {
+                    newDecisionLevel();
+                } else if (value == FALSE) {
+                    return Status.UNSAT;
+                } else {
+                    next = lit;
+                    break;
+                }
+            }
+            if (next < 0) {
+                next = pickBranchLit();
+                if (next < 0) {
+                    model = Arrays.copyOf(assigns, numVars);
+                    return Status.SAT;
+                }
+                decisions++;
+            }
+            newDecisionLevel();
+            enqueue(next, null);
+        }
+    }
+
+    /**
+     * Propagates the trail through the watched literals.
+     *
+     * @return A clause with every literal false, or null.
+     */
+    private Clause propagate() {
+        Clause conflict = null;
+        while (queueHead < trailSize) {
+            int falseLit = trail[queueHead++] ^ 1;
+            propagations++;
+            ClauseList watching = watches[falseLit];
+            Clause[] items = watching.items;
+            int n = watching.size;
+            int i = 0;
+            int j = 0;
+            while (i < n) {
+                Clause clause = items[i++];
+                if (clause.deleted) {
+                    continue;
+                }
+                int[] lits = clause.lits;
+                // Keep the false literal in position 1
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                int first = lits[0];
+                if (value(first) == TRUE) {
+                    items[j++] = clause;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (value(lits[k]) != FALSE) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watches[lits[1]].add(clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                items[j++] = clause;
+                if (value(first) == FALSE) {
+                    conflict = clause;
+                    queueHead = trailSize;
+                    while (i < n) {
+                        items[j++] = items[i++];
+                    }
+                } else {
+                    enqueue(first, clause);
+                }
+            }
+            Arrays.fill(items, j, n, null);
+            watching.size = j;
+        }
+        return conflict;
+    }
+
+    /**
+     * Derives the first-UIP clause of a conflict into {@link #learnt}, asserting literal first.
+     *
+     * @return The level to backtrack to.
+     */
+    private int analyze(Clause conflict) {
+        learntSize = 1;
+        int pathCount = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+        Clause clause = conflict;
+        do {
+            if (clause.learnt) {
+                bumpClause(clause);
+            }
+            for (int k = lit < 0 ? 0 : 1; k < clause.lits.length; k++) {
+                int q = clause.lits[k];
+                int v = q >>> 1;
+                if (!seen[v] && level[v] > 0) {
+                    bumpVar(v);
+                    seen[v] = true;
+                    if (level[v] >= decisionLevel) {
+                        pathCount++;
+                    } else {
+                        addLearnt(q);
+                    }
+                }
+            }
+            while (!seen[trail[index] >>> 1]) {
+                index--;
+            }
+            lit = trail[index--];
+            clause = reason[lit >>> 1];
+            seen[lit >>> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt[0] = lit ^ 1;
+
+        // Drop literals implied by the rest of the clause through their own reason
+        int kept = 1;
+        int[] all = Arrays.copyOf(learnt, learntSize);
+        for (int k = 1; k < learntSize; k++) {
+            Clause r = reason[learnt[k] >>> 1];
+            boolean redundant = r != null;
+            for (int m = 1; redundant && m < r.lits.length; m++) {
+                int v = r.lits[m] >>> 1;
+                redundant = seen[v] || level[v] == 0;
+            }
+            if (!redundant) {
+                learnt[kept++] = learnt[k];
+            }
+        }
+        learntSize = kept;
+        for (int q : all) {
+            seen[q >>> 1] = false;
+        }
+
+        // The highest remaining level goes second, to be watched
+        int backtrackLevel = 0;
+        for (int k = 1; k < learntSize; k++) {
+            if (level[learnt[k] >>> 1] > backtrackLevel) {
+                backtrackLevel = level[learnt[k] >>> 1];
+                int t = learnt[1];
+                learnt[1] = learnt[k];
+                learnt[k] = t;
+            }
+        }
+        return backtrackLevel;
+    }
+
+    private void addLearnt(int lit) {
+        if (learntSize == learnt.length) {
+            learnt = Arrays.copyOf(learnt, 2 * learnt.length);
+        }
+        learnt[learntSize++] = lit;
+    }
+
+    /**
+     * Deletes the less active half of the learned clauses, keeping binary clauses and clauses that
+     * are the reason of an assignment.
+     */
+    private void reduceLearnts() {
+        learnts.sort(Comparator.comparingDouble(clause -> clause.activity));
+        int half = learnts.size() / 2;
+        double threshold = clauseIncrement / learnts.size();
+        List<Clause> kept = new ArrayList<>(learnts.size());
+        for (int k = 0; k < learnts.size(); k++) {
+            Clause clause = learnts.get(k);
+            if (clause.lits.length > 2 && !isLocked(clause) && (k < half || clause.activity < threshold)) {
+                clause.deleted = true;
+            } else {
+                kept.add(clause);
+            }
+        }
+        learnts = kept;
+    }
+
+    private boolean isLocked(Clause clause) {
+        int v = clause.lits[0] >>> 1;
+        return reason[v] == clause && value(clause.lits[0]) == TRUE;
+    }
+
+    private int pickBranchLit() {
+        while (heapSize > 0) {
+            int v = heapRemoveMax();
+            if (assigns[v] == UNDEF) {
+                return 2 * v + (phase[v] ? 0 : 1);
+            }
+        }
+        return -1;
+    }
+
+    private byte value(int lit) {
+        byte a = assigns[lit >>> 1];
+        return a == UNDEF ? UNDEF : (byte) (a ^ (lit & 1));
+    }
+
+    private void enqueue(int lit, Clause from) {
+        int v = lit >>> 1;
+        assigns[v] = (byte) ((lit & 1) ^ 1);
+        level[v] = decisionLevel;
+        reason[v] = from;
+        trail[trailSize++] = lit;
+    }
+
+    private void newDecisionLevel() {
+        trailLimit[decisionLevel++] = trailSize;
+    }
+
+    private void cancelUntil(int target) {
+        if (decisionLevel <= target) {
+            return;
+        }
+        for (int k = trailSize - 1; k >= trailLimit[target]; k--) {
+            int v = trail[k] >>> 1;
+            phase[v] = assigns[v] == TRUE;
+            assigns[v] = UNDEF;
+            reason[v] = null;
+            if (heapIndex[v] < 0) {
+                heapInsert(v);
+            }
+        }
+        trailSize = trailLimit[target];
+        queueHead = trailSize;
+        decisionLevel = target;
+    }
+
+    private void attach(Clause clause) {
+        watches[clause.lits[0]].add(clause);
+        watches[clause.lits[1]].add(clause);
+    }
+
+    private void bumpVar(int v) {
+        activity[v] += varIncrement;
+        if (activity[v] > 1e100) {
+            for (int k = 0; k < numVars; k++) {
+                activity[k] *= 1e-100;
+            }
+            varIncrement *= 1e-100;
+        }
+        if (heapIndex[v] >= 0) {
+            siftUp(heapIndex[v]);
+        }
+    }
+
+    private void bumpClause(Clause clause) {
+        clause.activity += clauseIncrement;
+        if (clause.activity > 1e20) {
+            for (Clause c : learnts) {
+                c.activity *= 1e-20;
+            }
+            clauseIncrement *= 1e-20;
+        }
+    }
+
+    private void heapInsert(int v) {
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (activity[heap[parent]] >= activity[v]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[v]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * Returns element {@code i} of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+     */
+    static long luby(int i) {
+        int size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >>> 1;
+            seq--;
+            i %= size;
+        }
+        return 1L << seq;
+    }
+
+    private static class Clause {
+        final int[] lits;
+        final boolean learnt;
+        double activity;
+        boolean deleted;
+
+        Clause(int[] lits, boolean learnt) {
+            this.lits = lits;
+            this.learnt = learnt;
+        }
+    }
+
+    private static class ClauseList {
+        Clause[] items = new Clause[4];
+        int size;
+
+        void add(Clause clause) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2 * size);
+            }
+            items[size++] = clause;
+        }
+    }
+}
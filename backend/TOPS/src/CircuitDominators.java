@@ -0,0 +1,259 @@
+import java.util.*;
+
+/**
+ * Structural preprocessing of a compiled circuit for test generation: dominators toward the
+ * primary outputs, TOPS basis lines, and the primary outputs each line reaches.
+ * <p>
+ * A line {@code d} dominates line {@code l} when every path from {@code l} to any primary output
+ * passes through {@code d}. Joining all primary outputs in a virtual sink turns this into the
+ * dominator tree of the reversed circuit graph rooted at the sink. The graph is acyclic and line
+ * ids are a topological order, so a single sweep from the highest line down is enough: the
+ * immediate dominator of a line is the lowest common ancestor of its readers (and of the sink, for
+ * a primary output), all of which are already placed in the tree. Ancestor queries use binary
+ * lifting, for {@code O((lines + pins) log lines)} overall.
+ * <p>
+ * Basis lines are the head lines of the circuit: lines outside the cone of every fanout stem
+ * (free lines) that are stems themselves, feed a line inside such a cone, or are primary outputs.
+ * The input cone of a basis line is a tree, so any value on it can be justified without
+ * conflicts, and backtracing may stop there.
+ * <p>
+ * Built once per circuit through {@link CompiledCircuit#dominators()}.
+ */
+public class CircuitDominators {
+    private CompiledCircuit compiled;
+    private int sink;
+    private int[] depth;        // depth in the dominator tree, the sink at 0; -1 if no output is reachable
+    private int[][] up;         // up[k][l]: the 2^k-th dominator of l
+    private boolean[] basis;
+    private int[] basisLines;
+    private int outputWords;
+    private long[] outputBits;  // outputWords per line, built on first query
+
+    CircuitDominators(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        this.sink = compiled.numLines;
+        buildTree();
+        buildBasis();
+    }
+
+    /**
+     * Returns the immediate dominator of a line.
+     *
+     * @return The line, or -1 when only the virtual sink dominates it or it reaches no output.
+     */
+    public int getImmediateDominator(int line) {
+        if (depth[line] <= 0) {
+            return -1;
+        }
+        int d = up[0][line];
+        return d == sink ? -1 : d;
+    }
+
+    /**
+     * Returns the absolute dominators of a line, nearest first, without the line itself.
+     */
+    public int[] getDominators(int line) {
+        int count = Math.max(0, depth[line] - 1);
+        int[] chain = new int[count];
+        int d = line;
+        for (int k = 0; k < count; k++) {
+            d = up[0][d];
+            chain[k] = d;
+        }
+        return chain;
+    }
+
+    /**
+     * Returns true if every path from {@code line} to a primary output passes through
+     * {@code dominator}. A line dominates itself.
+     */
+    public boolean dominates(int dominator, int line) {
+        if (depth[line] < 0 || depth[dominator] < 0 || depth[dominator] > depth[line]) {
+            return false;
+        }
+        return ancestor(line, depth[line] - depth[dominator]) == dominator;
+    }
+
+    /**
+     * Returns true if any primary output can be reached from a line.
+     */
+    public boolean reachesOutput(int line) {
+        return depth[line] >= 0;
+    }
+
+    /**
+     * Returns true if a line reaches a primary output, by position in the output list.
+     */
+    public boolean reachesOutput(int line, int output) {
+        long[] outputBits = outputBits();
+        return (outputBits[line * outputWords + output / 64] >>> (output % 64) & 1) != 0;
+    }
+
+    /**
+     * Returns the number of primary outputs a line reaches.
+     */
+    public int getReachableOutputCount(int line) {
+        long[] outputBits = outputBits();
+        int count = 0;
+        for (int w = 0; w < outputWords; w++) {
+            count += Long.bitCount(outputBits[line * outputWords + w]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first primary output, by position in the output list, that a line reaches, or -1
+     * if it reaches none.
+     */
+    public int getFirstReachableOutput(int line) {
+        long[] outputBits = outputBits();
+        for (int w = 0; w < outputWords; w++) {
+            long bits = outputBits[line * outputWords + w];
+            if (bits != 0) {
+                return 64 * w + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    public boolean isBasis(int line) {
+        return basis[line];
+    }
+
+    /**
+     * Returns the basis lines in increasing line order.
+     */
+    public int[] getBasisLines() {
+        return basisLines.clone();
+    }
+
+    private void buildTree() {
+        int numLines = compiled.numLines;
+        int log = 1;
+        while ((1 << log) <= numLines + 1) {
+            log++;
+        }
+        depth = new int[numLines + 1];
+        up = new int[log][numLines + 1];
+        for (int[] level : up) {
+            level[sink] = sink;
+        }
+
+        for (int line = numLines - 1; line >= 0; line--) {
+            int d = compiled.isOutput[line] ? sink : -1;
+            for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+                int reader = compiled.numInputs + compiled.fanout[i];
+                if (depth[reader] < 0) {
+                    continue;
+                }
+                d = d < 0 ? reader : lowestCommonAncestor(d, reader);
+            }
+            if (d < 0) {
+                depth[line] = -1;
+                continue;
+            }
+            depth[line] = depth[d] + 1;
+            up[0][line] = d;
+            for (int k = 1; k < log; k++) {
+                up[k][line] = up[k - 1][up[k - 1][line]];
+            }
+        }
+    }
+
+    private int ancestor(int line, int steps) {
+        for (int k = 0; steps > 0; k++, steps >>>= 1) {
+            if ((steps & 1) != 0) {
+                line = up[k][line];
+            }
+        }
+        return line;
+    }
+
+    private int lowestCommonAncestor(int a, int b) {
+        if (depth[a] < depth[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        a = ancestor(a, depth[a] - depth[b]);
+        if (a == b) {
+            return a;
+        }
+        for (int k = up.length - 1; k >= 0; k--) {
+            if (up[k][a] != up[k][b]) {
+                a = up[k][a];
+                b = up[k][b];
+            }
+        }
+        return up[0][a];
+    }
+
+    private void buildBasis() {
+        int numLines = compiled.numLines;
+        // A gate output is bound when one of its inputs is a fanout stem or is bound itself
+        boolean[] bound = new boolean[numLines];
+        boolean[] stem = new boolean[numLines];
+        for (int line = 0; line < numLines; line++) {
+            stem[line] = compiled.fanoutCount(line) > 1;
+        }
+        for (int g = 0; g < compiled.numGates; g++) {
+            for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                int in = compiled.fanin[i];
+                if (stem[in] || bound[in]) {
+                    bound[compiled.numInputs + g] = true;
+                    break;
+                }
+            }
+        }
+
+        basis = new boolean[numLines];
+        int count = 0;
+        for (int line = 0; line < numLines; line++) {
+            if (bound[line]) {
+                continue;
+            }
+            boolean head = stem[line] || compiled.isOutput[line];
+            for (int i = compiled.fanoutOffset[line]; !head && i < compiled.fanoutOffset[line + 1]; i++) {
+                head = bound[compiled.numInputs + compiled.fanout[i]];
+            }
+            if (head) {
+                basis[line] = true;
+                count++;
+            }
+        }
+        basisLines = new int[count];
+        for (int line = 0, k = 0; line < numLines; line++) {
+            if (basis[line]) {
+                basisLines[k++] = line;
+            }
+        }
+    }
+
+    /**
+     * Returns the reachable-output bitsets, built on first use: they take a bit per line and
+     * output, which the dominator queries do not need.
+     */
+    private synchronized long[] outputBits() {
+        if (outputBits != null) {
+            return outputBits;
+        }
+        int[] outputs = compiled.primaryOutputs;
+        outputWords = Math.max(1, (outputs.length + 63) / 64);
+        long[] outputBits = new long[compiled.numLines * outputWords];
+        for (int o = 0; o < outputs.length; o++) {
+            outputBits[outputs[o] * outputWords + o / 64] |= 1L << (o % 64);
+        }
+        // Readers have higher ids, so a reverse sweep sees them first
+        for (int line = compiled.numLines - 1; line >= 0; line--) {
+            int base = line * outputWords;
+            for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+                int reader = (compiled.numInputs + compiled.fanout[i]) * outputWords;
+                for (int w = 0; w < outputWords; w++) {
+                    outputBits[base + w] |= outputBits[reader + w];
+                }
+            }
+        }
+        this.outputBits = outputBits;
+        return outputBits;
+    }
+}
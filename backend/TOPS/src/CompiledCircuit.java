@@ -0,0 +1,765 @@
+import java.util.*;
+
+/**
+ * Integer-indexed, levelized form of a {@link Circuit}.
+ * <p>
+ * Every line gets a dense id: primary inputs take ids {@code 0 .. numInputs-1} in declaration
+ * order, and the output of gate {@code g} is line {@code numInputs + g}. Gates are stored in
+ * level order, so evaluating them by increasing index is a valid topological simulation.
+ * Fanin and fanout connectivity is kept in flat CSR arrays.
+ */
+public class CompiledCircuit {
+    // Gate opcodes; the low bit marks an inverting gate
+    public static final byte AND = 0;
+    public static final byte NAND = 1;
+    public static final byte OR = 2;
+    public static final byte NOR = 3;
+    public static final byte XOR = 4;
+    public static final byte XNOR = 5;
+    public static final byte BUF = 6;
+    public static final byte NOT = 7;
+
+    final int numInputs;
+    final int numGates;
+    final int numLines;
+
+    final byte[] gateType;      // opcode per gate, in level order
+    final int[] faninOffset;    // fanin of gate g is fanin[faninOffset[g] .. faninOffset[g + 1])
+    final int[] fanin;          // line ids
+    final int[] fanoutOffset;   // fanout of line l is fanout[fanoutOffset[l] .. fanoutOffset[l + 1])
+    final int[] fanout;         // gate ids
+    final int[] levelOffset;    // gates of level k + 1 are levelOffset[k] .. levelOffset[k + 1]
+    final int[] gateLevel;      // level per gate, starting at 1
+    final int[] primaryInputs;  // line ids, always 0 .. numInputs-1
+    final int[] primaryOutputs; // line ids
+    final boolean[] isOutput;   // per line
+    final String[] lineNames;
+    private Map<String, Integer> lineIndex;    // built on first lookup
+    private CircuitDominators dominators;       // built on first use
+    private Scoap scoap;                        // built on first use
+    private StaticLearning staticLearning;      // learned on first use or loaded with the cache
+    private BytecodeEvaluator generatedEvaluator;          // generated on first use
+    private volatile BytecodeEvaluator bytecodeEvaluator;  // set while bytecode evaluation is on
+
+    CompiledCircuit(String[] lineNames, int numInputs, byte[] gateType, int[] faninOffset, int[] fanin,
+                    int[] fanoutOffset, int[] fanout, int[] levelOffset, int[] primaryOutputs) {
+        this.lineNames = lineNames;
+        this.numInputs = numInputs;
+        this.numGates = gateType.length;
+        this.numLines = numInputs + numGates;
+        this.gateType = gateType;
+        this.faninOffset = faninOffset;
+        this.fanin = fanin;
+        this.fanoutOffset = fanoutOffset;
+        this.fanout = fanout;
+        this.levelOffset = levelOffset;
+        this.primaryOutputs = primaryOutputs;
+
+        this.primaryInputs = new int[numInputs];
+        for (int i = 0; i < numInputs; i++) {
+            primaryInputs[i] = i;
+        }
+
+        this.gateLevel = new int[numGates];
+        for (int k = 0; k + 1 < levelOffset.length; k++) {
+            Arrays.fill(gateLevel, levelOffset[k], levelOffset[k + 1], k + 1);
+        }
+
+        this.isOutput = new boolean[numLines];
+        for (int po : primaryOutputs) {
+            isOutput[po] = true;
+        }
+    }
+
+    /**
+     * Compiles a parsed circuit into its integer-indexed form.
+     *
+     * @param circuit The parsed circuit.
+     * @return The compiled circuit.
+     */
+    public static CompiledCircuit compile(Circuit circuit) {
+        // Give every line of the object model a symbol id
+        Map<String, Integer> symbols = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (String input : circuit.primaryInputs) {
+            intern(symbols, names, input);
+        }
+        for (Gate gate : circuit.gates) {
+            intern(symbols, names, gate.getOutput().getId());
+            for (Line in : gate.getInputs()) {
+                intern(symbols, names, in.getId());
+            }
+        }
+        for (String output : circuit.primaryOutputs) {
+            intern(symbols, names, output);
+        }
+
+        int numGates = circuit.gates.size();
+        byte[] types = new byte[numGates];
+        int[] gateOutput = new int[numGates];
+        int[] faninOffset = new int[numGates + 1];
+        for (int g = 0; g < numGates; g++) {
+            faninOffset[g + 1] = faninOffset[g] + circuit.gates.get(g).getInputs().size();
+        }
+        int[] fanin = new int[faninOffset[numGates]];
+        for (int g = 0; g < numGates; g++) {
+            Gate gate = circuit.gates.get(g);
+            types[g] = opcode(gate.type);
+            gateOutput[g] = symbols.get(gate.getOutput().getId());
+            int k = faninOffset[g];
+            for (Line in : gate.getInputs()) {
+                fanin[k++] = symbols.get(in.getId());
+            }
+        }
+
+        int[] inputs = new int[circuit.primaryInputs.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = symbols.get(circuit.primaryInputs.get(i));
+        }
+        int[] outputs = new int[circuit.primaryOutputs.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = symbols.get(circuit.primaryOutputs.get(i));
+        }
+
+        return compile(names.toArray(new String[0]), inputs, outputs, types, gateOutput, faninOffset, fanin);
+    }
+
+    private static void intern(Map<String, Integer> symbols, List<String> names, String name) {
+        if (!symbols.containsKey(name)) {
+            symbols.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    /**
+     * Levelizes a raw netlist given in symbol space and renumbers it into dense line ids.
+     *
+     * @param names       Signal name per symbol.
+     * @param inputs      Symbols of the primary inputs, in declaration order.
+     * @param outputs     Symbols of the primary outputs, in declaration order.
+     * @param types       Opcode per gate, in file order.
+     * @param gateOutput  Output symbol per gate.
+     * @param faninOffset CSR offsets into {@code fanin}, one more entry than there are gates.
+     * @param fanin       Input symbols of all gates.
+     * @return The compiled circuit.
+     */
+    static CompiledCircuit compile(String[] names, int[] inputs, int[] outputs, byte[] types,
+                                   int[] gateOutput, int[] faninOffset, int[] fanin) {
+        int numSymbols = names.length;
+        int numGates = types.length;
+        int numInputs = inputs.length;
+
+        // Resolve the driver of every symbol
+        int[] driver = new int[numSymbols];
+        Arrays.fill(driver, -1);
+        boolean[] isInput = new boolean[numSymbols];
+        for (int s : inputs) {
+            isInput[s] = true;
+        }
+        for (int g = 0; g < numGates; g++) {
+            int out = gateOutput[g];
+            if (isInput[out] || driver[out] != -1) {
+                throw new IllegalStateException("Multiple gates have the same output: " + names[out]);
+            }
+            driver[out] = g;
+            int width = faninOffset[g + 1] - faninOffset[g];
+            if ((types[g] == NOT || types[g] == BUF) && width != 1) {
+                throw new IllegalArgumentException(typeName(types[g]) + " gate must have exactly one input.");
+            }
+            if (width == 0) {
+                throw new IllegalArgumentException("Gate driving " + names[out] + " has no inputs.");
+            }
+        }
+        for (int s = 0; s < numSymbols; s++) {
+            if (!isInput[s] && driver[s] == -1) {
+                throw new IllegalStateException("Line " + names[s] + " is not driven by any gate or primary input.");
+            }
+        }
+
+        // Kahn's algorithm over gates, computing the level of each gate on the way
+        int[] pending = new int[numGates];
+        int[] readersOffset = new int[numSymbols + 1];
+        for (int i = 0; i < fanin.length; i++) {
+            readersOffset[fanin[i] + 1]++;
+        }
+        for (int s = 0; s < numSymbols; s++) {
+            readersOffset[s + 1] += readersOffset[s];
+        }
+        int[] readers = new int[fanin.length];
+        int[] fill = Arrays.copyOf(readersOffset, numSymbols);
+        for (int g = 0; g < numGates; g++) {
+            for (int i = faninOffset[g]; i < faninOffset[g + 1]; i++) {
+                readers[fill[fanin[i]]++] = g;
+                if (driver[fanin[i]] != -1) {
+                    pending[g]++;
+                }
+            }
+        }
+
+        int[] level = new int[numGates];
+        int[] queue = new int[numGates];
+        int head = 0, tail = 0;
+        for (int g = 0; g < numGates; g++) {
+            if (pending[g] == 0) {
+                level[g] = 1;
+                queue[tail++] = g;
+            }
+        }
+        int maxLevel = 0;
+        while (head < tail) {
+            int g = queue[head++];
+            maxLevel = Math.max(maxLevel, level[g]);
+            int out = gateOutput[g];
+            for (int i = readersOffset[out]; i < readersOffset[out + 1]; i++) {
+                int r = readers[i];
+                level[r] = Math.max(level[r], level[g] + 1);
+                if (--pending[r] == 0) {
+                    queue[tail++] = r;
+                }
+            }
+        }
+        if (tail != numGates) {
+            throw new IllegalStateException("Circuit has cycles or disconnected components.");
+        }
+
+        // Stable counting sort of the gates by level
+        int[] levelOffset = new int[maxLevel + 1];
+        for (int g = 0; g < numGates; g++) {
+            levelOffset[level[g]]++;
+        }
+        for (int k = 1; k <= maxLevel; k++) {
+            levelOffset[k] += levelOffset[k - 1];
+        }
+        int[] order = new int[numGates];
+        int[] next = Arrays.copyOf(levelOffset, maxLevel + 1);
+        for (int g = 0; g < numGates; g++) {
+            order[next[level[g] - 1]++] = g;
+        }
+
+        // Renumber symbols into dense line ids
+        int[] lineOf = new int[numSymbols];
+        String[] lineNames = new String[numInputs + numGates];
+        for (int i = 0; i < numInputs; i++) {
+            lineOf[inputs[i]] = i;
+            lineNames[i] = names[inputs[i]];
+        }
+        for (int p = 0; p < numGates; p++) {
+            lineOf[gateOutput[order[p]]] = numInputs + p;
+            lineNames[numInputs + p] = names[gateOutput[order[p]]];
+        }
+
+        byte[] gateType = new byte[numGates];
+        int[] newFaninOffset = new int[numGates + 1];
+        int[] newFanin = new int[fanin.length];
+        for (int p = 0; p < numGates; p++) {
+            int g = order[p];
+            gateType[p] = types[g];
+            int k = newFaninOffset[p];
+            for (int i = faninOffset[g]; i < faninOffset[g + 1]; i++) {
+                newFanin[k++] = lineOf[fanin[i]];
+            }
+            newFaninOffset[p + 1] = k;
+        }
+
+        int[] primaryOutputs = new int[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            primaryOutputs[i] = lineOf[outputs[i]];
+        }
+
+        int numLines = numInputs + numGates;
+        int[] fanoutOffset = new int[numLines + 1];
+        int[] fanout = new int[newFanin.length];
+        buildFanout(numLines, newFaninOffset, newFanin, fanoutOffset, fanout);
+
+        return new CompiledCircuit(lineNames, numInputs, gateType, newFaninOffset, newFanin,
+                fanoutOffset, fanout, levelOffset, primaryOutputs);
+    }
+
+    /**
+     * Derives the fanout CSR arrays from the fanin CSR arrays.
+     */
+    static void buildFanout(int numLines, int[] faninOffset, int[] fanin, int[] fanoutOffset, int[] fanout) {
+        for (int i = 0; i < fanin.length; i++) {
+            fanoutOffset[fanin[i] + 1]++;
+        }
+        for (int l = 0; l < numLines; l++) {
+            fanoutOffset[l + 1] += fanoutOffset[l];
+        }
+        int[] fill = Arrays.copyOf(fanoutOffset, numLines);
+        for (int g = 0; g + 1 < faninOffset.length; g++) {
+            for (int i = faninOffset[g]; i < faninOffset[g + 1]; i++) {
+                fanout[fill[fanin[i]]++] = g;
+            }
+        }
+    }
+
+    /**
+     * Maps a gate type name as written in a .bench file to its opcode.
+     */
+    public static byte opcode(String type) {
+        switch (type.toUpperCase()) {
+            case "AND":
+                return AND;
+            case "NAND":
+                return NAND;
+            case "OR":
+                return OR;
+            case "NOR":
+                return NOR;
+            case "XOR":
+                return XOR;
+            case "XNOR":
+                return XNOR;
+            case "BUF":
+            case "BUFF":
+                return BUF;
+            case "NOT":
+                return NOT;
+            default:
+                throw new IllegalArgumentException("Unknown gate type: " + type);
+        }
+    }
+
+    public static String typeName(byte opcode) {
+        switch (opcode) {
+            case AND:
+                return "AND";
+            case NAND:
+                return "NAND";
+            case OR:
+                return "OR";
+            case NOR:
+                return "NOR";
+            case XOR:
+                return "XOR";
+            case XNOR:
+                return "XNOR";
+            case BUF:
+                return "BUFF";
+            case NOT:
+                return "NOT";
+            default:
+                throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Evaluates a single gate over a 0/1 value array.
+     *
+     * @param g      The gate index.
+     * @param values Current line values, indexed by line id.
+     * @return The output value of the gate.
+     */
+    int evaluate(int g, byte[] values) {
+        int from = faninOffset[g];
+        int to = faninOffset[g + 1];
+        int acc;
+        switch (gateType[g] & ~1) {
+            case AND:
+                acc = 1;
+                for (int i = from; i < to; i++) {
+                    acc &= values[fanin[i]];
+                }
+                break;
+            case OR:
+                acc = 0;
+                for (int i = from; i < to; i++) {
+                    acc |= values[fanin[i]];
+                }
+                break;
+            case XOR:
+                acc = 0;
+                for (int i = from; i < to; i++) {
+                    acc ^= values[fanin[i]];
+                }
+                break;
+            default: // BUF, NOT
+                acc = values[fanin[from]];
+                break;
+        }
+        return acc ^ (gateType[g] & 1);
+    }
+
+    /**
+     * Simulates the fault-free circuit in place.
+     *
+     * @param values Line values; the primary inputs must already be set.
+     */
+    public void simulate(byte[] values) {
+        for (int g = 0; g < numGates; g++) {
+            values[numInputs + g] = (byte) evaluate(g, values);
+        }
+    }
+
+    /**
+     * Simulates the circuit in place with a single stuck-at fault on a line.
+     *
+     * @param values     Line values; the primary inputs must already be set.
+     * @param faultLine  The faulty line id.
+     * @param stuckAt    The stuck value (0 or 1).
+     */
+    public void simulateWithFault(byte[] values, int faultLine, int stuckAt) {
+        simulateWithFault(values, faultLine, -1, stuckAt);
+    }
+
+    /**
+     * Simulates the circuit in place with a single stuck-at fault on a line or on one of its
+     * fanout branches.
+     *
+     * @param values     Line values; the primary inputs must already be set.
+     * @param faultLine  The faulty line id.
+     * @param faultGate  The gate whose input pin on {@code faultLine} is faulty, or -1 for the stem.
+     * @param stuckAt    The stuck value (0 or 1).
+     */
+    public void simulateWithFault(byte[] values, int faultLine, int faultGate, int stuckAt) {
+        if (faultGate >= 0) {
+            for (int g = 0; g < numGates; g++) {
+                values[numInputs + g] = (byte) (g == faultGate
+                        ? evaluate(g, values, faultLine, stuckAt) : evaluate(g, values));
+            }
+            return;
+        }
+        if (faultLine < numInputs) {
+            values[faultLine] = (byte) stuckAt;
+        }
+        for (int g = 0; g < numGates; g++) {
+            int out = numInputs + g;
+            values[out] = (byte) (out == faultLine ? stuckAt : evaluate(g, values));
+        }
+    }
+
+    /**
+     * Evaluates a gate whose input pins on {@code pinLine} read {@code pinValue} instead of the
+     * line value, as for a fault on a fanout branch.
+     */
+    int evaluate(int g, byte[] values, int pinLine, int pinValue) {
+        int from = faninOffset[g];
+        int to = faninOffset[g + 1];
+        int acc = (gateType[g] & ~1) == AND ? 1 : 0;
+        for (int i = from; i < to; i++) {
+            int v = fanin[i] == pinLine ? pinValue : values[fanin[i]];
+            switch (gateType[g] & ~1) {
+                case AND:
+                    acc &= v;
+                    break;
+                case OR:
+                    acc |= v;
+                    break;
+                default: // XOR, BUF, NOT
+                    acc ^= v;
+                    break;
+            }
+        }
+        return acc ^ (gateType[g] & 1);
+    }
+
+    /**
+     * Word-level counterpart of {@link #evaluate(int, byte[], int, int)}.
+     */
+    long evaluateWord(int g, long[] values, int pinLine, long pinWord) {
+        int from = faninOffset[g];
+        int to = faninOffset[g + 1];
+        long acc = (gateType[g] & ~1) == AND ? -1L : 0L;
+        for (int i = from; i < to; i++) {
+            long v = fanin[i] == pinLine ? pinWord : values[fanin[i]];
+            switch (gateType[g] & ~1) {
+                case AND:
+                    acc &= v;
+                    break;
+                case OR:
+                    acc |= v;
+                    break;
+                default: // XOR, BUF, NOT
+                    acc ^= v;
+                    break;
+            }
+        }
+        return (gateType[g] & 1) == 0 ? acc : ~acc;
+    }
+
+    /**
+     * Evaluates a single gate over bit-parallel words, one test vector per bit.
+     *
+     * @param g      The gate index.
+     * @param values Current line words, indexed by line id.
+     * @return The output word of the gate.
+     */
+    long evaluateWord(int g, long[] values) {
+        int from = faninOffset[g];
+        int to = faninOffset[g + 1];
+        long acc;
+        switch (gateType[g] & ~1) {
+            case AND:
+                acc = -1L;
+                for (int i = from; i < to; i++) {
+                    acc &= values[fanin[i]];
+                }
+                break;
+            case OR:
+                acc = 0L;
+                for (int i = from; i < to; i++) {
+                    acc |= values[fanin[i]];
+                }
+                break;
+            case XOR:
+                acc = 0L;
+                for (int i = from; i < to; i++) {
+                    acc ^= values[fanin[i]];
+                }
+                break;
+            default: // BUF, NOT
+                acc = values[fanin[from]];
+                break;
+        }
+        return (gateType[g] & 1) == 0 ? acc : ~acc;
+    }
+
+    /**
+     * Simulates 64 test vectors at once in place.
+     *
+     * @param values Line words; the primary input words must already be set.
+     */
+    public void simulateWords(long[] values) {
+        simulateWords(values, 0);
+    }
+
+    /**
+     * Re-evaluates every gate from {@code firstGate} onward over bit-parallel words, in generated
+     * code once {@link #setBytecodeEvaluation(boolean)} has enabled it.
+     */
+    public void simulateWords(long[] values, int firstGate) {
+        BytecodeEvaluator evaluator = bytecodeEvaluator;
+        if (evaluator != null) {
+            evaluator.simulateWords(values, firstGate);
+        } else {
+            interpretWords(values, firstGate, numGates);
+        }
+    }
+
+    /**
+     * Evaluates the gates {@code from} to {@code to} (exclusive) gate by gate over bit-parallel
+     * words.
+     */
+    void interpretWords(long[] values, int from, int to) {
+        for (int g = from; g < to; g++) {
+            values[numInputs + g] = evaluateWord(g, values);
+        }
+    }
+
+    /**
+     * Packs up to 64 consecutive test vectors into the primary-input words of a value array.
+     *
+     * @param testVectors The test vectors, each represented as a map from line IDs to values.
+     * @param start       Index of the first vector of the block.
+     * @param count       Number of vectors in the block (at most 64).
+     * @param values      Line words to fill; bit {@code k} holds vector {@code start + k}.
+     */
+    public void loadInputWords(List<Map<String, Integer>> testVectors, int start, int count, long[] values) {
+        Arrays.fill(values, 0, numInputs, 0L);
+        for (int k = 0; k < count; k++) {
+            Map<String, Integer> vector = testVectors.get(start + k);
+            for (int i = 0; i < numInputs; i++) {
+                Integer v = vector.get(lineNames[i]);
+                if (v == null) {
+                    throw new IllegalStateException("Input value for signal " + lineNames[i] + " is missing.");
+                }
+                values[i] |= (long) (v & 1) << k;
+            }
+        }
+    }
+
+    /**
+     * Copies a test vector into the primary-input slots of a value array.
+     *
+     * @param inputValues The input vector as a map from line IDs to values.
+     * @param values      Line values to fill.
+     */
+    public void loadInputs(Map<String, Integer> inputValues, byte[] values) {
+        for (int i = 0; i < numInputs; i++) {
+            Integer v = inputValues.get(lineNames[i]);
+            if (v == null) {
+                throw new IllegalStateException("Input value for signal " + lineNames[i] + " is missing.");
+            }
+            values[i] = (byte) (v & 1);
+        }
+    }
+
+    /**
+     * Collects the primary output values of a simulated value array.
+     */
+    public Map<String, Integer> outputValues(byte[] values) {
+        Map<String, Integer> outputValues = new HashMap<>();
+        for (int po : primaryOutputs) {
+            outputValues.put(lineNames[po], (int) values[po]);
+        }
+        return outputValues;
+    }
+
+    /**
+     * Returns true when two simulated value arrays disagree on any primary output.
+     */
+    public boolean outputsDiffer(byte[] a, byte[] b) {
+        for (int po : primaryOutputs) {
+            if (a[po] != b[po]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the dense id of a line.
+     *
+     * @param name The line ID as written in the .bench file.
+     */
+    public int lineId(String name) {
+        Integer id = lineIndex().get(name);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown line: " + name);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the dominator tree, basis lines and reachable outputs of the circuit, computed on
+     * first use and kept for the lifetime of the netlist.
+     */
+    public synchronized CircuitDominators dominators() {
+        if (dominators == null) {
+            dominators = new CircuitDominators(this);
+        }
+        return dominators;
+    }
+
+    /**
+     * Returns the SCOAP controllability and observability of every line, computed on first use.
+     */
+    public synchronized Scoap scoap() {
+        if (scoap == null) {
+            scoap = new Scoap(this);
+        }
+        return scoap;
+    }
+
+    /**
+     * Returns the statically learned implications of the circuit, learned on first use on all
+     * processors unless a table was loaded from the netlist cache.
+     */
+    public synchronized StaticLearning staticLearning() {
+        if (staticLearning == null) {
+            staticLearning = StaticLearning.learn(this, Runtime.getRuntime().availableProcessors());
+        }
+        return staticLearning;
+    }
+
+    synchronized void setStaticLearning(StaticLearning staticLearning) {
+        if (staticLearning.getNumLines() != numLines) {
+            throw new IllegalArgumentException("Implication table is for " + staticLearning.getNumLines()
+                    + " lines, the circuit has " + numLines);
+        }
+        this.staticLearning = staticLearning;
+    }
+
+    /**
+     * Switches word-level simulation between the gate interpreter and a class generated for this
+     * netlist. The class is generated on first use; if that fails, simulation stays interpreted.
+     *
+     * @param enabled True to simulate in generated code.
+     * @return True if generated code is now in use.
+     */
+    public synchronized boolean setBytecodeEvaluation(boolean enabled) {
+        if (enabled && generatedEvaluator == null) {
+            generatedEvaluator = BytecodeEvaluator.create(this);
+        }
+        bytecodeEvaluator = enabled && generatedEvaluator.isGenerated() ? generatedEvaluator : null;
+        return bytecodeEvaluator != null;
+    }
+
+    private synchronized Map<String, Integer> lineIndex() {
+        if (lineIndex == null) {
+            Map<String, Integer> index = new HashMap<>(numLines * 2);
+            for (int l = 0; l < numLines; l++) {
+                index.put(lineNames[l], l);
+            }
+            lineIndex = index;
+        }
+        return lineIndex;
+    }
+
+    /**
+     * Resolves the gate a fanout-branch fault sits in front of.
+     *
+     * @param fault The fault.
+     * @return The gate index, or -1 for a stem fault.
+     */
+    public int branchGate(Fault fault) {
+        if (fault.branch == null) {
+            return -1;
+        }
+        int line = lineId(fault.node);
+        int g = driver(lineId(fault.branch));
+        for (int i = fanoutOffset[line]; g >= 0 && i < fanoutOffset[line + 1]; i++) {
+            if (fanout[i] == g) {
+                return g;
+            }
+        }
+        throw new IllegalArgumentException("Line " + fault.node + " does not feed the gate driving " + fault.branch);
+    }
+
+    /**
+     * Returns the number of distinct gates reading a line.
+     */
+    public int fanoutCount(int line) {
+        int count = 0;
+        for (int i = fanoutOffset[line]; i < fanoutOffset[line + 1]; i++) {
+            if (i == fanoutOffset[line] || fanout[i] != fanout[i - 1]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public String lineName(int line) {
+        return lineNames[line];
+    }
+
+    /**
+     * Returns the gate driving a line, or -1 for a primary input.
+     */
+    public int driver(int line) {
+        return line < numInputs ? -1 : line - numInputs;
+    }
+
+    public int getNumInputs() {
+        return numInputs;
+    }
+
+    public int getNumGates() {
+        return numGates;
+    }
+
+    public int getNumLines() {
+        return numLines;
+    }
+
+    public int getNumLevels() {
+        return levelOffset.length - 1;
+    }
+
+    public int getNumOutputs() {
+        return primaryOutputs.length;
+    }
+
+    /**
+     * Returns the primary input IDs in declaration order.
+     */
+    public List<String> getPrimaryInputNames() {
+        return Arrays.asList(lineNames).subList(0, numInputs);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledCircuit{inputs=" + numInputs + ", outputs=" + primaryOutputs.length
+                + ", gates=" + numGates + ", levels=" + getNumLevels() + "}";
+    }
+}
@@ -0,0 +1,415 @@
+import java.util.*;
+
+/**
+ * Concurrent fault simulator.
+ * <p>
+ * Every line keeps, next to its good value, the records of the faulty machines whose value at
+ * that line diverges from the good machine. With binary values a divergent machine always holds
+ * the complement of the good value, so a record is just the fault id, and each line stores a
+ * sorted array of them.
+ * <p>
+ * State is kept from one vector to the next. Only gates reading a line whose good value or
+ * divergence records changed are re-evaluated, so streams of correlated vectors that flip few
+ * inputs cost little. Faults reaching a primary output are dropped from the whole fault list at
+ * once; stale records are skipped lazily and purged when enough of them have accumulated.
+ * <p>
+ * A fault on a fanout branch is evaluated only at the gate it feeds, where it diverges when the
+ * forced pin value changes the gate output.
+ */
+public class ConcurrentFaultSimulator implements FaultSimulationEngine {
+    private CompiledCircuit compiled;
+    private byte[] good;
+    private byte[] inputBits;
+
+    // Distinct (line, branch gate, stuck-at) fault sites
+    private int[] siteLine;
+    private byte[] siteStuckAt;
+    private boolean[] siteDetected;
+    private int[] stuckAt0Site;   // stem sites per line, -1 when none or dropped
+    private int[] stuckAt1Site;
+    private int[] branchOffset;   // branch sites of gate g, ascending, are branchSites[branchOffset[g] .. branchOffset[g + 1])
+    private int[] branchSites;
+
+    // Divergent fault records per line, sorted by site id
+    private int[][] records;
+    private int[] recordCount;
+    private int[] scratch;
+    private int[] cursor;
+    private int droppedSincePurge;
+
+    // Level-ordered event buckets; level k starts at levelOffset[k - 1]
+    private int[] queue;
+    private int[] levelFill;
+    private boolean[] scheduled;
+    private long gateEvaluations;
+
+    public ConcurrentFaultSimulator(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public ConcurrentFaultSimulator(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        int numLines = compiled.getNumLines();
+        this.good = new byte[numLines];
+        this.inputBits = new byte[numLines];
+        this.stuckAt0Site = new int[numLines];
+        this.stuckAt1Site = new int[numLines];
+        this.records = new int[numLines][];
+        this.recordCount = new int[numLines];
+        this.queue = new int[compiled.getNumGates()];
+        this.levelFill = new int[compiled.getNumLevels() + 1];
+        this.scheduled = new boolean[compiled.getNumGates()];
+
+        int maxFanin = 1;
+        for (int g = 0; g < compiled.getNumGates(); g++) {
+            maxFanin = Math.max(maxFanin, compiled.faninOffset[g + 1] - compiled.faninOffset[g]);
+        }
+        this.cursor = new int[maxFanin];
+    }
+
+    @Override
+    public double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        int[] siteOf = buildSites(index);
+        int remaining = siteLine.length;
+        reset();
+
+        boolean first = true;
+        for (Map<String, Integer> testVector : testVectors) {
+            if (remaining == 0) {
+                break;
+            }
+            compiled.loadInputs(testVector, inputBits);
+            applyInputs(first);
+            first = false;
+            propagate();
+            remaining -= dropDetected();
+        }
+
+        int detectedFaults = 0;
+        for (int f = 0; f < index.size(); f++) {
+            if (siteDetected[siteOf[f]]) {
+                detectedFaults++;
+            } else {
+                System.out.println("Undetected Fault: " + index.fault(f));
+            }
+        }
+
+        // Calculate fault coverage
+        return (double) detectedFaults / faults.size();
+    }
+
+    private int[] buildSites(FaultIndex index) {
+        Arrays.fill(stuckAt0Site, -1);
+        Arrays.fill(stuckAt1Site, -1);
+        Map<Long, Integer> sites = new HashMap<>();
+        List<Integer> firstFault = new ArrayList<>();
+        int[] siteOf = new int[index.size()];
+        for (int f = 0; f < index.size(); f++) {
+            Integer site = sites.get(index.siteKey(f));
+            if (site == null) {
+                site = sites.size();
+                sites.put(index.siteKey(f), site);
+                firstFault.add(f);
+            }
+            siteOf[f] = site;
+        }
+
+        int numSites = sites.size();
+        siteLine = new int[numSites];
+        siteStuckAt = new byte[numSites];
+        siteDetected = new boolean[numSites];
+        int[] siteGate = new int[numSites];
+        branchOffset = new int[compiled.getNumGates() + 1];
+        for (int site = 0; site < numSites; site++) {
+            int f = firstFault.get(site);
+            siteLine[site] = index.line[f];
+            siteStuckAt[site] = index.stuckAt[f];
+            siteGate[site] = index.gate[f];
+            if (siteGate[site] >= 0) {
+                branchOffset[siteGate[site] + 1]++;
+            } else if (siteStuckAt[site] == 0) {
+                stuckAt0Site[siteLine[site]] = site;
+            } else {
+                stuckAt1Site[siteLine[site]] = site;
+            }
+        }
+        for (int g = 0; g < compiled.getNumGates(); g++) {
+            branchOffset[g + 1] += branchOffset[g];
+        }
+        branchSites = new int[branchOffset[compiled.getNumGates()]];
+        int[] fill = Arrays.copyOf(branchOffset, compiled.getNumGates());
+        for (int site = 0; site < numSites; site++) {
+            if (siteGate[site] >= 0) {
+                branchSites[fill[siteGate[site]]++] = site;
+            }
+        }
+        scratch = new int[numSites + 2];
+        return siteOf;
+    }
+
+    private void reset() {
+        Arrays.fill(recordCount, 0);
+        Arrays.fill(levelFill, 0);
+        Arrays.fill(scheduled, false);
+        droppedSincePurge = 0;
+    }
+
+    /**
+     * Applies the next vector to the primary inputs and schedules the gates it affects.
+     *
+     * @param full Schedule every gate, used for the first vector.
+     */
+    private void applyInputs(boolean full) {
+        for (int i = 0; i < compiled.numInputs; i++) {
+            if (!full && inputBits[i] == good[i]) {
+                continue;
+            }
+            good[i] = inputBits[i];
+
+            // A primary input diverges only under its own activated fault
+            int local = localSite(i, good[i]);
+            scratch[0] = local;
+            updateRecords(i, local >= 0 ? 1 : 0);
+            scheduleFanout(i);
+        }
+        if (full) {
+            for (int g = 0; g < compiled.numGates; g++) {
+                schedule(g);
+            }
+        }
+    }
+
+    private void propagate() {
+        for (int level = 1; level <= compiled.getNumLevels(); level++) {
+            int base = compiled.levelOffset[level - 1];
+            // Gates of a level only schedule gates of higher levels
+            for (int k = 0; k < levelFill[level]; k++) {
+                int g = queue[base + k];
+                scheduled[g] = false;
+                evaluateGate(g);
+            }
+            levelFill[level] = 0;
+        }
+    }
+
+    /**
+     * Re-evaluates the good machine and every divergent faulty machine at one gate.
+     */
+    private void evaluateGate(int g) {
+        gateEvaluations++;
+        int out = compiled.numInputs + g;
+        int from = compiled.faninOffset[g];
+        int width = compiled.faninOffset[g + 1] - from;
+        int newGood = compiled.evaluate(g, good);
+        int local = localSite(out, newGood);
+
+        // Merge the input records; each candidate fault is evaluated once with its own input values
+        for (int p = 0; p < width; p++) {
+            cursor[p] = 0;
+        }
+        int count = 0;
+        boolean localEmitted = local < 0;
+        int branch = branchOffset[g];
+        while (true) {
+            int f = Integer.MAX_VALUE;
+            for (int p = 0; p < width; p++) {
+                int in = compiled.fanin[from + p];
+                int c = skipDropped(in, cursor[p]);
+                cursor[p] = c;
+                if (c < recordCount[in]) {
+                    f = Math.min(f, records[in][c]);
+                }
+            }
+            while (branch < branchOffset[g + 1] && siteDetected[branchSites[branch]]) {
+                branch++;
+            }
+            int b = branch < branchOffset[g + 1] ? branchSites[branch] : Integer.MAX_VALUE;
+            if (b < f && (localEmitted || b < local)) {
+                // A branch fault sees good values on every other pin of the gate
+                branch++;
+                if (compiled.evaluate(g, good, siteLine[b], siteStuckAt[b]) != newGood) {
+                    scratch[count++] = b;
+                }
+                continue;
+            }
+            if (!localEmitted && local <= f) {
+                // The output's own fault overrides whatever reaches the gate
+                scratch[count++] = local;
+                localEmitted = true;
+                if (local == f) {
+                    advance(f, from, width);
+                }
+                continue;
+            }
+            if (f == Integer.MAX_VALUE) {
+                break;
+            }
+            if (evaluateFaulty(g, f, from, width) != newGood) {
+                scratch[count++] = f;
+            }
+            advance(f, from, width);
+        }
+
+        boolean changed = newGood != good[out];
+        good[out] = (byte) newGood;
+        if (updateRecords(out, count) || changed) {
+            scheduleFanout(out);
+        }
+    }
+
+    private int evaluateFaulty(int g, int f, int from, int width) {
+        int acc;
+        byte type = compiled.gateType[g];
+        switch (type & ~1) {
+            case CompiledCircuit.AND:
+                acc = 1;
+                for (int p = 0; p < width; p++) {
+                    acc &= faultyInput(f, from, p);
+                }
+                break;
+            case CompiledCircuit.OR:
+                acc = 0;
+                for (int p = 0; p < width; p++) {
+                    acc |= faultyInput(f, from, p);
+                }
+                break;
+            case CompiledCircuit.XOR:
+                acc = 0;
+                for (int p = 0; p < width; p++) {
+                    acc ^= faultyInput(f, from, p);
+                }
+                break;
+            default: // BUF, NOT
+                acc = faultyInput(f, from, 0);
+                break;
+        }
+        return acc ^ (type & 1);
+    }
+
+    /**
+     * Value of an input pin in the machine of fault {@code f}: the good value, complemented when
+     * the input line holds a record for {@code f} at the current merge position.
+     */
+    private int faultyInput(int f, int from, int p) {
+        int in = compiled.fanin[from + p];
+        int c = cursor[p];
+        boolean diverges = c < recordCount[in] && records[in][c] == f;
+        return diverges ? good[in] ^ 1 : good[in];
+    }
+
+    private void advance(int f, int from, int width) {
+        for (int p = 0; p < width; p++) {
+            int in = compiled.fanin[from + p];
+            if (cursor[p] < recordCount[in] && records[in][cursor[p]] == f) {
+                cursor[p]++;
+            }
+        }
+    }
+
+    private int skipDropped(int line, int c) {
+        while (c < recordCount[line] && siteDetected[records[line][c]]) {
+            c++;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the undetected fault on a line that its good value activates, or -1.
+     */
+    private int localSite(int line, int goodValue) {
+        return goodValue == 0 ? stuckAt1Site[line] : stuckAt0Site[line];
+    }
+
+    /**
+     * Replaces the records of a line with the first {@code count} entries of the scratch buffer.
+     *
+     * @return True if the records changed.
+     */
+    private boolean updateRecords(int line, int count) {
+        int[] current = records[line];
+        if (count == recordCount[line]) {
+            boolean same = true;
+            for (int k = 0; k < count && same; k++) {
+                same = current[k] == scratch[k];
+            }
+            if (same) {
+                return false;
+            }
+        }
+        if (current == null || current.length < count) {
+            current = new int[Math.max(4, Integer.highestOneBit(Math.max(1, count)) << 1)];
+            records[line] = current;
+        }
+        System.arraycopy(scratch, 0, current, 0, count);
+        recordCount[line] = count;
+        return true;
+    }
+
+    private void scheduleFanout(int line) {
+        for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+            schedule(compiled.fanout[i]);
+        }
+    }
+
+    private void schedule(int g) {
+        if (scheduled[g]) {
+            return;
+        }
+        scheduled[g] = true;
+        int level = compiled.gateLevel[g];
+        queue[compiled.levelOffset[level - 1] + levelFill[level]++] = g;
+    }
+
+    /**
+     * Drops every fault with a record on a primary output.
+     *
+     * @return The number of sites newly detected.
+     */
+    private int dropDetected() {
+        int newlyDetected = 0;
+        for (int po : compiled.primaryOutputs) {
+            for (int k = 0; k < recordCount[po]; k++) {
+                int site = records[po][k];
+                if (!siteDetected[site]) {
+                    siteDetected[site] = true;
+                    newlyDetected++;
+                    if (stuckAt0Site[siteLine[site]] == site) {
+                        stuckAt0Site[siteLine[site]] = -1;
+                    } else if (stuckAt1Site[siteLine[site]] == site) {
+                        stuckAt1Site[siteLine[site]] = -1;
+                    }
+                }
+            }
+        }
+
+        droppedSincePurge += newlyDetected;
+        if (droppedSincePurge * 4 >= siteLine.length) {
+            purge();
+        }
+        return newlyDetected;
+    }
+
+    /**
+     * Removes the records of dropped faults from every line.
+     */
+    private void purge() {
+        for (int l = 0; l < records.length; l++) {
+            int kept = 0;
+            for (int k = 0; k < recordCount[l]; k++) {
+                if (!siteDetected[records[l][k]]) {
+                    records[l][kept++] = records[l][k];
+                }
+            }
+            recordCount[l] = kept;
+        }
+        droppedSincePurge = 0;
+    }
+
+    /**
+     * Returns the number of gate evaluations performed so far.
+     */
+    public long getGateEvaluations() {
+        return gateEvaluations;
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.*;
+
+/**
+ * Critical path tracing fault simulator.
+ * <p>
+ * A line is critical for a vector when flipping its good value alone flips a primary output; its
+ * stuck-at fault opposite to the good value is then detected. After one good-machine pass,
+ * criticality is traced backward toward the primary outputs, only for the lines that still carry
+ * undetected faults, and memoized for the rest of the vector:
+ * <ul>
+ *     <li>Inside a fanout-free region, a line feeding a single gate is critical when the gate
+ *     output is critical and the input is sensitive, i.e. flipping it flips the output.</li>
+ *     <li>A fanout stem (several reading gates) can reconverge, so its criticality is resolved by
+ *     flipping it and propagating events forward. The check stops as soon as a primary output
+ *     flips, the events die out, or the only remaining event is a line whose criticality is
+ *     already known.</li>
+ * </ul>
+ * A fanout-branch fault is detected when its gate output is critical and the forced pin value
+ * flips the gate output.
+ */
+public class CriticalPathTracer implements FaultSimulationEngine {
+    private CompiledCircuit compiled;
+    private int[] fanoutCount;      // distinct gates reading each line
+    private byte[] good;
+    private boolean[] critical;     // valid when criticalStamp matches the vector stamp
+    private int[] criticalStamp;
+    private int vector;
+    private int[] chain;
+
+    // Forward stem check: epoch-stamped overlay and level buckets, as in the event-driven engine
+    private byte[] flipped;
+    private int[] lineStamp;
+    private int[] gateStamp;
+    private int[] queue;
+    private int[] levelFill;
+    private int[] levelStamp;
+    private int epoch;
+
+    private long stemChecks;
+    private long gateEvaluations;
+    private GoodMachineCache goodMachineCache;
+
+    public CriticalPathTracer(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public CriticalPathTracer(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        int numLines = compiled.getNumLines();
+        this.fanoutCount = new int[numLines];
+        for (int line = 0; line < numLines; line++) {
+            fanoutCount[line] = compiled.fanoutCount(line);
+        }
+        this.good = new byte[numLines];
+        this.critical = new boolean[numLines];
+        this.criticalStamp = new int[numLines];
+        this.chain = new int[numLines];
+        this.flipped = new byte[numLines];
+        this.lineStamp = new int[numLines];
+        this.gateStamp = new int[compiled.getNumGates()];
+        this.queue = new int[compiled.getNumGates()];
+        this.levelFill = new int[compiled.getNumLevels() + 1];
+        this.levelStamp = new int[compiled.getNumLevels() + 1];
+    }
+
+    @Override
+    public void setGoodMachineCache(GoodMachineCache cache) {
+        this.goodMachineCache = cache;
+    }
+
+    @Override
+    public double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+
+        int[] remaining = new int[index.size()];
+        for (int f = 0; f < remaining.length; f++) {
+            remaining[f] = f;
+        }
+        int remainingCount = remaining.length;
+
+        GoodMachineCache cache = goodMachineCache != null && goodMachineCache.matches(testVectors) ? goodMachineCache : null;
+        for (int v = 0; v < testVectors.size(); v++) {
+            if (remainingCount == 0) {
+                break;
+            }
+            if (cache != null) {
+                System.arraycopy(cache.values(v), 0, good, 0, good.length);
+            } else {
+                compiled.loadInputs(testVectors.get(v), good);
+                compiled.simulate(good);
+            }
+            nextVector();
+
+            int kept = 0;
+            for (int k = 0; k < remainingCount; k++) {
+                int f = remaining[k];
+                if (isDetected(index.line[f], index.gate[f], index.stuckAt[f])) {
+                    detected[f] = true;
+                } else {
+                    remaining[kept++] = f;
+                }
+            }
+            remainingCount = kept;
+        }
+
+        int detectedFaults = 0;
+        for (int f = 0; f < detected.length; f++) {
+            if (detected[f]) {
+                detectedFaults++;
+            } else {
+                System.out.println("Undetected Fault: " + index.fault(f));
+            }
+        }
+
+        // Calculate fault coverage
+        return (double) detectedFaults / faults.size();
+    }
+
+    /**
+     * Computes the criticality of every line for one vector.
+     *
+     * @param goodValues Fault-free line values for the vector.
+     * @return Per-line criticality, valid until the next call.
+     */
+    public boolean[] trace(byte[] goodValues) {
+        System.arraycopy(goodValues, 0, good, 0, good.length);
+        nextVector();
+        // Every line is read only by higher lines, so a reverse sweep resolves consumers first
+        for (int line = compiled.getNumLines() - 1; line >= 0; line--) {
+            isCritical(line);
+        }
+        return critical;
+    }
+
+    /**
+     * Resolves the criticality of a line for the current vector, memoizing every line visited.
+     * The walk follows the fanout-free region up to its root, stopping early at the first
+     * insensitive gate input.
+     */
+    private boolean isCritical(int line) {
+        int count = 0;
+        int l = line;
+        boolean result;
+        while (true) {
+            if (criticalStamp[l] == vector) {
+                result = critical[l];
+                break;
+            }
+            chain[count++] = l;
+            if (compiled.isOutput[l]) {
+                result = true;
+                break;
+            }
+            if (fanoutCount[l] == 0) {
+                result = false;
+                break;
+            }
+            if (fanoutCount[l] > 1) {
+                result = stemReachesOutput(l);
+                break;
+            }
+            int g = compiled.fanout[compiled.fanoutOffset[l]];
+            if (!sensitive(g, l, good[l] ^ 1)) {
+                result = false;
+                break;
+            }
+            l = compiled.numInputs + g;
+        }
+
+        // Each line of the chain flips the next one, so they all share the result
+        for (int k = 0; k < count; k++) {
+            critical[chain[k]] = result;
+            criticalStamp[chain[k]] = vector;
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the fault is detected by the vector last traced.
+     */
+    private boolean isDetected(int line, int faultGate, int stuckAt) {
+        if (good[line] == stuckAt) {
+            return false;
+        }
+        if (faultGate < 0) {
+            return isCritical(line);
+        }
+        return sensitive(faultGate, line, stuckAt) && isCritical(compiled.numInputs + faultGate);
+    }
+
+    /**
+     * Returns true if forcing every pin of a gate that reads {@code line} to {@code value} flips
+     * the gate output.
+     */
+    private boolean sensitive(int g, int line, int value) {
+        gateEvaluations++;
+        return compiled.evaluate(g, good, line, value) != good[compiled.numInputs + g];
+    }
+
+    /**
+     * Flips a fanout stem and propagates the change forward until its criticality is known.
+     */
+    private boolean stemReachesOutput(int stem) {
+        stemChecks++;
+        nextEpoch();
+        flipped[stem] = (byte) (good[stem] ^ 1);
+        lineStamp[stem] = epoch;
+        int pending = schedule(stem);
+
+        int numLevels = compiled.getNumLevels();
+        for (int level = compiled.gateLevel[compiled.fanout[compiled.fanoutOffset[stem]]]; level <= numLevels; level++) {
+            if (levelStamp[level] != epoch) {
+                continue;
+            }
+            int base = compiled.levelOffset[level - 1];
+            for (int k = 0; k < levelFill[level]; k++) {
+                int g = queue[base + k];
+                int out = compiled.numInputs + g;
+                pending--;
+                gateEvaluations++;
+                int v = evaluate(g);
+                if (v == good[out]) {
+                    if (pending == 0) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (compiled.isOutput[out]) {
+                    return true;
+                }
+                if (pending == 0 && criticalStamp[out] == vector) {
+                    // The flip now lives on this line alone, whose criticality is already known
+                    return critical[out];
+                }
+                flipped[out] = (byte) v;
+                lineStamp[out] = epoch;
+                pending += schedule(out);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Schedules every gate reading a changed line.
+     *
+     * @return The number of gates newly scheduled.
+     */
+    private int schedule(int line) {
+        int scheduled = 0;
+        for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+            int g = compiled.fanout[i];
+            if (gateStamp[g] == epoch) {
+                continue;
+            }
+            gateStamp[g] = epoch;
+            int level = compiled.gateLevel[g];
+            if (levelStamp[level] != epoch) {
+                levelStamp[level] = epoch;
+                levelFill[level] = 0;
+            }
+            queue[compiled.levelOffset[level - 1] + levelFill[level]++] = g;
+            scheduled++;
+        }
+        return scheduled;
+    }
+
+    private void nextVector() {
+        if (++vector == Integer.MAX_VALUE) {
+            Arrays.fill(criticalStamp, 0);
+            vector = 1;
+        }
+    }
+
+    private void nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            // Stamps would wrap around; start over from a clean slate
+            Arrays.fill(lineStamp, 0);
+            Arrays.fill(gateStamp, 0);
+            Arrays.fill(levelStamp, 0);
+            epoch = 1;
+        }
+    }
+
+    private int value(int line) {
+        return lineStamp[line] == epoch ? flipped[line] : good[line];
+    }
+
+    private int evaluate(int g) {
+        int[] fanin = compiled.fanin;
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        int acc;
+        switch (compiled.gateType[g] & ~1) {
+            case CompiledCircuit.AND:
+                acc = 1;
+                for (int i = from; i < to; i++) {
+                    acc &= value(fanin[i]);
+                }
+                break;
+            case CompiledCircuit.OR:
+                acc = 0;
+                for (int i = from; i < to; i++) {
+                    acc |= value(fanin[i]);
+                }
+                break;
+            case CompiledCircuit.XOR:
+                acc = 0;
+                for (int i = from; i < to; i++) {
+                    acc ^= value(fanin[i]);
+                }
+                break;
+            default: // BUF, NOT
+                acc = value(fanin[from]);
+                break;
+        }
+        return acc ^ (compiled.gateType[g] & 1);
+    }
+
+    /**
+     * Returns the number of forward stem checks performed so far.
+     */
+    public long getStemChecks() {
+        return stemChecks;
+    }
+
+    /**
+     * Returns the number of gate evaluations spent on sensitivity and stem checks so far.
+     */
+    public long getGateEvaluations() {
+        return gateEvaluations;
+    }
+}
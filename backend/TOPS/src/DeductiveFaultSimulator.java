@@ -0,0 +1,332 @@
+import java.util.*;
+
+/**
+ * Deductive fault simulator.
+ * <p>
+ * One good-machine pass is made per vector. Alongside it, every line gets the list of faults that
+ * would flip its value, deduced from the lists on the gate inputs with the controlling and
+ * non-controlling value rules of each gate type. The faults in the lists of the primary outputs are
+ * detected by the vector, so all faults are handled in a single pass instead of one resimulation
+ * per fault.
+ * <p>
+ * A fault on a fanout branch is added only to the list seen by the gate input it sits on.
+ * <p>
+ * Fault lists are bitsets over a dense index of the distinct fault sites still undetected. The
+ * index is rebuilt once half of it has been dropped, so the lists shrink as coverage grows.
+ */
+public class DeductiveFaultSimulator implements FaultSimulationEngine {
+    private CompiledCircuit compiled;
+    private byte[] good;
+
+    // Distinct (line, branch gate, stuck-at) sites of the current fault list
+    private int[] siteLine;
+    private int[] siteGate;
+    private byte[] siteStuckAt;
+    private boolean[] siteDetected;
+    private int[] stuckAt0Site;     // stem sites per line, -1 when none
+    private int[] stuckAt1Site;
+    private int[] branchOffset;     // branch sites of gate g are branchSites[branchOffset[g] .. branchOffset[g + 1])
+    private int[] branchSites;
+
+    // Dense index of the sites still undetected
+    private int[] slotSite;
+    private int[] siteSlot;         // -1 when detected
+    private int words;
+    private long[] lists;           // words per line
+
+    // Per-pin view of the input lists of the gate being processed
+    private long[][] pinArray;
+    private int[] pinBase;
+    private long[] pinLists;
+    private GoodMachineCache goodMachineCache;
+
+    public DeductiveFaultSimulator(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public DeductiveFaultSimulator(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        this.good = new byte[compiled.getNumLines()];
+        this.stuckAt0Site = new int[compiled.getNumLines()];
+        this.stuckAt1Site = new int[compiled.getNumLines()];
+
+        int maxFanin = 1;
+        for (int g = 0; g < compiled.getNumGates(); g++) {
+            maxFanin = Math.max(maxFanin, compiled.faninOffset[g + 1] - compiled.faninOffset[g]);
+        }
+        this.pinArray = new long[maxFanin][];
+        this.pinBase = new int[maxFanin];
+    }
+
+    @Override
+    public void setGoodMachineCache(GoodMachineCache cache) {
+        this.goodMachineCache = cache;
+    }
+
+    @Override
+    public double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        int[] siteOf = buildSites(index);
+        int remaining = siteLine.length;
+        int indexed = 0;
+
+        GoodMachineCache cache = goodMachineCache != null && goodMachineCache.matches(testVectors) ? goodMachineCache : null;
+        for (int v = 0; v < testVectors.size(); v++) {
+            if (remaining == 0) {
+                break;
+            }
+            if (remaining * 2 <= indexed || indexed == 0) {
+                indexed = reindex();
+            }
+
+            if (cache != null) {
+                System.arraycopy(cache.values(v), 0, good, 0, good.length);
+            } else {
+                compiled.loadInputs(testVectors.get(v), good);
+                compiled.simulate(good);
+            }
+            remaining -= deduce();
+        }
+
+        int detectedFaults = 0;
+        for (int f = 0; f < index.size(); f++) {
+            if (siteDetected[siteOf[f]]) {
+                detectedFaults++;
+            } else {
+                System.out.println("Undetected Fault: " + index.fault(f));
+            }
+        }
+
+        // Calculate fault coverage
+        return (double) detectedFaults / faults.size();
+    }
+
+    /**
+     * Merges duplicate faults into distinct sites.
+     *
+     * @return The site of every fault of the index.
+     */
+    private int[] buildSites(FaultIndex index) {
+        Map<Long, Integer> sites = new HashMap<>();
+        List<Integer> firstFault = new ArrayList<>();
+        int[] siteOf = new int[index.size()];
+        for (int f = 0; f < index.size(); f++) {
+            Integer site = sites.get(index.siteKey(f));
+            if (site == null) {
+                site = sites.size();
+                sites.put(index.siteKey(f), site);
+                firstFault.add(f);
+            }
+            siteOf[f] = site;
+        }
+
+        int numSites = sites.size();
+        siteLine = new int[numSites];
+        siteGate = new int[numSites];
+        siteStuckAt = new byte[numSites];
+        siteDetected = new boolean[numSites];
+        siteSlot = new int[numSites];
+        Arrays.fill(stuckAt0Site, -1);
+        Arrays.fill(stuckAt1Site, -1);
+        branchOffset = new int[compiled.getNumGates() + 1];
+        for (int site = 0; site < numSites; site++) {
+            int f = firstFault.get(site);
+            siteLine[site] = index.line[f];
+            siteGate[site] = index.gate[f];
+            siteStuckAt[site] = index.stuckAt[f];
+            if (siteGate[site] >= 0) {
+                branchOffset[siteGate[site] + 1]++;
+            } else if (siteStuckAt[site] == 0) {
+                stuckAt0Site[siteLine[site]] = site;
+            } else {
+                stuckAt1Site[siteLine[site]] = site;
+            }
+        }
+        for (int g = 0; g < compiled.getNumGates(); g++) {
+            branchOffset[g + 1] += branchOffset[g];
+        }
+        branchSites = new int[branchOffset[compiled.getNumGates()]];
+        int[] fill = Arrays.copyOf(branchOffset, compiled.getNumGates());
+        for (int site = 0; site < numSites; site++) {
+            if (siteGate[site] >= 0) {
+                branchSites[fill[siteGate[site]]++] = site;
+            }
+        }
+        return siteOf;
+    }
+
+    /**
+     * Renumbers the undetected sites densely and resizes the fault lists.
+     *
+     * @return The number of indexed sites.
+     */
+    private int reindex() {
+        Arrays.fill(siteSlot, -1);
+        int count = 0;
+        for (boolean detected : siteDetected) {
+            if (!detected) {
+                count++;
+            }
+        }
+        slotSite = new int[count];
+        int slot = 0;
+        for (int s = 0; s < siteLine.length; s++) {
+            if (siteDetected[s]) {
+                continue;
+            }
+            slotSite[slot] = s;
+            siteSlot[s] = slot;
+            slot++;
+        }
+        words = Math.max(1, (count + 63) / 64);
+        lists = new long[compiled.getNumLines() * words];
+        pinLists = new long[pinArray.length * words];
+        return count;
+    }
+
+    /**
+     * Deduces the fault list of every line for the current good-machine values and drops the
+     * faults reaching a primary output.
+     *
+     * @return The number of sites newly detected.
+     */
+    private int deduce() {
+        int numInputs = compiled.numInputs;
+        for (int i = 0; i < numInputs; i++) {
+            Arrays.fill(lists, i * words, (i + 1) * words, 0L);
+            addLocalFault(i);
+        }
+
+        for (int g = 0; g < compiled.numGates; g++) {
+            int out = numInputs + g;
+            int from = compiled.faninOffset[g];
+            int to = compiled.faninOffset[g + 1];
+            int base = out * words;
+
+            preparePins(g, from, to);
+            int width = to - from;
+
+            switch (compiled.gateType[g] & ~1) {
+                case CompiledCircuit.AND:
+                    deduceControlled(from, width, base, 0);
+                    break;
+                case CompiledCircuit.OR:
+                    deduceControlled(from, width, base, 1);
+                    break;
+                case CompiledCircuit.XOR:
+                    // A fault flips the output when it flips an odd number of inputs
+                    Arrays.fill(lists, base, base + words, 0L);
+                    for (int p = 0; p < width; p++) {
+                        long[] in = pinArray[p];
+                        for (int w = 0; w < words; w++) {
+                            lists[base + w] ^= in[pinBase[p] + w];
+                        }
+                    }
+                    break;
+                default: // BUF, NOT
+                    System.arraycopy(pinArray[0], pinBase[0], lists, base, words);
+                    break;
+            }
+            addLocalFault(out);
+        }
+
+        // Faults on the list of any primary output are detected
+        int newlyDetected = 0;
+        for (int po : compiled.primaryOutputs) {
+            int base = po * words;
+            for (int w = 0; w < words; w++) {
+                long bits = lists[base + w];
+                while (bits != 0) {
+                    int site = slotSite[w * 64 + Long.numberOfTrailingZeros(bits)];
+                    if (!siteDetected[site]) {
+                        siteDetected[site] = true;
+                        newlyDetected++;
+                        // Drop it so it is no longer added to any list
+                        siteSlot[site] = -1;
+                    }
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return newlyDetected;
+    }
+
+    /**
+     * Points every input pin of a gate at its fault list. Pins carrying an activated branch fault
+     * get a private copy of the line's list with that fault added.
+     */
+    private void preparePins(int g, int from, int to) {
+        for (int p = 0; p < to - from; p++) {
+            pinArray[p] = lists;
+            pinBase[p] = compiled.fanin[from + p] * words;
+        }
+        for (int k = branchOffset[g]; k < branchOffset[g + 1]; k++) {
+            int site = branchSites[k];
+            int slot = siteSlot[site];
+            if (slot < 0 || good[siteLine[site]] == siteStuckAt[site]) {
+                continue;
+            }
+            for (int p = 0; p < to - from; p++) {
+                if (compiled.fanin[from + p] != siteLine[site]) {
+                    continue;
+                }
+                if (pinArray[p] == lists) {
+                    System.arraycopy(lists, pinBase[p], pinLists, p * words, words);
+                    pinArray[p] = pinLists;
+                    pinBase[p] = p * words;
+                }
+                pinLists[p * words + slot / 64] |= 1L << (slot % 64);
+            }
+        }
+    }
+
+    /**
+     * Fault list rule for AND/NAND (controlling value 0) and OR/NOR (controlling value 1).
+     * With no input at the controlling value, any input flip propagates. Otherwise a fault must
+     * flip every controlling input and none of the others.
+     */
+    private void deduceControlled(int from, int width, int base, int controlling) {
+        int controllingInputs = 0;
+        for (int p = 0; p < width; p++) {
+            if (good[compiled.fanin[from + p]] == controlling) {
+                controllingInputs++;
+            }
+        }
+
+        if (controllingInputs == 0) {
+            Arrays.fill(lists, base, base + words, 0L);
+            for (int p = 0; p < width; p++) {
+                long[] in = pinArray[p];
+                for (int w = 0; w < words; w++) {
+                    lists[base + w] |= in[pinBase[p] + w];
+                }
+            }
+            return;
+        }
+
+        Arrays.fill(lists, base, base + words, -1L);
+        for (int p = 0; p < width; p++) {
+            long[] in = pinArray[p];
+            if (good[compiled.fanin[from + p]] == controlling) {
+                for (int w = 0; w < words; w++) {
+                    lists[base + w] &= in[pinBase[p] + w];
+                }
+            } else {
+                for (int w = 0; w < words; w++) {
+                    lists[base + w] &= ~in[pinBase[p] + w];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the line's own stem fault that is activated by its good value, if still undetected.
+     */
+    private void addLocalFault(int line) {
+        int site = good[line] == 0 ? stuckAt1Site[line] : stuckAt0Site[line];
+        int slot = site < 0 ? -1 : siteSlot[site];
+        if (slot >= 0) {
+            lists[line * words + slot / 64] |= 1L << (slot % 64);
+        }
+    }
+}
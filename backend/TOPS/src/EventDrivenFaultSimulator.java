@@ -0,0 +1,245 @@
+import java.util.*;
+
+/**
+ * Event-driven, selective-trace fault simulator.
+ * <p>
+ * The good machine is simulated once per vector. Each fault is then injected on top of the cached
+ * good values and only lines whose value changes are propagated, level by level, along their
+ * fanout. Everything outside the fault's active fanout cone is never touched. A fault is reported
+ * as detected as soon as a primary output differs.
+ * <p>
+ * Faulty values live in an overlay stamped with a per-fault epoch, so nothing has to be copied or
+ * restored between faults.
+ */
+public class EventDrivenFaultSimulator implements FaultSimulationEngine {
+    private CompiledCircuit compiled;
+    private byte[] good;
+    private byte[] faulty;      // faulty value of a line, valid when lineStamp matches the epoch
+    private int[] lineStamp;
+    private int[] gateStamp;    // gate already scheduled in the current epoch
+    private int[] queue;        // level buckets; level k starts at levelOffset[k - 1]
+    private int[] levelFill;
+    private int[] levelStamp;
+    private int epoch;
+    private long gateEvaluations;
+    private GoodMachineCache goodMachineCache;
+
+    public EventDrivenFaultSimulator(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public EventDrivenFaultSimulator(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        this.good = new byte[compiled.getNumLines()];
+        this.faulty = new byte[compiled.getNumLines()];
+        this.lineStamp = new int[compiled.getNumLines()];
+        this.gateStamp = new int[compiled.getNumGates()];
+        this.queue = new int[compiled.getNumGates()];
+        this.levelFill = new int[compiled.getNumLevels() + 1];
+        this.levelStamp = new int[compiled.getNumLevels() + 1];
+    }
+
+    @Override
+    public void setGoodMachineCache(GoodMachineCache cache) {
+        this.goodMachineCache = cache;
+    }
+
+    @Override
+    public double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+
+        int[] remaining = new int[index.size()];
+        for (int f = 0; f < remaining.length; f++) {
+            remaining[f] = f;
+        }
+        int remainingCount = remaining.length;
+
+        GoodMachineCache cache = goodMachineCache != null && goodMachineCache.matches(testVectors) ? goodMachineCache : null;
+        for (int v = 0; v < testVectors.size(); v++) {
+            if (remainingCount == 0) {
+                break;
+            }
+
+            // Simulate the good machine once per vector, unless it is cached
+            byte[] goodValues = good;
+            if (cache != null) {
+                goodValues = cache.values(v);
+            } else {
+                compiled.loadInputs(testVectors.get(v), good);
+                compiled.simulate(good);
+            }
+
+            int kept = 0;
+            for (int k = 0; k < remainingCount; k++) {
+                int f = remaining[k];
+                if (detects(goodValues, index.line[f], index.gate[f], index.stuckAt[f])) {
+                    detected[f] = true;
+                } else {
+                    remaining[kept++] = f;
+                }
+            }
+            remainingCount = kept;
+        }
+
+        int detectedFaults = 0;
+        for (int f = 0; f < detected.length; f++) {
+            if (detected[f]) {
+                detectedFaults++;
+            } else {
+                System.out.println("Undetected Fault: " + index.fault(f));
+            }
+        }
+
+        // Calculate fault coverage
+        return (double) detectedFaults / faults.size();
+    }
+
+    /**
+     * Propagates a single fault through its fanout cone on top of cached good-machine values.
+     *
+     * @param goodValues Fault-free line values for the current vector.
+     * @param faultLine  The faulty line id.
+     * @param stuckAt    The stuck value.
+     * @return True if the fault reaches a primary output.
+     */
+    public boolean detects(byte[] goodValues, int faultLine, int stuckAt) {
+        return detects(goodValues, faultLine, -1, stuckAt);
+    }
+
+    /**
+     * Propagates a single stem or fanout-branch fault through its fanout cone on top of cached
+     * good-machine values.
+     *
+     * @param goodValues Fault-free line values for the current vector.
+     * @param faultLine  The faulty line id.
+     * @param faultGate  The gate of a fanout-branch fault, or -1 for a stem fault.
+     * @param stuckAt    The stuck value.
+     * @return True if the fault reaches a primary output.
+     */
+    public boolean detects(byte[] goodValues, int faultLine, int faultGate, int stuckAt) {
+        // Fault not activated by this vector
+        if (goodValues[faultLine] == stuckAt) {
+            return false;
+        }
+
+        nextEpoch();
+        int site = faultLine;
+        int siteValue = stuckAt;
+        if (faultGate >= 0) {
+            // A branch fault only changes the output of the gate it feeds
+            site = compiled.numInputs + faultGate;
+            gateEvaluations++;
+            int v = compiled.evaluate(faultGate, goodValues, faultLine, stuckAt);
+            if (v == goodValues[site]) {
+                return false;
+            }
+            siteValue = v;
+        }
+        faulty[site] = (byte) siteValue;
+        lineStamp[site] = epoch;
+        if (compiled.isOutput[site]) {
+            return true;
+        }
+        int level = schedule(site, compiled.getNumLevels() + 1);
+
+        // Process events level by level until none remain
+        int numLevels = compiled.getNumLevels();
+        for (; level <= numLevels; level++) {
+            if (levelStamp[level] != epoch) {
+                continue;
+            }
+            int base = compiled.levelOffset[level - 1];
+            for (int k = 0; k < levelFill[level]; k++) {
+                int g = queue[base + k];
+                int out = compiled.numInputs + g;
+                gateEvaluations++;
+                int v = evaluate(goodValues, g);
+                if (v != goodValues[out]) {
+                    faulty[out] = (byte) v;
+                    lineStamp[out] = epoch;
+                    if (compiled.isOutput[out]) {
+                        return true;
+                    }
+                    schedule(out, level);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Schedules every gate reading a changed line.
+     *
+     * @return The lowest level scheduled so far, starting from {@code lowest}.
+     */
+    private int schedule(int line, int lowest) {
+        for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+            int g = compiled.fanout[i];
+            if (gateStamp[g] == epoch) {
+                continue;
+            }
+            gateStamp[g] = epoch;
+            int level = compiled.gateLevel[g];
+            if (levelStamp[level] != epoch) {
+                levelStamp[level] = epoch;
+                levelFill[level] = 0;
+            }
+            queue[compiled.levelOffset[level - 1] + levelFill[level]++] = g;
+            lowest = Math.min(lowest, level);
+        }
+        return lowest;
+    }
+
+    private void nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            // Stamps would wrap around; start over from a clean slate
+            Arrays.fill(lineStamp, 0);
+            Arrays.fill(gateStamp, 0);
+            Arrays.fill(levelStamp, 0);
+            epoch = 1;
+        }
+    }
+
+    private int value(byte[] goodValues, int line) {
+        return lineStamp[line] == epoch ? faulty[line] : goodValues[line];
+    }
+
+    private int evaluate(byte[] goodValues, int g) {
+        int[] fanin = compiled.fanin;
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        int acc;
+        switch (compiled.gateType[g] & ~1) {
+            case CompiledCircuit.AND:
+                acc = 1;
+                for (int i = from; i < to; i++) {
+                    acc &= value(goodValues, fanin[i]);
+                }
+                break;
+            case CompiledCircuit.OR:
+                acc = 0;
+                for (int i = from; i < to; i++) {
+                    acc |= value(goodValues, fanin[i]);
+                }
+                break;
+            case CompiledCircuit.XOR:
+                acc = 0;
+                for (int i = from; i < to; i++) {
+                    acc ^= value(goodValues, fanin[i]);
+                }
+                break;
+            default: // BUF, NOT
+                acc = value(goodValues, fanin[from]);
+                break;
+        }
+        return acc ^ (compiled.gateType[g] & 1);
+    }
+
+    /**
+     * Returns the number of gate evaluations performed on faulty machines so far.
+     */
+    public long getGateEvaluations() {
+        return gateEvaluations;
+    }
+}
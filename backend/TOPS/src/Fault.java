@@ -1,14 +1,24 @@
 public class Fault {
     public String node;          // Line ID where the fault is injected
+    public String branch;        // Output line ID of the gate whose input pin is faulty; null for a stem fault
     public int stuckAtValue;     // Fault type: 0 (SA0) or 1 (SA1)
 
     public Fault(String node, int stuckAtValue) {
+        this(node, null, stuckAtValue);
+    }
+
+    public Fault(String node, String branch, int stuckAtValue) {
         this.node = node;
+        this.branch = branch;
         this.stuckAtValue = stuckAtValue;
     }
 
+    public boolean isBranch() {
+        return branch != null;
+    }
+
     @Override
     public String toString() {
-        return node + "-SA" + stuckAtValue;
+        return branch == null ? node + "-SA" + stuckAtValue : node + "->" + branch + "-SA" + stuckAtValue;
     }
 }
@@ -9,27 +9,26 @@ public class FaultCoverageVerification {
             int wordLength = 32; // Default word length for parallel simulation
 
             for (String benchmarkFile : benchmarkFiles) {
-                Circuit circuit = new Circuit();
-                circuit.parseBenchFile(benchmarkFile);
+                // Load the levelized netlist, from its binary cache when up to date
+                CompiledCircuit compiled = NetlistCache.load(benchmarkFile);
 
-                // Generate faults
-                List<Fault> faults = new ArrayList<>();
-                for (Gate gate : circuit.gates) {
-                    String node = gate.getOutput().getId();
-                    faults.add(new Fault(node, 0)); // Stuck-at-0
-                    faults.add(new Fault(node, 1)); // Stuck-at-1
-                }
+                // Generate the collapsed fault list
+                FaultListBuilder faultListBuilder = new FaultListBuilder(compiled);
+                List<Fault> faults = faultListBuilder.buildCollapsed();
                 int totalFaults = faults.size();
 
-                // Initialize FaultSimulator
-                FaultSimulator faultSimulator = new FaultSimulator(circuit);
+                // Initialize FaultSimulator and the word-level parallel-fault engine
+                FaultSimulator faultSimulator = new FaultSimulator(compiled);
+                ParallelFaultSimulator parallelFaultSimulator = new ParallelFaultSimulator(compiled, wordLength);
 
                 System.out.println("\nBenchmark: " + benchmarkFile);
                 System.out.println("Total Faults: " + totalFaults);
+                System.out.printf("Collapse Ratio: %.2f of %d faults%n",
+                        faultListBuilder.getCollapseRatio(), faultListBuilder.getUncollapsedCount());
 
                 for (int numVectors : vectorCounts) {
                     // Generate test vectors
-                    List<Map<String, Integer>> testVectors = generateTestVectors(circuit.primaryInputs, numVectors);
+                    List<Map<String, Integer>> testVectors = generateTestVectors(compiled.getPrimaryInputNames(), numVectors);
 
                     System.out.println("Test Vectors: " + numVectors);
 
@@ -39,9 +38,9 @@ public class FaultCoverageVerification {
                     long serialEndTime = System.currentTimeMillis();
                     double serialTime = (serialEndTime - serialStartTime) / 1000.0;
 
-                    // Parallel Simulation
+                    // Parallel-Fault Simulation (one good machine plus wordLength - 1 faulty machines per word)
                     long parallelStartTime = System.currentTimeMillis();
-                    faultSimulator.parallelFaultSimulation(faults, testVectors);
+                    parallelFaultSimulator.faultSimulation(faults, testVectors);
                     long parallelEndTime = System.currentTimeMillis();
                     double parallelTime = (parallelEndTime - parallelStartTime) / 1000.0;
 
@@ -68,17 +67,7 @@ public class FaultCoverageVerification {
     }
 
     private static List<Map<String, Integer>> generateTestVectors(List<String> inputs, int numVectors) {
-        List<Map<String, Integer>> testVectors = new ArrayList<>();
-        Random random = new Random();
-
-        for (int i = 0; i < numVectors; i++) {
-            Map<String, Integer> vector = new HashMap<>();
-            for (String input : inputs) {
-                vector.put(input, random.nextInt(2)); // Random 0 or 1
-            }
-            testVectors.add(vector);
-        }
-
-        return testVectors;
+        // Draw 64 random vectors per word, then expand for the map-based engines
+        return PatternSet.random(inputs, numVectors, new Random()).toMaps();
     }
 }
@@ -0,0 +1,44 @@
+import java.util.List;
+
+/**
+ * Dense, array-based view of a fault list against a compiled circuit.
+ * Fault {@code i} sits on line {@code line[i]} and is stuck at {@code stuckAt[i]}. For a fault on
+ * a fanout branch, {@code gate[i]} is the gate whose input pin is faulty; it is -1 for a stem fault.
+ */
+public class FaultIndex {
+    final List<Fault> faults;
+    final int[] line;
+    final int[] gate;
+    final byte[] stuckAt;
+
+    public FaultIndex(CompiledCircuit compiled, List<Fault> faults) {
+        this.faults = faults;
+        this.line = new int[faults.size()];
+        this.gate = new int[faults.size()];
+        this.stuckAt = new byte[faults.size()];
+        for (int i = 0; i < faults.size(); i++) {
+            Fault fault = faults.get(i);
+            if (fault.stuckAtValue != 0 && fault.stuckAtValue != 1) {
+                throw new IllegalArgumentException("Invalid stuck-at value for fault: " + fault);
+            }
+            line[i] = compiled.lineId(fault.node);
+            gate[i] = compiled.branchGate(fault);
+            stuckAt[i] = (byte) fault.stuckAtValue;
+        }
+    }
+
+    /**
+     * Returns a key identifying the fault site and value, equal for duplicate faults.
+     */
+    public long siteKey(int i) {
+        return ((long) line[i] << 33) | ((long) (gate[i] + 1) << 1) | stuckAt[i];
+    }
+
+    public int size() {
+        return line.length;
+    }
+
+    public Fault fault(int i) {
+        return faults.get(i);
+    }
+}
@@ -0,0 +1,237 @@
+import java.util.*;
+
+/**
+ * Builds single stuck-at fault lists for a circuit.
+ * <p>
+ * The fault universe holds both stuck-at faults on every line stem and on every fanout branch. A
+ * line gets branch faults, one per distinct gate reading it, when it feeds several gates or when it
+ * is a primary output that also feeds a gate; otherwise its only branch is the stem itself.
+ * <p>
+ * Three lists can be built from it:
+ * <ul>
+ *     <li>{@link #buildAll()}: the full universe.</li>
+ *     <li>{@link #buildCheckpoints()}: primary input stems and fanout branches. A test set
+ *     detecting them detects every fault of a fanout-free region.</li>
+ *     <li>{@link #buildCollapsed()}: one representative per equivalence class, without the
+ *     classes whose detection is implied by a dominated fault on a gate input.</li>
+ * </ul>
+ */
+public class FaultListBuilder {
+    private CompiledCircuit compiled;
+
+    // Fault ids: stem faults are 2 * line + stuckAt, branch faults follow
+    private int[] branchLine;
+    private int[] branchGate;
+    private int[] firstBranch;  // per line, first branch fault pair, or -1 when the line has none
+    private int numFaults;
+
+    // Equivalence classes and the classes removed by dominance
+    private int[] parent;
+    private boolean[] dominated;
+
+    public FaultListBuilder(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public FaultListBuilder(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        enumerateBranches();
+        collapse();
+    }
+
+    /**
+     * Returns every stem and fanout-branch fault.
+     */
+    public List<Fault> buildAll() {
+        List<Fault> faults = new ArrayList<>(numFaults);
+        for (int id = 0; id < numFaults; id++) {
+            faults.add(fault(id));
+        }
+        return faults;
+    }
+
+    /**
+     * Returns the checkpoint faults: both stuck-at faults on every primary input stem and on every
+     * fanout branch.
+     */
+    public List<Fault> buildCheckpoints() {
+        List<Fault> faults = new ArrayList<>();
+        for (int i = 0; i < compiled.numInputs; i++) {
+            faults.add(fault(2 * i));
+            faults.add(fault(2 * i + 1));
+        }
+        for (int id = 2 * compiled.getNumLines(); id < numFaults; id++) {
+            faults.add(fault(id));
+        }
+        return faults;
+    }
+
+    /**
+     * Returns one fault per equivalence class, skipping the classes removed by dominance. The
+     * representative of a class is its lowest id, so stem faults are preferred over branches.
+     */
+    public List<Fault> buildCollapsed() {
+        List<Fault> faults = new ArrayList<>();
+        for (int id = 0; id < numFaults; id++) {
+            if (find(id) == id && !dominated[id]) {
+                faults.add(fault(id));
+            }
+        }
+        return faults;
+    }
+
+    /**
+     * Returns the size of the full fault universe.
+     */
+    public int getUncollapsedCount() {
+        return numFaults;
+    }
+
+    /**
+     * Returns the size of the collapsed list relative to the full universe.
+     */
+    public double getCollapseRatio() {
+        int collapsed = 0;
+        for (int id = 0; id < numFaults; id++) {
+            if (find(id) == id && !dominated[id]) {
+                collapsed++;
+            }
+        }
+        return numFaults == 0 ? 1.0 : (double) collapsed / numFaults;
+    }
+
+    private void enumerateBranches() {
+        int numLines = compiled.getNumLines();
+        firstBranch = new int[numLines];
+        List<Integer> lines = new ArrayList<>();
+        List<Integer> gates = new ArrayList<>();
+        for (int line = 0; line < numLines; line++) {
+            int fanouts = compiled.fanoutCount(line);
+            firstBranch[line] = -1;
+            if (fanouts < 2 && !(fanouts == 1 && compiled.isOutput[line])) {
+                continue;
+            }
+            firstBranch[line] = 2 * numLines + 2 * lines.size();
+            for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+                // Fanout lists are sorted, so repeated pins of one gate are adjacent
+                if (i == compiled.fanoutOffset[line] || compiled.fanout[i] != compiled.fanout[i - 1]) {
+                    lines.add(line);
+                    gates.add(compiled.fanout[i]);
+                }
+            }
+        }
+
+        branchLine = new int[lines.size()];
+        branchGate = new int[lines.size()];
+        for (int b = 0; b < branchLine.length; b++) {
+            branchLine[b] = lines.get(b);
+            branchGate[b] = gates.get(b);
+        }
+        numFaults = 2 * numLines + 2 * branchLine.length;
+    }
+
+    /**
+     * Merges the equivalent faults of every gate and marks the output faults dominated by a fault
+     * on one of its inputs.
+     */
+    private void collapse() {
+        parent = new int[numFaults];
+        for (int id = 0; id < numFaults; id++) {
+            parent[id] = id;
+        }
+
+        for (int g = 0; g < compiled.numGates; g++) {
+            int out = compiled.numInputs + g;
+            int from = compiled.faninOffset[g];
+            int to = compiled.faninOffset[g + 1];
+            byte type = compiled.gateType[g];
+            int inverting = type & 1;
+
+            if (to - from == 1) {
+                // Single-input gates behave as a buffer or an inverter
+                int pin = pinFault(compiled.fanin[from], g);
+                union(pin, 2 * out + inverting);
+                union(pin + 1, 2 * out + (1 - inverting));
+                continue;
+            }
+
+            int controlling;
+            switch (type & ~1) {
+                case CompiledCircuit.AND:
+                    controlling = 0;
+                    break;
+                case CompiledCircuit.OR:
+                    controlling = 1;
+                    break;
+                default: // XOR has no equivalent input faults
+                    continue;
+            }
+            // Input stuck at the controlling value forces the output
+            for (int i = from; i < to; i++) {
+                union(pinFault(compiled.fanin[i], g) + controlling, 2 * out + (controlling ^ inverting));
+            }
+        }
+
+        // Mark dominance only once the classes are final
+        dominated = new boolean[numFaults];
+        for (int g = 0; g < compiled.numGates; g++) {
+            int width = compiled.faninOffset[g + 1] - compiled.faninOffset[g];
+            int base = compiled.gateType[g] & ~1;
+            if (width < 2 || (base != CompiledCircuit.AND && base != CompiledCircuit.OR)) {
+                continue;
+            }
+            // Output stuck at the value a non-controlling input would produce
+            int nonControlling = base == CompiledCircuit.AND ? 1 : 0;
+            int out = compiled.numInputs + g;
+            dominated[find(2 * out + (nonControlling ^ (compiled.gateType[g] & 1)))] = true;
+        }
+    }
+
+    /**
+     * Returns the stuck-at-0 id of the fault seen by a gate input: the branch fault when the line
+     * has branches, the stem fault otherwise. The stuck-at-1 id follows it.
+     */
+    private int pinFault(int line, int g) {
+        if (firstBranch[line] < 0) {
+            return 2 * line;
+        }
+        for (int id = firstBranch[line]; ; id += 2) {
+            if (branchGate[branchIndex(id)] == g) {
+                return id;
+            }
+        }
+    }
+
+    private int branchIndex(int id) {
+        return (id - 2 * compiled.getNumLines()) / 2;
+    }
+
+    private Fault fault(int id) {
+        int stuckAt = id & 1;
+        if (id < 2 * compiled.getNumLines()) {
+            return new Fault(compiled.lineName(id / 2), stuckAt);
+        }
+        int b = branchIndex(id);
+        int branchOutput = compiled.numInputs + branchGate[b];
+        return new Fault(compiled.lineName(branchLine[b]), compiled.lineName(branchOutput), stuckAt);
+    }
+
+    private int find(int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        // Keep the lowest id as the class representative
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Multicore fault simulator that partitions the fault list, not the vectors, across workers.
+ * <p>
+ * Vectors are processed in blocks. The good machine of every vector of a block is simulated once,
+ * or read from a {@link GoodMachineCache}, and shared read-only. The undetected faults are then
+ * split into chunks of roughly equal estimated cost, where the cost of a fault is the size of its
+ * fanout cone, and each chunk runs the event-driven engine for its faults over the whole block. Chunks are executed by a
+ * work-stealing {@link ForkJoinPool}, or optionally by one virtual thread each. The pool lives for
+ * one {@link #faultSimulation} call and is shut down when it returns; an exception thrown by any
+ * task is rethrown to the caller.
+ * <p>
+ * Each worker borrows its own event-driven engine, with its own value buffers, from a shared
+ * pool that keeps at most one engine per thread. Detected faults are recorded in a lock-free bitset and dropped before the next block.
+ */
+public class FaultPartitionScheduler implements FaultSimulationEngine {
+    private static final int BLOCK_SIZE = 64;
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    private CompiledCircuit compiled;
+    private int parallelism;
+    private boolean virtualThreads;
+    private ForkJoinPool pool;  // set for the duration of a call, unless running on virtual threads
+    private long[] coneCost;    // estimated gates in the fanout cone of every line
+    private BlockingQueue<EventDrivenFaultSimulator> workers;   // idle engines, at most one per thread
+    private GoodMachineCache goodMachineCache;
+
+    public FaultPartitionScheduler(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public FaultPartitionScheduler(CompiledCircuit compiled) {
+        this(compiled, Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * @param compiled       The compiled circuit.
+     * @param parallelism    Number of worker threads, or the target concurrency with virtual threads.
+     * @param virtualThreads Run every chunk on its own virtual thread instead of a ForkJoinPool.
+     */
+    public FaultPartitionScheduler(CompiledCircuit compiled, int parallelism, boolean virtualThreads) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.compiled = compiled;
+        this.parallelism = parallelism;
+        this.virtualThreads = virtualThreads;
+        this.workers = new ArrayBlockingQueue<>(parallelism);
+        this.coneCost = estimateConeCost(compiled);
+    }
+
+    @Override
+    public void setGoodMachineCache(GoodMachineCache cache) {
+        this.goodMachineCache = cache;
+    }
+
+    @Override
+    public synchronized double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        if (!virtualThreads) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        try {
+            return simulateBlocks(faults, testVectors);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    private double simulateBlocks(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        AtomicLongArray detected = new AtomicLongArray((index.size() + 63) / 64);
+
+        int[] remaining = new int[index.size()];
+        for (int f = 0; f < remaining.length; f++) {
+            remaining[f] = f;
+        }
+        int remainingCount = remaining.length;
+        long[] costPrefix = new long[remaining.length + 1];
+
+        for (int start = 0; start < testVectors.size() && remainingCount > 0; start += BLOCK_SIZE) {
+            byte[][] good = goodBlock(testVectors, start, Math.min(testVectors.size(), start + BLOCK_SIZE));
+
+            // Chunk the remaining faults by cumulative cone cost
+            for (int k = 0; k < remainingCount; k++) {
+                costPrefix[k + 1] = costPrefix[k] + cost(index, remaining[k]);
+            }
+            long grain = Math.max(1, costPrefix[remainingCount] / ((long) parallelism * CHUNKS_PER_WORKER));
+            run(new Chunk(index, remaining, costPrefix, 0, remainingCount, grain, good, detected));
+
+            // Drop detected faults before the next block
+            int kept = 0;
+            for (int k = 0; k < remainingCount; k++) {
+                if (!isSet(detected, remaining[k])) {
+                    remaining[kept++] = remaining[k];
+                }
+            }
+            remainingCount = kept;
+        }
+
+        int detectedFaults = 0;
+        for (int f = 0; f < index.size(); f++) {
+            if (isSet(detected, f)) {
+                detectedFaults++;
+            } else {
+                System.out.println("Undetected Fault: " + index.fault(f));
+            }
+        }
+
+        // Calculate fault coverage
+        return (double) detectedFaults / faults.size();
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the good machine of every vector of a block, from the shared cache when it covers
+     * the vector set and simulated in parallel otherwise.
+     */
+    private byte[][] goodBlock(List<Map<String, Integer>> testVectors, int from, int to) {
+        byte[][] good = new byte[to - from][];
+        Runnable[] tasks = new Runnable[to - from];
+        boolean cached = goodMachineCache != null && goodMachineCache.matches(testVectors);
+        for (int v = 0; v < tasks.length; v++) {
+            int vector = from + v;
+            tasks[v] = () -> {
+                if (cached) {
+                    good[vector - from] = goodMachineCache.values(vector);
+                    return;
+                }
+                byte[] values = new byte[compiled.getNumLines()];
+                compiled.loadInputs(testVectors.get(vector), values);
+                compiled.simulate(values);
+                good[vector - from] = values;
+            };
+        }
+        runAll(tasks);
+        return good;
+    }
+
+    private void run(Chunk root) {
+        if (virtualThreads) {
+            List<Chunk> leaves = new ArrayList<>();
+            root.split(leaves);
+            runAll(leaves.toArray(new Runnable[0]));
+        } else {
+            pool.invoke(root);
+        }
+    }
+
+    private void runAll(Runnable[] tasks) {
+        List<Future<?>> futures = new ArrayList<>(tasks.length);
+        if (!virtualThreads) {
+            futures.addAll(pool.invokeAll(Arrays.stream(tasks).map(Executors::callable).toList()));
+        } else {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Runnable task : tasks) {
+                    futures.add(executor.submit(task));
+                }
+            }
+        }
+
+        // Every task has finished; surface the first failure instead of a partial result
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Fault simulation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Fault simulation failed", e.getCause());
+        }
+    }
+
+    private long cost(FaultIndex index, int f) {
+        // A branch fault only enters the circuit through the gate it feeds
+        int site = index.gate[f] < 0 ? index.line[f] : compiled.numInputs + index.gate[f];
+        return coneCost[site];
+    }
+
+    /**
+     * Estimates the fanout cone size of every line in one reverse pass, summing over the reading
+     * gates. Reconvergent paths are counted more than once, so the estimate is capped at the
+     * number of gates.
+     */
+    private static long[] estimateConeCost(CompiledCircuit compiled) {
+        long[] cost = new long[compiled.getNumLines()];
+        for (int line = compiled.getNumLines() - 1; line >= 0; line--) {
+            long sum = 1;
+            for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+                sum += cost[compiled.numInputs + compiled.fanout[i]];
+            }
+            cost[line] = Math.min(sum, compiled.getNumGates() + 1);
+        }
+        return cost;
+    }
+
+    private static boolean isSet(AtomicLongArray bits, int f) {
+        return (bits.get(f >>> 6) & (1L << f)) != 0;
+    }
+
+    private static void set(AtomicLongArray bits, int f) {
+        bits.getAndAccumulate(f >>> 6, 1L << f, (a, b) -> a | b);
+    }
+
+    /**
+     * A contiguous range of the remaining faults, split recursively until its cost drops below the
+     * grain. Tasks are never serialized, although ForkJoinTask is Serializable.
+     */
+    @SuppressWarnings("serial")
+    private class Chunk extends RecursiveAction implements Runnable {
+        private final FaultIndex index;
+        private final int[] remaining;
+        private final long[] costPrefix;
+        private final int from;
+        private final int to;
+        private final long grain;
+        private final byte[][] good;
+        private final AtomicLongArray detected;
+
+        Chunk(FaultIndex index, int[] remaining, long[] costPrefix, int from, int to, long grain,
+              byte[][] good, AtomicLongArray detected) {
+            this.index = index;
+            this.remaining = remaining;
+            this.costPrefix = costPrefix;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.good = good;
+            this.detected = detected;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || costPrefix[to] - costPrefix[from] <= grain) {
+                simulate();
+                return;
+            }
+            int mid = splitPoint();
+            invokeAll(child(from, mid), child(mid, to));
+        }
+
+        /**
+         * Collects the leaf chunks, for executors without work stealing.
+         */
+        void split(List<Chunk> leaves) {
+            if (to - from <= 1 || costPrefix[to] - costPrefix[from] <= grain) {
+                leaves.add(this);
+                return;
+            }
+            int mid = splitPoint();
+            child(from, mid).split(leaves);
+            child(mid, to).split(leaves);
+        }
+
+        @Override
+        public void run() {
+            simulate();
+        }
+
+        /**
+         * Returns the index that halves the cost of the range, leaving both halves non-empty.
+         */
+        private int splitPoint() {
+            long half = (costPrefix[from] + costPrefix[to]) / 2;
+            int lo = from + 1;
+            int hi = to - 1;
+            while (lo < hi) {
+                int m = (lo + hi) >>> 1;
+                if (costPrefix[m] < half) {
+                    lo = m + 1;
+                } else {
+                    hi = m;
+                }
+            }
+            return lo;
+        }
+
+        private Chunk child(int childFrom, int childTo) {
+            return new Chunk(index, remaining, costPrefix, childFrom, childTo, grain, good, detected);
+        }
+
+        private void simulate() {
+            EventDrivenFaultSimulator worker = workers.poll();
+            if (worker == null) {
+                worker = new EventDrivenFaultSimulator(compiled);
+            }
+            try {
+                for (int k = from; k < to; k++) {
+                    int f = remaining[k];
+                    for (byte[] values : good) {
+                        if (worker.detects(values, index.line[f], index.gate[f], index.stuckAt[f])) {
+                            set(detected, f);
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                // Engines beyond one per thread, made for extra virtual threads, are dropped
+                workers.offer(worker);
+            }
+        }
+    }
+}
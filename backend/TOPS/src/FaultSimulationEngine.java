@@ -0,0 +1,27 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Common entry point of the fault simulation engines, so drivers can swap one for another.
+ */
+public interface FaultSimulationEngine {
+    /**
+     * Fault-simulates a test set and returns the fault coverage.
+     *
+     * @param faults      A list of faults to simulate.
+     * @param testVectors A list of test vectors, each represented as a map from line IDs to values.
+     * @return The fault coverage as a fraction (detectedFaults / totalFaults).
+     */
+    double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors);
+
+    /**
+     * Lets the engine read fault-free values from a shared cache instead of simulating them. An
+     * engine reads from the cache whenever the vector set it simulates is the one the cache was
+     * built for, and simulates otherwise. Engines that carry their own good-machine state,
+     * incremental or word-level, ignore it.
+     *
+     * @param cache The good-machine responses of a vector set.
+     */
+    default void setGoodMachineCache(GoodMachineCache cache) {
+    }
+}
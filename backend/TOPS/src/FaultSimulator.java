@@ -1,72 +1,77 @@
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FaultSimulator {
     private Circuit circuit;
     private Simulation simulation;
-    private Map<String, Gate> outputToGateMap;
+    private CompiledCircuit compiled;
+    private byte[] faulty;
+    private FaultPartitionScheduler scheduler;
+    private GoodMachineCache goodMachineCache;
+    private long goodMachineBudget = GoodMachineCache.DEFAULT_BUDGET;
 
     public FaultSimulator(Circuit circuit) {
+        this(new Simulation(circuit));
         this.circuit = circuit;
-        this.simulation = new Simulation(circuit);
-        this.outputToGateMap = new HashMap<>();
-
-        // Initialize the output to gate mapping
-        for (Gate gate : circuit.gates) {
-            String outputId = gate.getOutput().getId();
-            if (outputToGateMap.containsKey(outputId)) {
-                throw new IllegalStateException("Multiple gates have the same output: " + outputId);
-            }
-            outputToGateMap.put(outputId, gate);
-        }
+    }
+
+    public FaultSimulator(CompiledCircuit compiled) {
+        this(new Simulation(compiled));
+    }
+
+    private FaultSimulator(Simulation simulation) {
+        this.simulation = simulation;
+        this.compiled = simulation.getCompiledCircuit();
+        this.faulty = new byte[compiled.getNumLines()];
     }
 
     /**
-     * Simulates the circuit with an injected fault.
+     * Sets the memory budget for full line-value snapshots of the good machine. Takes effect for
+     * the next vector set simulated.
      *
-     * @param inputValues The input vector as a map from line IDs to values.
-     * @param fault       The fault to inject.
-     * @return The output vector after fault injection.
+     * @param budget Bytes allowed for snapshots; 0 keeps packed output values only.
      */
-    private Map<String, Integer> simulateWithFault(Map<String, Integer> inputValues, Fault fault) {
-        // Create a copy of input values to modify
-        Map<String, Integer> values = new HashMap<>(inputValues);
-
-        // Inject fault, regardless of whether it's a primary input or not
-        values.put(fault.node, fault.stuckAtValue);
-
-        // Get the topological order of the circuit
-        List<String> topologicalOrder = simulation.levelizeCircuit();
-
-        for (String node : topologicalOrder) {
-            if (outputToGateMap.containsKey(node)) {
-                Gate gate = outputToGateMap.get(node);
-
-                // Skip evaluation if the node has a fault injected
-                if (node.equals(fault.node)) {
-                    continue;
-                }
+    public void setGoodMachineBudget(long budget) {
+        this.goodMachineBudget = budget;
+        this.goodMachineCache = null;
+    }
 
-                // Evaluate the gate if its output is not already set (due to fault)
-                if (!values.containsKey(node)) {
-                    int outputValue = gate.evaluate(values);
-                    values.put(gate.getOutput().getId(), outputValue);
-                }
-            }
-            // Primary inputs are already set in the values map
+    /**
+     * Returns the good-machine responses of a vector set, simulating it only when it differs from
+     * the last one seen.
+     */
+    public GoodMachineCache getGoodMachineCache(List<Map<String, Integer>> testVectors) {
+        if (goodMachineCache == null || !goodMachineCache.matches(testVectors)) {
+            goodMachineCache = new GoodMachineCache(compiled, testVectors, goodMachineBudget);
         }
+        return goodMachineCache;
+    }
 
-        // Collect the output values
-        Map<String, Integer> outputValues = new HashMap<>();
-        for (String output : circuit.primaryOutputs) {
-            if (values.containsKey(output)) {
-                outputValues.put(output, values.get(output));
-            } else {
-                throw new IllegalStateException("Output signal " + output + " was not computed.");
-            }
+    /**
+     * Simulates the circuit with an injected fault and compares the outputs with the cached
+     * fault-free response.
+     *
+     * @param cache       The good-machine responses of the vector set.
+     * @param v           The index of the vector in the set.
+     * @param good        The cached fault-free line values of the vector, or null if not cached.
+     * @param inputValues The input vector as a map from line IDs to values.
+     * @param faultLine   The compiled line id of the fault site.
+     * @param faultGate   The gate of a fanout-branch fault, or -1 for a stem fault.
+     * @param stuckAt     The stuck value of the fault.
+     * @return True if the fault is detected by the vector.
+     */
+    private boolean detects(GoodMachineCache cache, int v, byte[] good, Map<String, Integer> inputValues,
+                            int faultLine, int faultGate, int stuckAt) {
+        // A cached snapshot rules out faults the vector does not activate
+        if (good != null && good[faultLine] == stuckAt) {
+            return false;
         }
 
-        return outputValues;
+        // Simulate with fault, regardless of whether it's a primary input or not
+        compiled.loadInputs(inputValues, faulty);
+        compiled.simulateWithFault(faulty, faultLine, faultGate, stuckAt);
+
+        // Compare outputs to detect fault
+        return cache.outputsDiffer(v, faulty);
     }
 
     /**
@@ -78,26 +83,35 @@ public class FaultSimulator {
      */
     public double serialFaultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
         int detectedFaults = 0;
-
-        for (Fault fault : faults) {
-            boolean detected = false;
-            for (Map<String, Integer> testVector : testVectors) {
-                // Simulate without fault
-                Map<String, Integer> faultFreeOutput = simulation.simulate(testVector);
-
-                // Simulate with fault
-                Map<String, Integer> faultyOutput = simulateWithFault(testVector, fault);
-
-                // Compare outputs to detect fault
-                if (!faultFreeOutput.equals(faultyOutput)) {
-                    detected = true;
-                    break; // Fault detected by this test vector
+        GoodMachineCache cache = getGoodMachineCache(testVectors);
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+
+        // Vector by vector, so each snapshot is looked up once for all faults still undetected
+        int[] remaining = new int[index.size()];
+        for (int f = 0; f < remaining.length; f++) {
+            remaining[f] = f;
+        }
+        int remainingCount = remaining.length;
+        for (int v = 0; v < testVectors.size() && remainingCount > 0; v++) {
+            byte[] good = cache.peek(v);
+            int kept = 0;
+            for (int k = 0; k < remainingCount; k++) {
+                int f = remaining[k];
+                if (detects(cache, v, good, testVectors.get(v), index.line[f], index.gate[f], index.stuckAt[f])) {
+                    detected[f] = true;  // Fault detected by this test vector
+                } else {
+                    remaining[kept++] = f;
                 }
             }
-            if (detected) {
+            remainingCount = kept;
+        }
+
+        for (int f = 0; f < index.size(); f++) {
+            if (detected[f]) {
                 detectedFaults++;
             } else {
-                System.out.println("Undetected Fault: " + fault);
+                System.out.println("Undetected Fault: " + index.fault(f));
             }
         }
 
@@ -106,45 +120,19 @@ public class FaultSimulator {
     }
 
     /**
-     * Performs parallel fault simulation to determine fault coverage.
+     * Performs parallel fault simulation to determine fault coverage. The fault list is partitioned
+     * across cores by {@link FaultPartitionScheduler}.
      *
      * @param faults      A list of faults to simulate.
      * @param testVectors A list of test vectors, each represented as a map from line IDs to values.
      * @return The fault coverage as a fraction (detectedFaults / totalFaults).
      */
     public double parallelFaultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
-        int detectedFaults = 0;
-
-        for (Fault fault : faults) {
-            AtomicBoolean detected = new AtomicBoolean(false);
-
-            // Process test vectors in parallel
-            testVectors.parallelStream().forEach(testVector -> {
-                if (detected.get()) {
-                    return; // Skip if already detected
-                }
-
-                // Simulate without fault
-                Map<String, Integer> faultFreeOutput = simulation.simulate(testVector);
-
-                // Simulate with fault
-                Map<String, Integer> faultyOutput = simulateWithFault(testVector, fault);
-
-                // Compare outputs to detect fault
-                if (!faultFreeOutput.equals(faultyOutput)) {
-                    detected.set(true);
-                }
-            });
-
-            if (detected.get()) {
-                detectedFaults++;
-            } else {
-                System.out.println("Undetected Fault: " + fault);
-            }
+        if (scheduler == null) {
+            scheduler = new FaultPartitionScheduler(compiled);
         }
-
-        // Calculate fault coverage
-        return (double) detectedFaults / faults.size();
+        scheduler.setGoodMachineCache(getGoodMachineCache(testVectors));
+        return scheduler.faultSimulation(faults, testVectors);
     }
 
     public double serialFaultSimulationWithMetrics(List<Fault> faults, List<Map<String, Integer>> testVectors) {
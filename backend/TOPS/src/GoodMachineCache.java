@@ -0,0 +1,225 @@
+import java.util.*;
+
+/**
+ * Fault-free responses of a vector set, keyed by vector index.
+ * <p>
+ * The primary output values of every vector are always kept, packed 64 per {@code long}; they are
+ * all a fault needs to be checked against. Full line-value snapshots are kept as well, in
+ * least-recently-used order, as long as they fit in a memory budget. A snapshot evicted or never
+ * kept is resimulated on demand.
+ * <p>
+ * The primary input values of every vector are packed the same way, so resimulation does not
+ * depend on the caller's list and {@link #matches} compares vector contents: a rebuilt list with
+ * the same vectors matches, and a list modified after the cache was built does not.
+ * <p>
+ * The cache may be shared between threads. Snapshots handed out are shared and must not be
+ * modified.
+ */
+public class GoodMachineCache {
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    private static final long SNAPSHOT_OVERHEAD = 64;   // array header and map entry, roughly
+
+    private CompiledCircuit compiled;
+    private int numVectors;
+    private int inputWords;
+    private long[] inputBits;       // inputWords per vector
+    private int outputWords;
+    private long[] outputBits;      // outputWords per vector
+    private long budget;
+    private long used;
+    private LinkedHashMap<Integer, byte[]> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public GoodMachineCache(CompiledCircuit compiled, List<Map<String, Integer>> testVectors) {
+        this(compiled, testVectors, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Simulates every vector once and records its primary output values.
+     *
+     * @param compiled    The compiled circuit.
+     * @param testVectors The vector set, indexed by position.
+     * @param budget      Bytes allowed for full line-value snapshots; 0 keeps outputs only.
+     */
+    public GoodMachineCache(CompiledCircuit compiled, List<Map<String, Integer>> testVectors, long budget) {
+        this(compiled, testVectors, budget, null);
+    }
+
+    /**
+     * Simulates every vector once, each spread over the levels of a parallel simulator, and
+     * records its primary output values. Worth it on circuits with levels of thousands of gates.
+     * <p>
+     * The simulator is only used here. Evicted snapshots are resimulated on the thread asking for
+     * them, since fault simulation workers share the cache and the simulator runs one vector at a
+     * time.
+     *
+     * @param compiled    The compiled circuit.
+     * @param testVectors The vector set, indexed by position.
+     * @param budget      Bytes allowed for full line-value snapshots; 0 keeps outputs only.
+     * @param simulator   The level-parallel simulator for the circuit, or null.
+     */
+    public GoodMachineCache(CompiledCircuit compiled, List<Map<String, Integer>> testVectors, long budget,
+                            LevelParallelSimulator simulator) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Snapshot budget must not be negative: " + budget);
+        }
+        this.compiled = compiled;
+        this.numVectors = testVectors.size();
+        this.budget = budget;
+        this.inputWords = Math.max(1, (compiled.getNumInputs() + 63) / 64);
+        this.inputBits = new long[numVectors * inputWords];
+        this.outputWords = Math.max(1, (compiled.getNumOutputs() + 63) / 64);
+        this.outputBits = new long[numVectors * outputWords];
+
+        byte[] values = null;
+        for (int v = 0; v < numVectors; v++) {
+            if (values == null) {
+                values = new byte[compiled.getNumLines()];
+            }
+            compiled.loadInputs(testVectors.get(v), values);
+            for (int i = 0; i < compiled.getNumInputs(); i++) {
+                inputBits[v * inputWords + i / 64] |= (long) values[i] << (i % 64);
+            }
+            if (simulator != null) {
+                simulator.simulate(values);
+            } else {
+                compiled.simulate(values);
+            }
+            int[] outputs = compiled.primaryOutputs;
+            for (int o = 0; o < outputs.length; o++) {
+                outputBits[v * outputWords + o / 64] |= (long) values[outputs[o]] << (o % 64);
+            }
+            // Seed the snapshots while they fit
+            if (used + snapshotSize() <= budget) {
+                snapshots.put(v, values);
+                used += snapshotSize();
+                values = null;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given vectors assign the same primary input values, in the same order, as
+     * the vectors this cache was built for.
+     */
+    public boolean matches(List<Map<String, Integer>> vectors) {
+        if (vectors.size() != numVectors) {
+            return false;
+        }
+        for (int v = 0; v < numVectors; v++) {
+            Map<String, Integer> vector = vectors.get(v);
+            for (int i = 0; i < compiled.getNumInputs(); i++) {
+                Integer value = vector.get(compiled.lineNames[i]);
+                if (value == null || (value & 1) != (int) (inputBits[v * inputWords + i / 64] >>> (i % 64) & 1)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return numVectors;
+    }
+
+    /**
+     * Returns the fault-free value of every line for a vector, resimulating it if its snapshot is
+     * not cached.
+     *
+     * @param v The vector index.
+     * @return The line values, shared and read-only.
+     */
+    public byte[] values(int v) {
+        byte[] values = peek(v);
+        if (values != null) {
+            return values;
+        }
+        values = new byte[compiled.getNumLines()];
+        for (int i = 0; i < compiled.getNumInputs(); i++) {
+            values[i] = (byte) (inputBits[v * inputWords + i / 64] >>> (i % 64) & 1);
+        }
+        compiled.simulate(values);
+        store(v, values);
+        return values;
+    }
+
+    /**
+     * Returns the cached line values for a vector, or null without simulating anything.
+     */
+    public synchronized byte[] peek(int v) {
+        byte[] values = snapshots.get(v);
+        if (values != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return values;
+    }
+
+    /**
+     * Compares the primary outputs of a faulty machine with the fault-free response of a vector.
+     *
+     * @param v      The vector index.
+     * @param faulty Line values of the faulty machine.
+     * @return True if any primary output differs.
+     */
+    public boolean outputsDiffer(int v, byte[] faulty) {
+        int[] outputs = compiled.primaryOutputs;
+        int base = v * outputWords;
+        for (int o = 0; o < outputs.length; o++) {
+            if (faulty[outputs[o]] != (int) (outputBits[base + o / 64] >>> (o % 64) & 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the fault-free value of one primary output, by position in the output list.
+     */
+    public int outputValue(int v, int output) {
+        return (int) (outputBits[v * outputWords + output / 64] >>> (output % 64) & 1);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the bytes currently held by line-value snapshots.
+     */
+    public synchronized long getSnapshotBytes() {
+        return used;
+    }
+
+    private synchronized void store(int v, byte[] values) {
+        if (snapshotSize() > budget || snapshots.containsKey(v)) {
+            return;
+        }
+        snapshots.put(v, values);
+        used += snapshotSize();
+
+        // Evict the least recently used snapshots until the budget holds again
+        Iterator<Map.Entry<Integer, byte[]>> eldest = snapshots.entrySet().iterator();
+        while (used > budget && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            used -= snapshotSize();
+            evictions++;
+        }
+    }
+
+    private long snapshotSize() {
+        return compiled.getNumLines() + SNAPSHOT_OVERHEAD;
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Good-machine simulation of one vector, or one 64-vector word, split across cores by level.
+ * <p>
+ * Gates of a level only read lines of earlier levels, and {@link CompiledCircuit} stores each
+ * level as a contiguous gate range, so a level can be cut into chunks of consecutive gates that
+ * write disjoint, adjacent value slots. A fixed set of worker threads and the calling thread claim
+ * chunks from a counter; the level is done when every chunk is. That completion count is the only
+ * barrier between levels. Levels narrower than {@link #setMinParallelWidth the parallel width}
+ * run on the calling thread alone, as synchronizing would cost more than the gates.
+ * <p>
+ * The workers are started by the first run with a level to split. Idle workers spin briefly for
+ * the next level and then park, so a simulator can be kept around between interactive queries.
+ * Runs are serialized, so threads that could each simulate on their own should not share one
+ * simulator; {@link #close()} stops the workers. A failure while evaluating a chunk, on
+ * any thread, still counts the chunk as done and is rethrown to the caller once the level is
+ * complete.
+ */
+public class LevelParallelSimulator implements AutoCloseable {
+    public static final int DEFAULT_CHUNK_GATES = 256;
+    public static final int DEFAULT_MIN_PARALLEL_WIDTH = 2048;
+    private static final int SPIN_LIMIT = 1 << 14;
+
+    private CompiledCircuit compiled;
+    private int chunkGates = DEFAULT_CHUNK_GATES;
+    private int minParallelWidth = DEFAULT_MIN_PARALLEL_WIDTH;
+    private Thread[] workers;           // started on the first parallel level
+    private boolean started;
+    private volatile Level current;     // the level being handed out, replaced for every level
+    private volatile boolean closed;
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    public LevelParallelSimulator(CompiledCircuit compiled) {
+        this(compiled, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param compiled    The compiled circuit.
+     * @param parallelism Threads evaluating a wide level, the caller included.
+     */
+    public LevelParallelSimulator(CompiledCircuit compiled, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.compiled = compiled;
+        this.workers = new Thread[parallelism - 1];
+    }
+
+    /**
+     * Sets the gates claimed at a time: large enough to amortize the claim, small enough to
+     * balance a level over the workers.
+     */
+    public void setChunkGates(int chunkGates) {
+        if (chunkGates < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkGates);
+        }
+        this.chunkGates = chunkGates;
+    }
+
+    /**
+     * Sets the narrowest level, in gates, that is split across threads.
+     */
+    public void setMinParallelWidth(int minParallelWidth) {
+        if (minParallelWidth < 1) {
+            throw new IllegalArgumentException("Parallel width must be positive: " + minParallelWidth);
+        }
+        this.minParallelWidth = minParallelWidth;
+    }
+
+    public int getParallelism() {
+        return workers.length + 1;
+    }
+
+    /**
+     * Returns the number of levels wide enough to be split across threads.
+     */
+    public int getParallelLevels() {
+        int count = 0;
+        for (int k = 0; k + 1 < compiled.levelOffset.length; k++) {
+            if (isParallel(compiled.levelOffset[k], compiled.levelOffset[k + 1])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Simulates the circuit given the input values.
+     *
+     * @param inputValues Value of every primary input, by line ID.
+     * @return The value of every primary output, by line ID.
+     */
+    public Map<String, Integer> simulate(Map<String, Integer> inputValues) {
+        byte[] values = new byte[compiled.getNumLines()];
+        compiled.loadInputs(inputValues, values);
+        simulate(values);
+        return compiled.outputValues(values);
+    }
+
+    /**
+     * Simulates the fault-free circuit in place.
+     *
+     * @param values Line values; the primary inputs must already be set.
+     */
+    public synchronized void simulate(byte[] values) {
+        run(values, null);
+    }
+
+    /**
+     * Simulates 64 test vectors at once in place.
+     *
+     * @param values Line words; the primary input words must already be set.
+     */
+    public synchronized void simulateWords(long[] values) {
+        run(null, values);
+    }
+
+    private void run(byte[] values, long[] words) {
+        if (closed) {
+            throw new IllegalStateException("Simulator is closed");
+        }
+        int[] levelOffset = compiled.levelOffset;
+        for (int k = 0; k + 1 < levelOffset.length; k++) {
+            int from = levelOffset[k];
+            int to = levelOffset[k + 1];
+            if (!isParallel(from, to)) {
+                evaluate(from, to, values, words);
+                continue;
+            }
+            if (!started) {
+                startWorkers();
+            }
+            Level level = new Level(from, to, chunkGates, values, words);
+            current = level;
+            if (sleepers.get() > 0) {
+                for (Thread worker : workers) {
+                    LockSupport.unpark(worker);
+                }
+            }
+            claimChunks(level);
+
+            // Wait for the chunks other threads are still evaluating
+            for (int spins = 0; level.done.get() < level.chunks; spins++) {
+                if (spins < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            Throwable failure = level.failure.get();
+            if (failure instanceof RuntimeException e) {
+                throw e;
+            }
+            if (failure instanceof Error e) {
+                throw e;
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Level evaluation failed", failure);
+            }
+        }
+    }
+
+    private void startWorkers() {
+        started = true;
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = new Thread(this::work, "level-simulator-" + (w + 1));
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+    }
+
+    private boolean isParallel(int from, int to) {
+        return workers.length > 0 && to - from >= Math.max(minParallelWidth, 2 * chunkGates);
+    }
+
+    private void claimChunks(Level level) {
+        int chunk;
+        while ((chunk = level.next.getAndIncrement()) < level.chunks) {
+            int from = level.from + chunk * level.chunkGates;
+            try {
+                evaluate(from, Math.min(level.to, from + level.chunkGates), level.values, level.words);
+            } catch (Throwable e) {
+                // Keep the worker alive and the count complete; the caller rethrows
+                level.failure.compareAndSet(null, e);
+            } finally {
+                level.done.incrementAndGet();
+            }
+        }
+    }
+
+    private void evaluate(int from, int to, byte[] values, long[] words) {
+        int numInputs = compiled.numInputs;
+        if (words != null) {
+            for (int g = from; g < to; g++) {
+                words[numInputs + g] = compiled.evaluateWord(g, words);
+            }
+        } else {
+            for (int g = from; g < to; g++) {
+                values[numInputs + g] = (byte) compiled.evaluate(g, values);
+            }
+        }
+    }
+
+    /**
+     * Worker loop: helps with every new level, spinning for a while between levels before
+     * parking.
+     */
+    private void work() {
+        Level seen = null;
+        while (!closed) {
+            Level level = current;
+            if (level != seen) {
+                seen = level;
+                claimChunks(level);
+                continue;
+            }
+            for (int spins = 0; spins < SPIN_LIMIT && current == seen && !closed; spins++) {
+                Thread.onSpinWait();
+            }
+            if (current == seen && !closed) {
+                // Announce the park before re-checking, so a level published meanwhile unparks us
+                sleepers.incrementAndGet();
+                if (current == seen && !closed) {
+                    LockSupport.park(this);
+                }
+                sleepers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            if (worker != null) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    /**
+     * One wide level in flight. A worker that still holds a finished level only finds its chunk
+     * counter exhausted.
+     */
+    private static class Level {
+        final int from;
+        final int to;
+        final int chunkGates;
+        final int chunks;
+        final byte[] values;
+        final long[] words;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Level(int from, int to, int chunkGates, byte[] values, long[] words) {
+            this.from = from;
+            this.to = to;
+            this.chunkGates = chunkGates;
+            this.chunks = (to - from + chunkGates - 1) / chunkGates;
+            this.values = values;
+            this.words = words;
+        }
+    }
+
+    public static void main(String[] args) {
+        String benchFilePath = args.length > 0 ? args[0]
+                : "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c7522.bench";
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        try (LevelParallelSimulator simulator = new LevelParallelSimulator(NetlistCache.load(benchFilePath), parallelism)) {
+            CompiledCircuit compiled = simulator.compiled;
+            System.out.println(compiled + ": " + simulator.getParallelLevels() + " of " + compiled.getNumLevels()
+                    + " levels split over " + parallelism + " threads");
+
+            Random random = new Random(1);
+            byte[] sequential = new byte[compiled.getNumLines()];
+            byte[] parallel = new byte[compiled.getNumLines()];
+            long sequentialTime = 0;
+            long parallelTime = 0;
+            int queries = 200;
+            for (int q = 0; q < queries; q++) {
+                for (int i = 0; i < compiled.getNumInputs(); i++) {
+                    sequential[i] = parallel[i] = (byte) random.nextInt(2);
+                }
+                long startTime = System.nanoTime();
+                compiled.simulate(sequential);
+                sequentialTime += System.nanoTime() - startTime;
+                startTime = System.nanoTime();
+                simulator.simulate(parallel);
+                parallelTime += System.nanoTime() - startTime;
+                if (!Arrays.equals(sequential, parallel)) {
+                    throw new IllegalStateException("Level-parallel simulation differs on query " + q);
+                }
+            }
+            System.out.printf("Single-vector query: sequential %.3f ms, level-parallel %.3f ms%n",
+                    sequentialTime / 1e6 / queries, parallelTime / 1e6 / queries);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.*;
+
+/**
+ * Linear feedback shift register with an XOR phase shifter, the pseudo-random source of built-in
+ * self-test pattern generators.
+ * <p>
+ * The register is a Fibonacci LFSR of up to 64 stages: every clock shifts it left by one and feeds
+ * the parity of the tapped stages into stage 1. A primitive feedback polynomial cycles through all
+ * 2^n - 1 non-zero states. Because adjacent scan inputs fed straight from adjacent stages would
+ * only see shifted copies of one sequence, every circuit input is driven by the XOR of a few
+ * stages instead, chosen per input by the phase shifter.
+ * <p>
+ * {@link #nextBlock(long[])} clocks the register 64 times and packs the phase shifter outputs one
+ * bit per clock, so one call yields a 64-pattern word per input in the layout the pattern-parallel
+ * simulator consumes.
+ */
+public class Lfsr {
+    // Primitive polynomials, by stage numbers of the taps (Xilinx XAPP052)
+    private static final Map<Integer, int[]> PRIMITIVE_TAPS = Map.of(
+            16, new int[]{16, 15, 13, 4},
+            24, new int[]{24, 23, 22, 17},
+            31, new int[]{31, 28},
+            32, new int[]{32, 22, 2, 1},
+            48, new int[]{48, 47, 21, 20},
+            64, new int[]{64, 63, 61, 60});
+    public static final int DEFAULT_DEGREE = 32;
+    public static final int DEFAULT_PHASE_TAPS = 3;
+
+    private int degree;
+    private long tapMask;
+    private long stateMask;
+    private long state;
+    private long[] phaseMasks;    // stages XORed into every output
+
+    /**
+     * Creates a register with a built-in primitive polynomial and a default phase shifter.
+     *
+     * @param degree     Number of stages; one of 16, 24, 31, 32, 48 or 64.
+     * @param numOutputs Number of phase shifter outputs, one per circuit input.
+     * @param seed       Initial state; only the low {@code degree} bits are used.
+     */
+    public Lfsr(int degree, int numOutputs, long seed) {
+        this(degree, primitiveTaps(degree), phaseShifter(degree, numOutputs, DEFAULT_PHASE_TAPS, seed), seed);
+    }
+
+    /**
+     * @param degree     Number of stages, 2 to 64.
+     * @param taps       Stage numbers, 1 to {@code degree}, of the feedback polynomial.
+     * @param phaseMasks Stages XORed into every output, as bit {@code k - 1} for stage {@code k}.
+     * @param seed       Initial state; only the low {@code degree} bits are used.
+     */
+    public Lfsr(int degree, int[] taps, long[] phaseMasks, long seed) {
+        if (degree < 2 || degree > 64) {
+            throw new IllegalArgumentException("LFSR degree must be between 2 and 64: " + degree);
+        }
+        this.degree = degree;
+        this.stateMask = degree == 64 ? -1L : (1L << degree) - 1;
+        for (int tap : taps) {
+            if (tap < 1 || tap > degree) {
+                throw new IllegalArgumentException("Tap " + tap + " outside a " + degree + "-stage register");
+            }
+            tapMask |= 1L << (tap - 1);
+        }
+        for (long mask : phaseMasks) {
+            if ((mask & ~stateMask) != 0 || mask == 0) {
+                throw new IllegalArgumentException("Phase shifter output must tap stages of the register");
+            }
+        }
+        this.phaseMasks = phaseMasks.clone();
+        this.state = initialState(seed, stateMask);
+    }
+
+    /**
+     * Returns the taps of the built-in primitive polynomial of a degree.
+     */
+    public static int[] primitiveTaps(int degree) {
+        int[] taps = PRIMITIVE_TAPS.get(degree);
+        if (taps == null) {
+            throw new IllegalArgumentException("No built-in primitive polynomial of degree " + degree
+                    + "; supported: " + new TreeSet<>(PRIMITIVE_TAPS.keySet()));
+        }
+        return taps.clone();
+    }
+
+    /**
+     * Builds a phase shifter whose outputs each XOR a distinct combination of stages.
+     *
+     * @param degree     Number of register stages.
+     * @param numOutputs Number of outputs.
+     * @param tapsEach   Stages XORed into every output.
+     * @param seed       Seed of the stage selection.
+     */
+    public static long[] phaseShifter(int degree, int numOutputs, int tapsEach, long seed) {
+        if (tapsEach < 1 || tapsEach > degree) {
+            throw new IllegalArgumentException("Phase shifter taps must be between 1 and " + degree + ": " + tapsEach);
+        }
+        Random random = new Random(seed);
+        long[] masks = new long[numOutputs];
+        Set<Long> used = new HashSet<>();
+        for (int o = 0; o < numOutputs; o++) {
+            long mask;
+            int attempts = 0;
+            do {
+                mask = 0;
+                while (Long.bitCount(mask) < tapsEach) {
+                    mask |= 1L << random.nextInt(degree);
+                }
+                // Outputs sharing a combination would always be equal; tolerate it only when the
+                // combinations run out
+            } while (!used.add(mask) && ++attempts < 64);
+            masks[o] = mask;
+        }
+        return masks;
+    }
+
+    /**
+     * Restarts the register from a seed. An all-zero state would lock up, so it is replaced by 1.
+     */
+    public void seed(long seed) {
+        state = initialState(seed, stateMask);
+    }
+
+    private static long initialState(long seed, long stateMask) {
+        long state = seed & stateMask;
+        return state == 0 ? 1 : state;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public int getDegree() {
+        return degree;
+    }
+
+    public int getNumOutputs() {
+        return phaseMasks.length;
+    }
+
+    /**
+     * Clocks the register once.
+     */
+    public void step() {
+        long feedback = Long.bitCount(state & tapMask) & 1;
+        state = ((state << 1) | feedback) & stateMask;
+    }
+
+    /**
+     * Clocks the register 64 times, recording the phase shifter outputs.
+     *
+     * @param words Receives one word per output; bit {@code t} is the output after clock {@code t}.
+     */
+    public void nextBlock(long[] words) {
+        Arrays.fill(words, 0, phaseMasks.length, 0L);
+        for (int t = 0; t < 64; t++) {
+            step();
+            for (int o = 0; o < phaseMasks.length; o++) {
+                words[o] |= (long) (Long.bitCount(state & phaseMasks[o]) & 1) << t;
+            }
+        }
+    }
+}
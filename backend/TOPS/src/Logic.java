@@ -0,0 +1,261 @@
+/**
+ * Five- and nine-valued D-algebra kernel for test generation.
+ * <p>
+ * A value is a pair of three-valued bits, one for the good machine and one for the faulty
+ * machine. Each three-valued bit is dual-rail: one rail set when the bit can be shown to be 0, the
+ * other when it is 1, neither when it is X. The four rails fit in the low nibble of a byte:
+ * <pre>
+ *   bit 0  good is 0      bit 2  faulty is 0
+ *   bit 1  good is 1      bit 3  faulty is 1
+ * </pre>
+ * The five-valued set is 0, 1, X, D (good 1, faulty 0) and D' (good 0, faulty 1). The nine-valued
+ * set adds the values known in one machine only: G0 and G1 for the good machine, B0 and B1 for the
+ * faulty one.
+ * <p>
+ * In this encoding AND is an OR of the 0 rails and an AND of the 1 rails, OR is the reverse, and
+ * NOT swaps the rails, so every gate reduces its inputs with a few branch-free bitwise operations
+ * and X propagates without being tested for. The same operations on {@code long}s evaluate 64
+ * independent signals at once; {@link #evaluateWords} keeps one word per rail for that.
+ */
+public final class Logic {
+    public static final byte X = 0;
+    public static final byte ZERO = 0b0101;
+    public static final byte ONE = 0b1010;
+    public static final byte D = 0b0110;
+    public static final byte DBAR = 0b1001;
+    public static final byte G0 = 0b0001;
+    public static final byte G1 = 0b0010;
+    public static final byte B0 = 0b0100;
+    public static final byte B1 = 0b1000;
+
+    static final int ZERO_RAILS = 0b0101;
+    static final int ONE_RAILS = 0b1010;
+    static final int GOOD_RAILS = 0b0011;
+    static final int FAULTY_RAILS = 0b1100;
+
+    // Three-valued component as 0, 1 or 2 (X), by value
+    private static final byte[] GOOD = new byte[16];
+    private static final byte[] FAULTY = new byte[16];
+    private static final String[] NAMES = new String[16];
+
+    static {
+        for (int v = 0; v < 16; v++) {
+            GOOD[v] = component(v & GOOD_RAILS);
+            FAULTY[v] = component((v & FAULTY_RAILS) >>> 2);
+        }
+        NAMES[X] = "X";
+        NAMES[ZERO] = "0";
+        NAMES[ONE] = "1";
+        NAMES[D] = "D";
+        NAMES[DBAR] = "D'";
+        NAMES[G0] = "G0";
+        NAMES[G1] = "G1";
+        NAMES[B0] = "B0";
+        NAMES[B1] = "B1";
+    }
+
+    private Logic() {
+    }
+
+    private static byte component(int rails) {
+        return (byte) (rails == 0b01 ? 0 : rails == 0b10 ? 1 : 2);
+    }
+
+    /**
+     * Returns the value of a good/faulty pair of three-valued bits, each 0, 1 or 2 for X.
+     */
+    public static byte of(int good, int faulty) {
+        return (byte) (rails(good) | rails(faulty) << 2);
+    }
+
+    private static int rails(int bit) {
+        // 0 -> 0b01, 1 -> 0b10, X -> 0b00
+        return bit == 2 ? 0 : 1 << bit;
+    }
+
+    /**
+     * Returns the good-machine bit of a value: 0, 1 or 2 for X.
+     */
+    public static int good(int v) {
+        return GOOD[v];
+    }
+
+    /**
+     * Returns the faulty-machine bit of a value: 0, 1 or 2 for X.
+     */
+    public static int faulty(int v) {
+        return FAULTY[v];
+    }
+
+    /**
+     * Returns a value with its faulty-machine bit forced to a stuck value.
+     */
+    public static byte stuck(int v, int stuckAt) {
+        return (byte) ((v & GOOD_RAILS) | 0b0100 << stuckAt);
+    }
+
+    /**
+     * Returns true for D and D', the values carrying a fault effect.
+     */
+    public static boolean isError(int v) {
+        // Both machines known and different: the rails cross
+        return v == D || v == DBAR;
+    }
+
+    /**
+     * Returns true if either machine is still X.
+     */
+    public static boolean isOpen(int v) {
+        return (v & GOOD_RAILS) == 0 || (v & FAULTY_RAILS) == 0;
+    }
+
+    public static int and(int a, int b) {
+        return ((a | b) & ZERO_RAILS) | (a & b & ONE_RAILS);
+    }
+
+    public static int or(int a, int b) {
+        return (a & b & ZERO_RAILS) | ((a | b) & ONE_RAILS);
+    }
+
+    public static int not(int a) {
+        return (a & ZERO_RAILS) << 1 | (a & ONE_RAILS) >>> 1;
+    }
+
+    public static int xor(int a, int b) {
+        // Output is 1 when the known bits differ, 0 when they agree
+        int differ = a & not(b);
+        int agree = a & b;
+        return (differ & ONE_RAILS) | (differ & ZERO_RAILS) << 1 | (agree & ZERO_RAILS) | (agree & ONE_RAILS) >>> 1;
+    }
+
+    /**
+     * Evaluates a gate over the values of its input lines.
+     *
+     * @param compiled The compiled circuit.
+     * @param g        The gate.
+     * @param values   Value per line.
+     * @return The value of the gate output.
+     */
+    public static int evaluate(CompiledCircuit compiled, int g, byte[] values) {
+        byte type = compiled.gateType[g];
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        int result = values[compiled.fanin[from]];
+        switch (type >>> 1) {
+            case CompiledCircuit.AND >>> 1 -> {
+                for (int i = from + 1; i < to; i++) {
+                    result = and(result, values[compiled.fanin[i]]);
+                }
+            }
+            case CompiledCircuit.OR >>> 1 -> {
+                for (int i = from + 1; i < to; i++) {
+                    result = or(result, values[compiled.fanin[i]]);
+                }
+            }
+            case CompiledCircuit.XOR >>> 1 -> {
+                for (int i = from + 1; i < to; i++) {
+                    result = xor(result, values[compiled.fanin[i]]);
+                }
+            }
+            default -> {
+                // BUF and NOT read a single input
+            }
+        }
+        return (type & 1) != 0 ? not(result) : result;
+    }
+
+    /**
+     * Evaluates a gate with the faulty-machine bit of one input pin forced, for a fault on the
+     * fanout branch from {@code pinLine} into the gate.
+     */
+    public static int evaluate(CompiledCircuit compiled, int g, byte[] values, int pinLine, int stuckAt) {
+        byte type = compiled.gateType[g];
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        int result = pin(compiled.fanin[from], values, pinLine, stuckAt);
+        for (int i = from + 1; i < to; i++) {
+            int v = pin(compiled.fanin[i], values, pinLine, stuckAt);
+            result = switch (type >>> 1) {
+                case CompiledCircuit.AND >>> 1 -> and(result, v);
+                case CompiledCircuit.OR >>> 1 -> or(result, v);
+                default -> xor(result, v);
+            };
+        }
+        return (type & 1) != 0 ? not(result) : result;
+    }
+
+    private static int pin(int line, byte[] values, int pinLine, int stuckAt) {
+        return line == pinLine ? stuck(values[line], stuckAt) : values[line];
+    }
+
+    /**
+     * Evaluates a gate for 64 signals at once. Line {@code l} holds its four rails in
+     * {@code values[4 * l .. 4 * l + 3]}, in the bit order of the scalar encoding: good 0, good 1,
+     * faulty 0, faulty 1.
+     *
+     * @param compiled The compiled circuit.
+     * @param g        The gate; its output rails are written.
+     * @param values   Four words per line.
+     */
+    public static void evaluateWords(CompiledCircuit compiled, int g, long[] values) {
+        byte type = compiled.gateType[g];
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        int first = 4 * compiled.fanin[from];
+        long g0 = values[first];
+        long g1 = values[first + 1];
+        long f0 = values[first + 2];
+        long f1 = values[first + 3];
+        for (int i = from + 1; i < to; i++) {
+            int in = 4 * compiled.fanin[i];
+            long b0 = values[in];
+            long b1 = values[in + 1];
+            long c0 = values[in + 2];
+            long c1 = values[in + 3];
+            switch (type >>> 1) {
+                case CompiledCircuit.AND >>> 1 -> {
+                    g0 |= b0;
+                    g1 &= b1;
+                    f0 |= c0;
+                    f1 &= c1;
+                }
+                case CompiledCircuit.OR >>> 1 -> {
+                    g0 &= b0;
+                    g1 |= b1;
+                    f0 &= c0;
+                    f1 |= c1;
+                }
+                default -> {
+                    long n0 = g0 & b0 | g1 & b1;
+                    long n1 = g0 & b1 | g1 & b0;
+                    g0 = n0;
+                    g1 = n1;
+                    n0 = f0 & c0 | f1 & c1;
+                    n1 = f0 & c1 | f1 & c0;
+                    f0 = n0;
+                    f1 = n1;
+                }
+            }
+        }
+        int out = 4 * (compiled.numInputs + g);
+        if ((type & 1) != 0) {
+            values[out] = g1;
+            values[out + 1] = g0;
+            values[out + 2] = f1;
+            values[out + 3] = f0;
+        } else {
+            values[out] = g0;
+            values[out + 1] = g1;
+            values[out + 2] = f0;
+            values[out + 3] = f1;
+        }
+    }
+
+    /**
+     * Returns the name of a value as written in the D-algebra: 0, 1, X, D, D', G0, G1, B0 or B1.
+     */
+    public static String toString(int v) {
+        String name = NAMES[v & 0xF];
+        return name != null ? name : "?" + Integer.toBinaryString(v);
+    }
+}
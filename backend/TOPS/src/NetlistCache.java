@@ -0,0 +1,590 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of compiled netlists, stored next to the {@code .bench} file as
+ * {@code <name>.bench.tops}.
+ * <p>
+ * The cache holds the levelized, integer-indexed netlist exactly as {@link CompiledCircuit} keeps
+ * it, so loading is a bulk copy with no parsing or levelization. It records the size
+ * and CRC32 of the source file it was built from and is rebuilt whenever they no longer match.
+ * A second CRC32 covers everything after it, and every offset and line id is range-checked on
+ * load, so a truncated or corrupt cache is treated like a stale one and rebuilt from the source.
+ * Caches are read into the heap rather than mapped, so a stale one can be replaced right away
+ * even where open mappings lock a file.
+ * <p>
+ * Layout, little-endian:
+ * <pre>
+ *   long  magic "TOPSNETL"
+ *   int   version
+ *   long  source size
+ *   int   source CRC32
+ *   int   CRC32 of the rest of the file
+ *   int   numInputs, numGates, numOutputs, fanin length, level count, name bytes
+ *   int[] faninOffset, fanin, fanoutOffset, fanout, levelOffset, primaryOutputs, nameOffset
+ *   byte[] gateType, name bytes (UTF-8)
+ * </pre>
+ * {@link #mapOffHeap} maps the same file into {@link MemorySegment}s instead of copying it to the
+ * heap; the int arrays start at a multiple of 4 bytes from the page-aligned mapping. The file is
+ * checked on a temporary mapping first, and only a valid one stays mapped.
+ * <p>
+ * The {@link StaticLearning} table of a netlist is kept beside it in
+ * {@code <name>.bench.tops.learn}, checked against the same source size and CRC32 and read the
+ * same way:
+ * <pre>
+ *   long  magic "TOPSLERN"
+ *   int   version
+ *   long  source size
+ *   int   source CRC32
+ *   int   CRC32 of the rest of the file
+ *   int   numLines, implication count
+ *   int[] offset, implied
+ *   byte[] constant
+ * </pre>
+ */
+public class NetlistCache {
+    static final long MAGIC = 0x4C54454E53504F54L; // "TOPSNETL" read little-endian
+    static final int VERSION = 2;
+    static final int LEARNING_VERSION = 2;
+    static final String SUFFIX = ".tops";
+    static final long LEARNING_MAGIC = 0x4E52454C53504F54L; // "TOPSLERN" read little-endian
+    static final String LEARNING_SUFFIX = ".learn";
+    private static final int PAYLOAD_CRC_OFFSET = 8 + 4 + 8 + 4;
+    private static final int HEADER_BYTES = PAYLOAD_CRC_OFFSET + 4 + 6 * 4;
+    private static final int LEARNING_HEADER_BYTES = PAYLOAD_CRC_OFFSET + 4 + 2 * 4;
+
+    /**
+     * Loads the compiled netlist of a {@code .bench} file, from its cache when it is up to date and
+     * by parsing the source otherwise. A stale or missing cache is rewritten.
+     *
+     * @param benchPath Path of the {@code .bench} file.
+     * @return The compiled circuit.
+     */
+    public static CompiledCircuit load(String benchPath) throws IOException {
+        Path source = Path.of(benchPath);
+        Path cache = cachePath(source);
+        long sourceSize = Files.size(source);
+        int sourceCrc = checksum(source);
+
+        if (Files.exists(cache)) {
+            CompiledCircuit compiled = read(cache, sourceSize, sourceCrc);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+
+        CompiledCircuit compiled = BenchParser.parse(benchPath);
+        try {
+            write(compiled, cache, sourceSize, sourceCrc);
+        } catch (IOException e) {
+            // A read-only benchmark directory only costs the next run a parse
+            System.err.println("Could not write netlist cache " + cache + ": " + e.getMessage());
+        }
+        return compiled;
+    }
+
+    /**
+     * Attaches the statically learned implications of a netlist loaded from a {@code .bench} file,
+     * reading them from the learning cache when it is up to date and learning and saving them
+     * otherwise.
+     *
+     * @param benchPath Path of the {@code .bench} file.
+     * @param compiled  The netlist compiled from it.
+     * @return The implication table, also installed as {@link CompiledCircuit#staticLearning()}.
+     */
+    public static StaticLearning loadLearning(String benchPath, CompiledCircuit compiled) throws IOException {
+        Path source = Path.of(benchPath);
+        Path cache = learningPath(source);
+        long sourceSize = Files.size(source);
+        int sourceCrc = checksum(source);
+
+        if (Files.exists(cache)) {
+            StaticLearning learning = readLearning(cache, sourceSize, sourceCrc, compiled.numLines);
+            if (learning != null) {
+                compiled.setStaticLearning(learning);
+                return learning;
+            }
+        }
+
+        StaticLearning learning = compiled.staticLearning();
+        try {
+            writeLearning(learning, cache, sourceSize, sourceCrc);
+        } catch (IOException e) {
+            System.err.println("Could not write learning cache " + cache + ": " + e.getMessage());
+        }
+        return learning;
+    }
+
+    /**
+     * Returns the cache file used for a {@code .bench} file.
+     */
+    public static Path cachePath(Path source) {
+        return source.resolveSibling(source.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Returns the learning cache file used for a {@code .bench} file.
+     */
+    public static Path learningPath(Path source) {
+        return source.resolveSibling(source.getFileName() + SUFFIX + LEARNING_SUFFIX);
+    }
+
+    /**
+     * Computes the CRC32 of a file over a memory mapping.
+     */
+    static int checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position)));
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes a compiled netlist to a cache file, replacing it atomically.
+     */
+    public static void write(CompiledCircuit compiled, Path cache, long sourceSize, int sourceCrc) throws IOException {
+        byte[][] names = new byte[compiled.numLines][];
+        int[] nameOffset = new int[compiled.numLines + 1];
+        for (int l = 0; l < compiled.numLines; l++) {
+            names[l] = compiled.lineNames[l].getBytes(StandardCharsets.UTF_8);
+            nameOffset[l + 1] = nameOffset[l] + names[l].length;
+        }
+
+        long size = HEADER_BYTES
+                + 4L * (compiled.faninOffset.length + compiled.fanin.length + compiled.fanoutOffset.length
+                + compiled.fanout.length + compiled.levelOffset.length + compiled.primaryOutputs.length
+                + nameOffset.length)
+                + compiled.gateType.length + nameOffset[compiled.numLines];
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Netlist too large to cache: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sourceSize);
+        buffer.putInt(sourceCrc);
+        buffer.putInt(0);   // payload CRC, filled in below
+        buffer.putInt(compiled.numInputs);
+        buffer.putInt(compiled.numGates);
+        buffer.putInt(compiled.primaryOutputs.length);
+        buffer.putInt(compiled.fanin.length);
+        buffer.putInt(compiled.levelOffset.length);
+        buffer.putInt(nameOffset[compiled.numLines]);
+        putInts(buffer, compiled.faninOffset);
+        putInts(buffer, compiled.fanin);
+        putInts(buffer, compiled.fanoutOffset);
+        putInts(buffer, compiled.fanout);
+        putInts(buffer, compiled.levelOffset);
+        putInts(buffer, compiled.primaryOutputs);
+        putInts(buffer, nameOffset);
+        buffer.put(compiled.gateType);
+        for (byte[] name : names) {
+            buffer.put(name);
+        }
+        buffer.flip();
+        buffer.putInt(PAYLOAD_CRC_OFFSET, payloadCrc(buffer, PAYLOAD_CRC_OFFSET + 4));
+        replace(cache, buffer);
+    }
+
+    /**
+     * Writes an implication table to a learning cache file, replacing it atomically.
+     */
+    public static void writeLearning(StaticLearning learning, Path cache, long sourceSize, int sourceCrc) throws IOException {
+        long size = LEARNING_HEADER_BYTES + 4L * (learning.offset.length + learning.implied.length)
+                + learning.constant.length;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Implication table too large to cache: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(LEARNING_MAGIC);
+        buffer.putInt(LEARNING_VERSION);
+        buffer.putLong(sourceSize);
+        buffer.putInt(sourceCrc);
+        buffer.putInt(0);   // payload CRC, filled in below
+        buffer.putInt(learning.constant.length);
+        buffer.putInt(learning.implied.length);
+        putInts(buffer, learning.offset);
+        putInts(buffer, learning.implied);
+        buffer.put(learning.constant);
+        buffer.flip();
+        buffer.putInt(PAYLOAD_CRC_OFFSET, payloadCrc(buffer, PAYLOAD_CRC_OFFSET + 4));
+        replace(cache, buffer);
+    }
+
+    private static void replace(Path cache, ByteBuffer buffer) throws IOException {
+        // Write beside the target and move it into place, so readers never see a partial file
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Gone after a successful move; otherwise do not leave it beside the benchmarks
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a cache file into the heap.
+     *
+     * @return The compiled circuit, or null if the file is not a valid cache for the given source.
+     */
+    static CompiledCircuit read(Path cache, long sourceSize, int sourceCrc) throws IOException {
+        ByteBuffer buffer = readFile(cache, HEADER_BYTES);
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            return decode(buffer, sourceSize, sourceCrc);
+        } catch (RuntimeException e) {
+            // Whatever the checks missed is still a cache miss, not a failed load
+            return null;
+        }
+    }
+
+    private static CompiledCircuit decode(ByteBuffer buffer, long sourceSize, int sourceCrc) {
+        if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION
+                || buffer.getLong() != sourceSize || buffer.getInt() != sourceCrc
+                || buffer.getInt() != payloadCrc(buffer, PAYLOAD_CRC_OFFSET + 4)) {
+            return null;
+        }
+
+        int numInputs = buffer.getInt();
+        int numGates = buffer.getInt();
+        int numOutputs = buffer.getInt();
+        int faninLength = buffer.getInt();
+        int levelLength = buffer.getInt();
+        int nameBytes = buffer.getInt();
+        int numLines = numInputs + numGates;
+        if (!isValidSize(numInputs, numGates, numOutputs, faninLength, levelLength, nameBytes, buffer.capacity())) {
+            return null;
+        }
+
+        int[] faninOffset = getInts(buffer, numGates + 1);
+        int[] fanin = getInts(buffer, faninLength);
+        int[] fanoutOffset = getInts(buffer, numLines + 1);
+        int[] fanout = getInts(buffer, faninLength);
+        int[] levelOffset = getInts(buffer, levelLength);
+        int[] primaryOutputs = getInts(buffer, numOutputs);
+        int[] nameOffset = getInts(buffer, numLines + 1);
+        byte[] gateType = new byte[numGates];
+        buffer.get(gateType);
+        byte[] nameBlock = new byte[nameBytes];
+        buffer.get(nameBlock);
+        if (!isValidNetlist(numInputs, IntBuffer.wrap(faninOffset), IntBuffer.wrap(fanin), IntBuffer.wrap(fanoutOffset),
+                IntBuffer.wrap(fanout), IntBuffer.wrap(levelOffset), IntBuffer.wrap(primaryOutputs),
+                IntBuffer.wrap(nameOffset), ByteBuffer.wrap(gateType), nameBytes)) {
+            return null;
+        }
+
+        String[] lineNames = new String[numLines];
+        for (int l = 0; l < numLines; l++) {
+            lineNames[l] = new String(nameBlock, nameOffset[l], nameOffset[l + 1] - nameOffset[l], StandardCharsets.UTF_8);
+        }
+        return new CompiledCircuit(lineNames, numInputs, gateType, faninOffset, fanin, fanoutOffset, fanout,
+                levelOffset, primaryOutputs);
+    }
+
+    private static boolean isValidSize(int numInputs, int numGates, int numOutputs, int faninLength, int levelLength,
+                                       int nameBytes, long fileSize) {
+        long numLines = (long) numInputs + numGates;
+        long expected = HEADER_BYTES
+                + 4L * ((numGates + 1L) + faninLength + (numLines + 1) + faninLength + levelLength + numOutputs
+                + (numLines + 1))
+                + numGates + nameBytes;
+        return numInputs >= 0 && numGates >= 0 && numOutputs >= 0 && faninLength >= 0 && levelLength >= 1
+                && nameBytes >= 0 && expected == fileSize;
+    }
+
+    /**
+     * Checks that the arrays of a decoded netlist are consistent: every offset table starts at 0,
+     * never decreases and ends at the length of the array it indexes, every gate reads at least
+     * one line of an earlier level, and every line id and gate type is in range.
+     */
+    private static boolean isValidNetlist(int numInputs, IntBuffer faninOffset, IntBuffer fanin, IntBuffer fanoutOffset,
+                                          IntBuffer fanout, IntBuffer levelOffset, IntBuffer primaryOutputs,
+                                          IntBuffer nameOffset, ByteBuffer gateType, int nameBytes) {
+        int numGates = gateType.limit();
+        int numLines = numInputs + numGates;
+        if (!isOffsetTable(faninOffset, fanin.limit()) || !isOffsetTable(fanoutOffset, fanout.limit())
+                || !isOffsetTable(levelOffset, numGates) || !isOffsetTable(nameOffset, nameBytes)) {
+            return false;
+        }
+        for (int g = 0; g < numGates; g++) {
+            int type = gateType.get(g);
+            if (type < CompiledCircuit.AND || type > CompiledCircuit.NOT
+                    || faninOffset.get(g) == faninOffset.get(g + 1)) {
+                return false;
+            }
+            for (int i = faninOffset.get(g); i < faninOffset.get(g + 1); i++) {
+                if (fanin.get(i) < 0 || fanin.get(i) >= numInputs + g) {
+                    return false;
+                }
+            }
+        }
+        for (int i = 0; i < fanout.limit(); i++) {
+            if (fanout.get(i) < 0 || fanout.get(i) >= numGates) {
+                return false;
+            }
+        }
+        for (int k = 0; k < primaryOutputs.limit(); k++) {
+            if (primaryOutputs.get(k) < 0 || primaryOutputs.get(k) >= numLines) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if an offset table starts at 0, never decreases and ends at the given length.
+     */
+    private static boolean isOffsetTable(IntBuffer offset, int length) {
+        if (offset.limit() == 0 || offset.get(0) != 0 || offset.get(offset.limit() - 1) != length) {
+            return false;
+        }
+        for (int k = 1; k < offset.limit(); k++) {
+            if (offset.get(k) < offset.get(k - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the compiled netlist of a {@code .bench} file off the heap, rebuilding its cache first
+     * when it is missing or stale. The mapping is read-only and lives until the arena is closed;
+     * a shared arena lets several threads grade against it.
+     *
+     * @param benchPath Path of the {@code .bench} file.
+     * @param arena     The arena owning the mapping.
+     * @return The off-heap netlist.
+     */
+    public static OffHeapCircuit mapOffHeap(String benchPath, Arena arena) throws IOException {
+        Path source = Path.of(benchPath);
+        Path cache = cachePath(source);
+        long sourceSize = Files.size(source);
+        int sourceCrc = checksum(source);
+
+        OffHeapCircuit circuit = Files.exists(cache) ? map(cache, sourceSize, sourceCrc, arena) : null;
+        if (circuit == null) {
+            // Parse once on the heap to rewrite the cache, then map what was written
+            CompiledCircuit compiled = load(benchPath);
+            circuit = Files.exists(cache) ? map(cache, sourceSize, sourceCrc, arena) : null;
+            if (circuit == null) {
+                return OffHeapCircuit.copyOf(compiled, arena);
+            }
+        }
+        return circuit;
+    }
+
+    /**
+     * Maps a cache file into segments of an arena.
+     *
+     * @return The off-heap netlist, or null if the file is not a valid cache for the given source.
+     */
+    static OffHeapCircuit map(Path cache, long sourceSize, int sourceCrc, Arena arena) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return null;
+            }
+            // A rejected file must not stay mapped, or replace() cannot overwrite it on Windows
+            try (Arena check = Arena.ofConfined()) {
+                if (!isValidCache(channel.map(FileChannel.MapMode.READ_ONLY, 0, size, check), sourceSize, sourceCrc)) {
+                    return null;
+                }
+            } catch (RuntimeException e) {
+                return null;
+            }
+            return slice(channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena));
+        }
+    }
+
+    private static boolean isValidCache(MemorySegment file, long sourceSize, int sourceCrc) {
+        ValueLayout.OfLong longLayout = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+        ValueLayout.OfInt intLayout = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+        if (file.get(longLayout, 0) != MAGIC || file.get(intLayout, 8) != VERSION
+                || file.get(longLayout, 12) != sourceSize || file.get(intLayout, 20) != sourceCrc
+                || file.get(intLayout, PAYLOAD_CRC_OFFSET) != payloadCrc(file, PAYLOAD_CRC_OFFSET + 4)) {
+            return false;
+        }
+        if (!isValidSize(file.get(intLayout, 28), file.get(intLayout, 32), file.get(intLayout, 36),
+                file.get(intLayout, 40), file.get(intLayout, 44), file.get(intLayout, 48), file.byteSize())) {
+            return false;
+        }
+        OffHeapCircuit circuit = slice(file);
+        // The circuit keeps no level table, so find it behind the fanout list
+        long levelPosition = HEADER_BYTES + 4L * (circuit.numGates + 1) + 4L * (circuit.numLines + 1)
+                + 2 * circuit.fanout.byteSize();
+        MemorySegment levelOffset = file.asSlice(levelPosition, 4L * file.get(intLayout, 44));
+        return isValidNetlist(circuit.numInputs, ints(circuit.faninOffset), ints(circuit.fanin),
+                ints(circuit.fanoutOffset), ints(circuit.fanout), ints(levelOffset),
+                ints(circuit.primaryOutputs), ints(circuit.nameOffset), circuit.gateType.asByteBuffer(),
+                (int) circuit.names.byteSize());
+    }
+
+    /**
+     * Slices a mapped cache file whose header and contents have already been checked.
+     */
+    private static OffHeapCircuit slice(MemorySegment file) {
+        ValueLayout.OfInt intLayout = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+        int numInputs = file.get(intLayout, 28);
+        int numGates = file.get(intLayout, 32);
+        int numOutputs = file.get(intLayout, 36);
+        int faninLength = file.get(intLayout, 40);
+        int levelLength = file.get(intLayout, 44);
+        int nameBytes = file.get(intLayout, 48);
+
+        long numLines = (long) numInputs + numGates;
+        long position = HEADER_BYTES;
+        MemorySegment faninOffset = file.asSlice(position, 4L * (numGates + 1));
+        position += faninOffset.byteSize();
+        MemorySegment fanin = file.asSlice(position, 4L * faninLength);
+        position += fanin.byteSize();
+        MemorySegment fanoutOffset = file.asSlice(position, 4L * (numLines + 1));
+        position += fanoutOffset.byteSize();
+        MemorySegment fanout = file.asSlice(position, 4L * faninLength);
+        position += fanout.byteSize();
+        MemorySegment levelOffset = file.asSlice(position, 4L * levelLength);
+        position += levelOffset.byteSize();
+        MemorySegment primaryOutputs = file.asSlice(position, 4L * numOutputs);
+        position += primaryOutputs.byteSize();
+        MemorySegment nameOffset = file.asSlice(position, 4L * (numLines + 1));
+        position += nameOffset.byteSize();
+        MemorySegment gateType = file.asSlice(position, numGates);
+        position += gateType.byteSize();
+        MemorySegment names = file.asSlice(position, nameBytes);
+        return new OffHeapCircuit(numInputs, numGates, numOutputs, gateType, faninOffset, fanin, fanoutOffset, fanout,
+                primaryOutputs, nameOffset, names);
+    }
+
+    /**
+     * Computes the CRC32 of a mapped file from an offset to its end, in chunks a ByteBuffer can hold.
+     */
+    private static int payloadCrc(MemorySegment file, long from) {
+        CRC32 crc = new CRC32();
+        for (long position = from; position < file.byteSize(); position += Integer.MAX_VALUE) {
+            long length = Math.min(Integer.MAX_VALUE, file.byteSize() - position);
+            crc.update(file.asSlice(position, length).asByteBuffer());
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a learning cache file into the heap.
+     *
+     * @return The implication table, or null if the file is not a valid cache for the given source
+     * and netlist size.
+     */
+    static StaticLearning readLearning(Path cache, long sourceSize, int sourceCrc, int numLines) throws IOException {
+        ByteBuffer buffer = readFile(cache, LEARNING_HEADER_BYTES);
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            return decodeLearning(buffer, sourceSize, sourceCrc, numLines);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static StaticLearning decodeLearning(ByteBuffer buffer, long sourceSize, int sourceCrc, int numLines) {
+        if (buffer.getLong() != LEARNING_MAGIC || buffer.getInt() != LEARNING_VERSION
+                || buffer.getLong() != sourceSize || buffer.getInt() != sourceCrc
+                || buffer.getInt() != payloadCrc(buffer, PAYLOAD_CRC_OFFSET + 4)
+                || buffer.getInt() != numLines) {
+            return null;
+        }
+        int count = buffer.getInt();
+        long expected = LEARNING_HEADER_BYTES + 4L * (2L * numLines + 1 + count) + numLines;
+        if (count < 0 || expected != buffer.capacity()) {
+            return null;
+        }
+
+        int[] offset = getInts(buffer, 2 * numLines + 1);
+        int[] implied = getInts(buffer, count);
+        byte[] constant = new byte[numLines];
+        buffer.get(constant);
+        if (!isOffsetTable(IntBuffer.wrap(offset), count)) {
+            return null;
+        }
+        for (int literal : implied) {
+            if (literal < 0 || literal >= 2 * numLines) {
+                return null;
+            }
+        }
+        for (byte c : constant) {
+            if (c < 0 || c > StaticLearning.NOT_CONSTANT) {
+                return null;
+            }
+        }
+        return new StaticLearning(offset, implied, constant);
+    }
+
+    /**
+     * Reads a whole file into a little-endian heap buffer, leaving no mapping behind.
+     *
+     * @return The contents, or null if the file is shorter than its header or too large to read.
+     */
+    private static ByteBuffer readFile(Path file, int headerBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < headerBytes || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Computes the CRC32 of a buffer from an offset to its limit, leaving its position alone.
+     */
+    private static int payloadCrc(ByteBuffer buffer, int from) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(from, buffer.limit() - from));
+        return (int) crc.getValue();
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + 4 * values.length);
+    }
+
+    private static IntBuffer ints(MemorySegment segment) {
+        return segment.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+}
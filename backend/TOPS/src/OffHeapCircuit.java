@@ -0,0 +1,288 @@
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A compiled netlist kept outside the Java heap, for circuits too large to hold as objects or
+ * arrays through hours of fault grading.
+ * <p>
+ * The arrays of {@link CompiledCircuit} live in {@link MemorySegment}s of a caller's
+ * {@link Arena}, in the little-endian layout of the netlist cache.
+ * {@link NetlistCache#mapOffHeap} maps them straight from the cache file, so processes grading
+ * the same netlist share one copy in the page cache. {@link #copyOf} copies an in-heap netlist
+ * instead. The segments stay valid until the arena is closed. The heap holds this object and
+ * nothing that grows with the circuit.
+ * <p>
+ * Word values are {@code long} segments from {@link #allocateWords}, one word per line; give
+ * every thread its own.
+ */
+public class OffHeapCircuit {
+    static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfLong WORD = ValueLayout.JAVA_LONG;
+    private static final long VALUE_ALIGNMENT = 64;  // one cache line
+
+    final int numInputs;
+    final int numGates;
+    final int numLines;
+    final int numOutputs;
+    final MemorySegment gateType;        // byte per gate
+    final MemorySegment faninOffset;     // numGates + 1 ints
+    final MemorySegment fanin;
+    final MemorySegment fanoutOffset;    // numLines + 1 ints
+    final MemorySegment fanout;
+    final MemorySegment primaryOutputs;
+    final MemorySegment nameOffset;      // numLines + 1 ints into names
+    final MemorySegment names;           // UTF-8
+
+    OffHeapCircuit(int numInputs, int numGates, int numOutputs, MemorySegment gateType, MemorySegment faninOffset,
+                   MemorySegment fanin, MemorySegment fanoutOffset, MemorySegment fanout,
+                   MemorySegment primaryOutputs, MemorySegment nameOffset, MemorySegment names) {
+        this.numInputs = numInputs;
+        this.numGates = numGates;
+        this.numLines = numInputs + numGates;
+        this.numOutputs = numOutputs;
+        this.gateType = gateType;
+        this.faninOffset = faninOffset;
+        this.fanin = fanin;
+        this.fanoutOffset = fanoutOffset;
+        this.fanout = fanout;
+        this.primaryOutputs = primaryOutputs;
+        this.nameOffset = nameOffset;
+        this.names = names;
+    }
+
+    /**
+     * Copies an in-heap netlist into segments of an arena.
+     *
+     * @param compiled The compiled circuit.
+     * @param arena    The arena owning the copy.
+     * @return The off-heap netlist.
+     */
+    public static OffHeapCircuit copyOf(CompiledCircuit compiled, Arena arena) {
+        int[] nameOffsets = new int[compiled.numLines + 1];
+        byte[][] lineNames = new byte[compiled.numLines][];
+        for (int l = 0; l < compiled.numLines; l++) {
+            lineNames[l] = compiled.lineNames[l].getBytes(StandardCharsets.UTF_8);
+            nameOffsets[l + 1] = nameOffsets[l] + lineNames[l].length;
+        }
+        MemorySegment names = arena.allocate(Math.max(1, nameOffsets[compiled.numLines]), 1);
+        for (int l = 0; l < compiled.numLines; l++) {
+            MemorySegment.copy(lineNames[l], 0, names, ValueLayout.JAVA_BYTE, nameOffsets[l], lineNames[l].length);
+        }
+        MemorySegment gateType = arena.allocate(Math.max(1, compiled.numGates), 1);
+        MemorySegment.copy(compiled.gateType, 0, gateType, ValueLayout.JAVA_BYTE, 0, compiled.numGates);
+        return new OffHeapCircuit(compiled.numInputs, compiled.numGates, compiled.primaryOutputs.length, gateType,
+                ints(compiled.faninOffset, arena), ints(compiled.fanin, arena), ints(compiled.fanoutOffset, arena),
+                ints(compiled.fanout, arena), ints(compiled.primaryOutputs, arena), ints(nameOffsets, arena), names);
+    }
+
+    private static MemorySegment ints(int[] values, Arena arena) {
+        MemorySegment segment = arena.allocate(Math.max(1, 4L * values.length), 4);
+        MemorySegment.copy(values, 0, segment, INT, 0, values.length);
+        return segment;
+    }
+
+    public int getNumInputs() {
+        return numInputs;
+    }
+
+    public int getNumGates() {
+        return numGates;
+    }
+
+    public int getNumLines() {
+        return numLines;
+    }
+
+    public int getNumOutputs() {
+        return numOutputs;
+    }
+
+    /**
+     * Returns the line driving a primary output.
+     */
+    public int primaryOutput(int k) {
+        return primaryOutputs.getAtIndex(INT, k);
+    }
+
+    /**
+     * Decodes the name of a line.
+     */
+    public String lineName(int line) {
+        int from = nameOffset.getAtIndex(INT, line);
+        int to = nameOffset.getAtIndex(INT, line + 1);
+        byte[] bytes = new byte[to - from];
+        MemorySegment.copy(names, ValueLayout.JAVA_BYTE, from, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the primary input names in compiled order, as pattern headers are matched against.
+     */
+    public List<String> getPrimaryInputNames() {
+        List<String> inputNames = new ArrayList<>(numInputs);
+        for (int i = 0; i < numInputs; i++) {
+            inputNames.add(lineName(i));
+        }
+        return inputNames;
+    }
+
+    /**
+     * Returns the gate driving a line, or -1 for a primary input.
+     */
+    public int driver(int line) {
+        return line < numInputs ? -1 : line - numInputs;
+    }
+
+    /**
+     * Allocates a zeroed word per line, aligned to a cache line.
+     */
+    public MemorySegment allocateWords(Arena arena) {
+        return arena.allocate(8L * numLines, VALUE_ALIGNMENT);
+    }
+
+    /**
+     * Simulates 64 test vectors at once in place.
+     *
+     * @param values Line words; the primary input words must already be set.
+     */
+    public void simulateWords(MemorySegment values) {
+        simulateWords(values, 0);
+    }
+
+    /**
+     * Re-evaluates every gate from {@code firstGate} onward over bit-parallel words.
+     */
+    public void simulateWords(MemorySegment values, int firstGate) {
+        // Segments in locals, so the JIT hoists their bounds and liveness checks out of the loop
+        MemorySegment gateType = this.gateType;
+        MemorySegment faninOffset = this.faninOffset;
+        MemorySegment fanin = this.fanin;
+        int from = faninOffset.getAtIndex(INT, firstGate);
+        for (int g = firstGate; g < numGates; g++) {
+            int to = faninOffset.getAtIndex(INT, g + 1);
+            byte type = gateType.get(ValueLayout.JAVA_BYTE, g);
+            long acc = values.getAtIndex(WORD, fanin.getAtIndex(INT, from));
+            switch (type & ~1) {
+                case CompiledCircuit.AND:
+                    for (int i = from + 1; i < to; i++) {
+                        acc &= values.getAtIndex(WORD, fanin.getAtIndex(INT, i));
+                    }
+                    break;
+                case CompiledCircuit.OR:
+                    for (int i = from + 1; i < to; i++) {
+                        acc |= values.getAtIndex(WORD, fanin.getAtIndex(INT, i));
+                    }
+                    break;
+                default: // XOR, BUF, NOT
+                    for (int i = from + 1; i < to; i++) {
+                        acc ^= values.getAtIndex(WORD, fanin.getAtIndex(INT, i));
+                    }
+                    break;
+            }
+            values.setAtIndex(WORD, numInputs + g, (type & 1) == 0 ? acc : ~acc);
+            from = to;
+        }
+    }
+
+    /**
+     * Evaluates one gate over bit-parallel words, with the word of one input line replaced.
+     *
+     * @param g       The gate index.
+     * @param values  Current line words.
+     * @param pinLine The input line whose word is replaced, or -1 for none.
+     * @param pinWord The word that input sees.
+     * @return The output word of the gate.
+     */
+    long evaluateWord(int g, MemorySegment values, int pinLine, long pinWord) {
+        int from = faninOffset.getAtIndex(INT, g);
+        int to = faninOffset.getAtIndex(INT, g + 1);
+        byte type = gateType.get(ValueLayout.JAVA_BYTE, g);
+        long acc = (type & ~1) == CompiledCircuit.AND ? -1L : 0L;
+        for (int i = from; i < to; i++) {
+            int in = fanin.getAtIndex(INT, i);
+            long v = in == pinLine ? pinWord : values.getAtIndex(WORD, in);
+            switch (type & ~1) {
+                case CompiledCircuit.AND:
+                    acc &= v;
+                    break;
+                case CompiledCircuit.OR:
+                    acc |= v;
+                    break;
+                default: // XOR, BUF, NOT
+                    acc ^= v;
+                    break;
+            }
+        }
+        return (type & 1) == 0 ? acc : ~acc;
+    }
+
+    /**
+     * Encodes the checkpoint faults, the list of {@link FaultListBuilder#buildCheckpoints()}, as
+     * records of {@link OffHeapFaultSimulator#FAULT_BYTES} bytes without building it on the heap.
+     *
+     * @param arena The arena owning the records.
+     * @return The fault records.
+     */
+    public MemorySegment checkpointFaults(Arena arena) {
+        try (Arena scratch = Arena.ofConfined()) {
+            MemorySegment isOutput = scratch.allocate(Math.max(1, numLines), 1);
+            for (int k = 0; k < numOutputs; k++) {
+                isOutput.set(ValueLayout.JAVA_BYTE, primaryOutput(k), (byte) 1);
+            }
+
+            // Count first, so the records take a single allocation
+            long count = 2L * numInputs;
+            for (int line = 0; line < numLines; line++) {
+                count += 2L * branchCount(line, isOutput);
+            }
+            MemorySegment faults = arena.allocate(Math.max(1, count * OffHeapFaultSimulator.FAULT_BYTES), 4);
+            long f = 0;
+            for (int i = 0; i < numInputs; i++) {
+                OffHeapFaultSimulator.putFault(faults, f++, i, -1, 0);
+                OffHeapFaultSimulator.putFault(faults, f++, i, -1, 1);
+            }
+            for (int line = 0; line < numLines; line++) {
+                if (branchCount(line, isOutput) == 0) {
+                    continue;
+                }
+                int from = fanoutOffset.getAtIndex(INT, line);
+                int to = fanoutOffset.getAtIndex(INT, line + 1);
+                for (int i = from; i < to; i++) {
+                    // Fanout lists are sorted, so repeated pins of one gate are adjacent
+                    int g = fanout.getAtIndex(INT, i);
+                    if (i == from || g != fanout.getAtIndex(INT, i - 1)) {
+                        OffHeapFaultSimulator.putFault(faults, f++, line, g, 0);
+                        OffHeapFaultSimulator.putFault(faults, f++, line, g, 1);
+                    }
+                }
+            }
+            return faults.asSlice(0, count * OffHeapFaultSimulator.FAULT_BYTES);
+        }
+    }
+
+    /**
+     * Returns the number of branch faults per value a line has: one per distinct gate reading it
+     * when it feeds several gates or is a primary output feeding a gate, none otherwise.
+     */
+    private int branchCount(int line, MemorySegment isOutput) {
+        int from = fanoutOffset.getAtIndex(INT, line);
+        int to = fanoutOffset.getAtIndex(INT, line + 1);
+        int distinct = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from || fanout.getAtIndex(INT, i) != fanout.getAtIndex(INT, i - 1)) {
+                distinct++;
+            }
+        }
+        boolean output = isOutput.get(ValueLayout.JAVA_BYTE, line) != 0;
+        return distinct >= 2 || (distinct == 1 && output) ? distinct : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapCircuit{inputs=" + numInputs + ", outputs=" + numOutputs + ", gates=" + numGates + "}";
+    }
+}
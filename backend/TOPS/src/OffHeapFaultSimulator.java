@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * PPSFP fault grading on an {@link OffHeapCircuit}, with the fault list, the detection flags and
+ * the good and faulty words all in {@link MemorySegment}s. Simulation allocates nothing on the
+ * heap, so grading long pattern streams produces no garbage beyond the pattern chunks
+ * themselves.
+ * <p>
+ * A fault is a record of three little-endian ints: line, gate of a fanout-branch fault or -1 for a
+ * stem fault, and stuck value. Detection flags are one byte per fault and are kept across calls,
+ * so a grading run can be resumed chunk after chunk and only undetected faults are simulated.
+ * One simulator per thread; its word buffers come from the arena it is created with.
+ */
+public class OffHeapFaultSimulator {
+    public static final int FAULT_BYTES = 12;
+
+    private OffHeapCircuit circuit;
+    private MemorySegment good;
+    private MemorySegment faulty;
+    private PatternParallelFaultSimulator.BlockValues values = new SegmentValues();
+    private List<String> primaryInputs;
+
+    // Column map of the last pattern header seen; chunks of one pattern file share it
+    private List<String> columnHeader;
+    private int[] columnOf;
+
+    public OffHeapFaultSimulator(OffHeapCircuit circuit, Arena arena) {
+        this.circuit = circuit;
+        this.good = circuit.allocateWords(arena);
+        this.faulty = circuit.allocateWords(arena);
+        this.primaryInputs = circuit.getPrimaryInputNames();
+    }
+
+    /**
+     * Encodes an in-heap fault list as fault records.
+     *
+     * @param compiled The compiled circuit the fault names refer to.
+     * @param faults   The fault list.
+     * @param arena    The arena owning the records.
+     * @return The fault records, in list order.
+     */
+    public static MemorySegment encodeFaults(CompiledCircuit compiled, List<Fault> faults, Arena arena) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        MemorySegment records = arena.allocate(Math.max(1, (long) index.size() * FAULT_BYTES), 4);
+        for (int f = 0; f < index.size(); f++) {
+            putFault(records, f, index.line[f], index.gate[f], index.stuckAt[f]);
+        }
+        return records.asSlice(0, (long) index.size() * FAULT_BYTES);
+    }
+
+    static void putFault(MemorySegment faults, long f, int line, int gate, int stuckAt) {
+        faults.setAtIndex(OffHeapCircuit.INT, 3 * f, line);
+        faults.setAtIndex(OffHeapCircuit.INT, 3 * f + 1, gate);
+        faults.setAtIndex(OffHeapCircuit.INT, 3 * f + 2, stuckAt);
+    }
+
+    /**
+     * Returns the number of records in a fault segment.
+     */
+    public static long faultCount(MemorySegment faults) {
+        return faults.byteSize() / FAULT_BYTES;
+    }
+
+    /**
+     * Grades a pattern set against the faults not yet flagged as detected.
+     *
+     * @param faults   The fault records.
+     * @param detected One byte per fault, set to 1 when the fault is detected.
+     * @param patterns Patterns whose header covers every primary input.
+     * @return The number of faults flagged as detected after this call.
+     */
+    public long faultSimulation(MemorySegment faults, MemorySegment detected, PatternSet patterns) {
+        if (!patterns.getInputNames().equals(columnHeader)) {
+            columnOf = patterns.columnsFor(primaryInputs);
+            columnHeader = patterns.getInputNames();
+        }
+        try (Arena scratch = Arena.ofConfined()) {
+            MemorySegment remaining = remainingFaults(faults, detected, scratch);
+            long remainingCount = remaining.byteSize() / 8;
+            for (int block = 0; block < patterns.getNumBlocks() && remainingCount > 0; block++) {
+                for (int i = 0; i < columnOf.length; i++) {
+                    good.setAtIndex(OffHeapCircuit.WORD, i, patterns.word(columnOf[i], block));
+                }
+                circuit.simulateWords(good);
+                int count = Math.min(64, patterns.size() - 64 * block);
+                long mask = count == 64 ? -1L : (1L << count) - 1;
+                remainingCount = dropDetected(faults, detected, remaining, remainingCount, mask);
+            }
+        }
+        return detectedCount(detected);
+    }
+
+    /**
+     * Streams a pattern file chunk by chunk, stopping once every fault is detected.
+     *
+     * @param faults    The fault records.
+     * @param detected  One byte per fault, set to 1 when the fault is detected.
+     * @param reader    An open pattern file whose header covers every primary input.
+     * @param chunkSize Patterns read per chunk.
+     * @return The number of faults flagged as detected.
+     */
+    public long faultSimulation(MemorySegment faults, MemorySegment detected, PatternReader reader, int chunkSize)
+            throws IOException {
+        long detectedFaults = detectedCount(detected);
+        PatternSet chunk;
+        while (detectedFaults < faultCount(faults) && (chunk = reader.read(chunkSize)) != null) {
+            detectedFaults = faultSimulation(faults, detected, chunk);
+        }
+        return detectedFaults;
+    }
+
+    private static MemorySegment remainingFaults(MemorySegment faults, MemorySegment detected, Arena arena) {
+        long count = faultCount(faults);
+        MemorySegment remaining = arena.allocate(Math.max(1, 8 * count), 8);
+        long kept = 0;
+        for (long f = 0; f < count; f++) {
+            if (detected.get(ValueLayout.JAVA_BYTE, f) == 0) {
+                remaining.setAtIndex(ValueLayout.JAVA_LONG, kept++, f);
+            }
+        }
+        return remaining.asSlice(0, 8 * kept);
+    }
+
+    private static long detectedCount(MemorySegment detected) {
+        long count = 0;
+        for (long f = 0; f < detected.byteSize(); f++) {
+            count += detected.get(ValueLayout.JAVA_BYTE, f);
+        }
+        return count;
+    }
+
+    /**
+     * Runs every remaining fault against the current block and compacts the survivors.
+     *
+     * @return The number of faults still undetected.
+     */
+    private long dropDetected(MemorySegment faults, MemorySegment detected, MemorySegment remaining,
+                              long remainingCount, long mask) {
+        long kept = 0;
+        for (long k = 0; k < remainingCount; k++) {
+            long f = remaining.getAtIndex(ValueLayout.JAVA_LONG, k);
+            int line = faults.getAtIndex(OffHeapCircuit.INT, 3L * f);
+            int gate = faults.getAtIndex(OffHeapCircuit.INT, 3L * f + 1);
+            int stuckAt = faults.getAtIndex(OffHeapCircuit.INT, 3L * f + 2);
+            if (PatternParallelFaultSimulator.detectsInBlock(values, circuit.numInputs, line, gate, stuckAt, mask)) {
+                detected.set(ValueLayout.JAVA_BYTE, f, (byte) 1);
+            } else {
+                remaining.setAtIndex(ValueLayout.JAVA_LONG, kept++, f);
+            }
+        }
+        return kept;
+    }
+
+    private class SegmentValues implements PatternParallelFaultSimulator.BlockValues {
+        @Override
+        public long good(int line) {
+            return good.getAtIndex(OffHeapCircuit.WORD, line);
+        }
+
+        @Override
+        public void copyGood(int lines) {
+            MemorySegment.copy(good, 0, faulty, 0, 8L * lines);
+        }
+
+        @Override
+        public void setFaulty(int line, long word) {
+            faulty.setAtIndex(OffHeapCircuit.WORD, line, word);
+        }
+
+        @Override
+        public long evaluateFaulty(int gate, int pinLine, long pinWord) {
+            return circuit.evaluateWord(gate, faulty, pinLine, pinWord);
+        }
+
+        @Override
+        public void simulateFaulty(int firstGate) {
+            circuit.simulateWords(faulty, firstGate);
+        }
+
+        @Override
+        public boolean outputsDiffer(long mask) {
+            for (int k = 0; k < circuit.numOutputs; k++) {
+                int po = circuit.primaryOutput(k);
+                long difference = good.getAtIndex(OffHeapCircuit.WORD, po) ^ faulty.getAtIndex(OffHeapCircuit.WORD, po);
+                if ((difference & mask) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static void main(String[] args) {
+        String benchFilePath = args.length > 0 ? args[0]
+                : "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c7522.bench";
+        int patternCount = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 14;
+        try (Arena arena = Arena.ofShared()) {
+            // Map the netlist cache; the heap keeps only the segment handles
+            long startTime = System.nanoTime();
+            OffHeapCircuit circuit = NetlistCache.mapOffHeap(benchFilePath, arena);
+            System.out.printf("Mapped %s in %.2f ms%n", circuit, (System.nanoTime() - startTime) / 1e6);
+
+            MemorySegment faults = circuit.checkpointFaults(arena);
+            MemorySegment detected = arena.allocate(Math.max(1, faultCount(faults)), 1);
+            PatternSet patterns = PatternSet.random(circuit.getPrimaryInputNames(), patternCount, new Random(1));
+
+            // Grade in chunks, as a long run over a pattern file would
+            OffHeapFaultSimulator simulator = new OffHeapFaultSimulator(circuit, arena);
+            long gcBefore = gcCount();
+            startTime = System.nanoTime();
+            long detectedFaults = 0;
+            for (int first = 0; first < patterns.size(); first += 1024) {
+                PatternSet chunk = new PatternSet(patterns.getInputNames(), 1024);
+                chunk.addAll(patterns, first, Math.min(1024, patterns.size() - first));
+                detectedFaults = simulator.faultSimulation(faults, detected, chunk);
+            }
+            long time = System.nanoTime() - startTime;
+            System.out.printf("Checkpoint faults: %d, detected %d (%.2f%%) in %.1f ms, %d collections%n",
+                    faultCount(faults), detectedFaults, 100.0 * detectedFaults / faultCount(faults), time / 1e6,
+                    gcCount() - gcBefore);
+            System.out.printf("Heap used: %.1f MB, off-heap segments: %.1f MB%n",
+                    (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1e6,
+                    (faults.byteSize() + detected.byteSize() + 16L * circuit.getNumLines()) / 1e6);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+}
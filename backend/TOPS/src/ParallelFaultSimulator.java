@@ -0,0 +1,274 @@
+import java.util.*;
+
+/**
+ * Word-level parallel-fault simulator.
+ * <p>
+ * One test vector is simulated at a time, but each line holds a word of {@code wordLength} bits:
+ * slot 0 carries the good machine and slots {@code 1 .. wordLength-1} carry one faulty machine
+ * each. Faults are injected through per-slot stuck-at masks at their sites: on the line for a
+ * stem fault, on the gate input pins for a fanout-branch fault. Detected faults are
+ * dropped and the remaining ones are repacked into slots before the next vector.
+ * <p>
+ * Word lengths of 32 and any multiple of 64 are supported; lengths above 64 use several
+ * {@code long}s per line.
+ */
+public class ParallelFaultSimulator implements FaultSimulationEngine {
+    private CompiledCircuit compiled;
+    private int wordLength;
+    private int numWords;
+    private long[] slotMask;    // valid slot bits per word
+    private long[] values;      // numWords words per line
+    private long[] stuckAt0;    // per-slot masks forcing a line to 0
+    private long[] stuckAt1;    // per-slot masks forcing a line to 1
+    private boolean[] injected; // lines carrying any mask in the current packing
+    private long[] pinStuckAt0; // per-slot masks on gate input pins, indexed by fanin position
+    private long[] pinStuckAt1;
+    private boolean[] pinInjected; // gates with any pin mask in the current packing
+    private byte[] inputBits;
+
+    public ParallelFaultSimulator(Circuit circuit, int wordLength) {
+        this(CompiledCircuit.compile(circuit), wordLength);
+    }
+
+    public ParallelFaultSimulator(CompiledCircuit compiled, int wordLength) {
+        if (wordLength != 32 && (wordLength < 64 || wordLength % 64 != 0)) {
+            throw new IllegalArgumentException("Word length must be 32 or a multiple of 64: " + wordLength);
+        }
+        this.compiled = compiled;
+        this.wordLength = wordLength;
+        this.numWords = Math.max(1, wordLength / 64);
+        this.slotMask = new long[numWords];
+        Arrays.fill(slotMask, wordLength == 32 ? 0xFFFFFFFFL : -1L);
+
+        int size = compiled.getNumLines() * numWords;
+        this.values = new long[size];
+        this.stuckAt0 = new long[size];
+        this.stuckAt1 = new long[size];
+        this.injected = new boolean[compiled.getNumLines()];
+        this.pinStuckAt0 = new long[compiled.fanin.length * numWords];
+        this.pinStuckAt1 = new long[compiled.fanin.length * numWords];
+        this.pinInjected = new boolean[compiled.getNumGates()];
+        this.inputBits = new byte[compiled.getNumLines()];
+    }
+
+    public int getWordLength() {
+        return wordLength;
+    }
+
+    @Override
+    public double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+
+        int[] remaining = new int[index.size()];
+        for (int f = 0; f < remaining.length; f++) {
+            remaining[f] = f;
+        }
+        int remainingCount = remaining.length;
+        int faultsPerPass = wordLength - 1;
+
+        for (Map<String, Integer> testVector : testVectors) {
+            if (remainingCount == 0) {
+                break;
+            }
+            compiled.loadInputs(testVector, inputBits);
+
+            // Pack the remaining faults into slots 1 .. wordLength-1, one pass per group
+            for (int start = 0; start < remainingCount; start += faultsPerPass) {
+                int end = Math.min(remainingCount, start + faultsPerPass);
+                injectGroup(index, remaining, start, end);
+                simulatePass();
+                collectDetected(remaining, start, detected);
+                clearGroup(index, remaining, start, end);
+            }
+
+            // Drop detected faults and repack the rest for the next vector
+            int kept = 0;
+            for (int k = 0; k < remainingCount; k++) {
+                if (!detected[remaining[k]]) {
+                    remaining[kept++] = remaining[k];
+                }
+            }
+            remainingCount = kept;
+        }
+
+        int detectedFaults = 0;
+        for (int f = 0; f < detected.length; f++) {
+            if (detected[f]) {
+                detectedFaults++;
+            } else {
+                System.out.println("Undetected Fault: " + index.fault(f));
+            }
+        }
+
+        // Calculate fault coverage
+        return (double) detectedFaults / faults.size();
+    }
+
+    private void injectGroup(FaultIndex index, int[] remaining, int start, int end) {
+        for (int k = start; k < end; k++) {
+            int f = remaining[k];
+            int slot = k - start + 1;
+            long bit = 1L << (slot % 64);
+            int g = index.gate[f];
+            if (g >= 0) {
+                // Branch fault: mask every pin of the gate reading the faulty line
+                for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                    if (compiled.fanin[i] == index.line[f]) {
+                        int at = i * numWords + slot / 64;
+                        if (index.stuckAt[f] == 0) {
+                            pinStuckAt0[at] |= bit;
+                        } else {
+                            pinStuckAt1[at] |= bit;
+                        }
+                    }
+                }
+                pinInjected[g] = true;
+                continue;
+            }
+            int at = index.line[f] * numWords + slot / 64;
+            if (index.stuckAt[f] == 0) {
+                stuckAt0[at] |= bit;
+            } else {
+                stuckAt1[at] |= bit;
+            }
+            injected[index.line[f]] = true;
+        }
+    }
+
+    private void clearGroup(FaultIndex index, int[] remaining, int start, int end) {
+        for (int k = start; k < end; k++) {
+            int g = index.gate[remaining[k]];
+            if (g >= 0) {
+                int from = compiled.faninOffset[g] * numWords;
+                int to = compiled.faninOffset[g + 1] * numWords;
+                Arrays.fill(pinStuckAt0, from, to, 0L);
+                Arrays.fill(pinStuckAt1, from, to, 0L);
+                pinInjected[g] = false;
+                continue;
+            }
+            int line = index.line[remaining[k]];
+            Arrays.fill(stuckAt0, line * numWords, (line + 1) * numWords, 0L);
+            Arrays.fill(stuckAt1, line * numWords, (line + 1) * numWords, 0L);
+            injected[line] = false;
+        }
+    }
+
+    /**
+     * Simulates the good machine and every packed faulty machine for the current vector.
+     */
+    private void simulatePass() {
+        int numInputs = compiled.numInputs;
+
+        // Broadcast each primary input value to all slots
+        for (int i = 0; i < numInputs; i++) {
+            for (int w = 0; w < numWords; w++) {
+                values[i * numWords + w] = inputBits[i] == 0 ? 0L : slotMask[w];
+            }
+            if (injected[i]) {
+                applyMasks(i);
+            }
+        }
+
+        for (int g = 0; g < compiled.numGates; g++) {
+            int out = numInputs + g;
+            for (int w = 0; w < numWords; w++) {
+                long word = pinInjected[g] ? evaluateMaskedWord(g, w) : evaluateWord(g, w);
+                values[out * numWords + w] = word & slotMask[w];
+            }
+            if (injected[out]) {
+                applyMasks(out);
+            }
+        }
+    }
+
+    private void applyMasks(int line) {
+        for (int w = 0; w < numWords; w++) {
+            int at = line * numWords + w;
+            values[at] = (values[at] & ~stuckAt0[at]) | stuckAt1[at];
+        }
+    }
+
+    private long evaluateWord(int g, int w) {
+        int[] fanin = compiled.fanin;
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        byte type = compiled.gateType[g];
+        long acc;
+        switch (type & ~1) {
+            case CompiledCircuit.AND:
+                acc = -1L;
+                for (int i = from; i < to; i++) {
+                    acc &= values[fanin[i] * numWords + w];
+                }
+                break;
+            case CompiledCircuit.OR:
+                acc = 0L;
+                for (int i = from; i < to; i++) {
+                    acc |= values[fanin[i] * numWords + w];
+                }
+                break;
+            case CompiledCircuit.XOR:
+                acc = 0L;
+                for (int i = from; i < to; i++) {
+                    acc ^= values[fanin[i] * numWords + w];
+                }
+                break;
+            default: // BUF, NOT
+                acc = values[fanin[from] * numWords + w];
+                break;
+        }
+        return (type & 1) == 0 ? acc : ~acc;
+    }
+
+    /**
+     * Evaluates a gate with its pin masks applied to the input words.
+     */
+    private long evaluateMaskedWord(int g, int w) {
+        int[] fanin = compiled.fanin;
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        byte type = compiled.gateType[g];
+        long acc = (type & ~1) == CompiledCircuit.AND ? -1L : 0L;
+        for (int i = from; i < to; i++) {
+            int at = i * numWords + w;
+            long v = (values[fanin[i] * numWords + w] & ~pinStuckAt0[at]) | pinStuckAt1[at];
+            switch (type & ~1) {
+                case CompiledCircuit.AND:
+                    acc &= v;
+                    break;
+                case CompiledCircuit.OR:
+                    acc |= v;
+                    break;
+                default: // XOR, BUF, NOT
+                    acc ^= v;
+                    break;
+            }
+        }
+        return (type & 1) == 0 ? acc : ~acc;
+    }
+
+    /**
+     * Marks every packed fault whose slot differs from the good machine at a primary output.
+     */
+    private void collectDetected(int[] remaining, int start, boolean[] detected) {
+        for (int po : compiled.primaryOutputs) {
+            int base = po * numWords;
+            long expected = (values[base] & 1L) == 0 ? 0L : -1L;
+            for (int w = 0; w < numWords; w++) {
+                long diff = (values[base + w] ^ expected) & slotMask[w];
+                if (w == 0) {
+                    diff &= ~1L; // slot 0 is the good machine
+                }
+                while (diff != 0) {
+                    int slot = w * 64 + Long.numberOfTrailingZeros(diff);
+                    int k = start + slot - 1;
+                    if (k < remaining.length) {
+                        detected[remaining[k]] = true;
+                    }
+                    diff &= diff - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Pattern-parallel single-fault-propagation (PPSFP) fault simulator.
+ * <p>
+ * Each line holds a {@code long} carrying 64 test vectors. The good machine is simulated once per
+ * 64-vector block; every fault still undetected is then injected as a stuck word and only the
+ * gates after the fault site are re-evaluated. Detected faults are dropped between blocks.
+ */
+public class PatternParallelFaultSimulator implements FaultSimulationEngine {
+    /**
+     * Tells whether the current block of patterns detects a fault.
+     */
+    interface BlockTest {
+        boolean detects(int line, int gate, int stuckAt);
+    }
+
+    /**
+     * The good and faulty words of one block, wherever a simulator keeps them.
+     */
+    interface BlockValues {
+        long good(int line);
+
+        /**
+         * Copies the good words of lines {@code 0 .. lines - 1} into the faulty words.
+         */
+        void copyGood(int lines);
+
+        void setFaulty(int line, long word);
+
+        /**
+         * Evaluates a gate over the faulty words with one fanin line pinned to a word.
+         */
+        long evaluateFaulty(int gate, int pinLine, long pinWord);
+
+        /**
+         * Re-evaluates the faulty words from a gate onward.
+         */
+        void simulateFaulty(int firstGate);
+
+        /**
+         * Returns true if a primary output differs between the good and faulty words in the mask.
+         */
+        boolean outputsDiffer(long mask);
+    }
+
+    private CompiledCircuit compiled;
+    private long[] good;
+    private long[] faulty;
+    private BlockValues values = new HeapValues();
+
+    public PatternParallelFaultSimulator(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public PatternParallelFaultSimulator(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        this.good = new long[compiled.getNumLines()];
+        this.faulty = new long[compiled.getNumLines()];
+    }
+
+    @Override
+    public double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+        int[] remaining = allFaults(index);
+        int remainingCount = remaining.length;
+
+        for (int start = 0; start < testVectors.size() && remainingCount > 0; start += 64) {
+            int count = Math.min(64, testVectors.size() - start);
+
+            // Simulate the good machine once for the whole block
+            compiled.loadInputWords(testVectors, start, count, good);
+            compiled.simulateWords(good);
+            remainingCount = dropDetected(index, remaining, remainingCount, detected, blockTest(blockMask(count)));
+        }
+        return coverage(index, detected, faults.size());
+    }
+
+    /**
+     * Simulates a packed pattern set, reading every 64-pattern block straight from its columns.
+     *
+     * @param faults   The fault list.
+     * @param patterns Patterns whose header covers every primary input.
+     * @return The fault coverage.
+     */
+    public double faultSimulation(List<Fault> faults, PatternSet patterns) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+        int[] remaining = allFaults(index);
+        int remainingCount = simulatePatterns(index, patterns, patterns.columnsFor(compiled), remaining,
+                remaining.length, detected);
+        return coverage(index, detected, faults.size());
+    }
+
+    /**
+     * Streams a pattern file chunk by chunk, so only one chunk is ever held in memory. Stops reading
+     * once every fault is detected.
+     *
+     * @param faults    The fault list.
+     * @param reader    An open pattern file whose header covers every primary input.
+     * @param chunkSize Patterns read per chunk.
+     * @return The fault coverage.
+     */
+    public double faultSimulation(List<Fault> faults, PatternReader reader, int chunkSize) throws IOException {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+        int[] remaining = allFaults(index);
+        int remainingCount = remaining.length;
+        int[] columnOf = new PatternSet(reader.getInputNames(), 0).columnsFor(compiled);
+
+        PatternSet chunk;
+        while (remainingCount > 0 && (chunk = reader.read(chunkSize)) != null) {
+            remainingCount = simulatePatterns(index, chunk, columnOf, remaining, remainingCount, detected);
+        }
+        return coverage(index, detected, faults.size());
+    }
+
+    private int simulatePatterns(FaultIndex index, PatternSet patterns, int[] columnOf, int[] remaining,
+                                 int remainingCount, boolean[] detected) {
+        for (int block = 0; block < patterns.getNumBlocks() && remainingCount > 0; block++) {
+            patterns.loadInputWords(block, columnOf, good);
+            compiled.simulateWords(good);
+            int count = Math.min(64, patterns.size() - 64 * block);
+            remainingCount = dropDetected(index, remaining, remainingCount, detected, blockTest(blockMask(count)));
+        }
+        return remainingCount;
+    }
+
+    /**
+     * Simulates one block whose primary-input words are given in compiled input order, for pattern
+     * sources that produce words directly.
+     *
+     * @param inputWords One word per primary input.
+     * @param count      Patterns held in the low bits of the words.
+     * @return The number of faults still undetected.
+     */
+    int simulateBlock(FaultIndex index, long[] inputWords, int count, int[] remaining, int remainingCount,
+                      boolean[] detected) {
+        System.arraycopy(inputWords, 0, good, 0, compiled.numInputs);
+        compiled.simulateWords(good);
+        return dropDetected(index, remaining, remainingCount, detected, blockTest(blockMask(count)));
+    }
+
+    private BlockTest blockTest(long mask) {
+        return (line, gate, stuckAt) -> detectsInBlock(line, gate, stuckAt, mask);
+    }
+
+    /**
+     * Runs every remaining fault against the current block and compacts the survivors.
+     *
+     * @return The number of faults still undetected.
+     */
+    static int dropDetected(FaultIndex index, int[] remaining, int remainingCount, boolean[] detected,
+                            BlockTest test) {
+        int kept = 0;
+        for (int k = 0; k < remainingCount; k++) {
+            int f = remaining[k];
+            if (test.detects(index.line[f], index.gate[f], index.stuckAt[f])) {
+                detected[f] = true;
+            } else {
+                remaining[kept++] = f;
+            }
+        }
+        return kept;
+    }
+
+    static int[] allFaults(FaultIndex index) {
+        // Faults still undetected, compacted after every block
+        int[] remaining = new int[index.size()];
+        for (int f = 0; f < remaining.length; f++) {
+            remaining[f] = f;
+        }
+        return remaining;
+    }
+
+    private static long blockMask(int count) {
+        return count == 64 ? -1L : (1L << count) - 1;
+    }
+
+    /**
+     * Prints every undetected fault and returns the fault coverage.
+     */
+    static double coverage(FaultIndex index, boolean[] detected, int faultCount) {
+        int detectedFaults = 0;
+        for (int f = 0; f < detected.length; f++) {
+            if (detected[f]) {
+                detectedFaults++;
+            } else {
+                System.out.println("Undetected Fault: " + index.fault(f));
+            }
+        }
+
+        // Calculate fault coverage
+        return (double) detectedFaults / faultCount;
+    }
+
+    /**
+     * Injects a fault as a stuck word into the current block and propagates it.
+     *
+     * @param values    The words of the block, with the good machine already simulated.
+     * @param numInputs The number of primary inputs.
+     * @param faultLine The faulty line id.
+     * @param faultGate The gate of a fanout-branch fault, or -1 for a stem fault.
+     * @param stuckAt   The stuck value.
+     * @param mask      Bits of the block that hold real vectors.
+     * @return True if any vector of the block detects the fault.
+     */
+    static boolean detectsInBlock(BlockValues values, int numInputs, int faultLine, int faultGate, int stuckAt,
+                                  long mask) {
+        long stuckWord = stuckAt == 0 ? 0L : -1L;
+
+        // No vector in the block activates the fault
+        if (((values.good(faultLine) ^ stuckWord) & mask) == 0) {
+            return false;
+        }
+
+        // Only gates after the fault site in level order can change
+        int firstGate;
+        if (faultGate >= 0) {
+            // A branch fault is only seen by the gate it feeds
+            values.copyGood(numInputs + faultGate);
+            values.setFaulty(numInputs + faultGate, values.evaluateFaulty(faultGate, faultLine, stuckWord));
+            firstGate = faultGate + 1;
+        } else {
+            firstGate = faultLine < numInputs ? 0 : faultLine - numInputs + 1;
+            values.copyGood(numInputs + firstGate);
+            values.setFaulty(faultLine, stuckWord);
+        }
+
+        values.simulateFaulty(firstGate);
+        return values.outputsDiffer(mask);
+    }
+
+    private boolean detectsInBlock(int faultLine, int faultGate, int stuckAt, long mask) {
+        return detectsInBlock(values, compiled.numInputs, faultLine, faultGate, stuckAt, mask);
+    }
+
+    private class HeapValues implements BlockValues {
+        @Override
+        public long good(int line) {
+            return good[line];
+        }
+
+        @Override
+        public void copyGood(int lines) {
+            System.arraycopy(good, 0, faulty, 0, lines);
+        }
+
+        @Override
+        public void setFaulty(int line, long word) {
+            faulty[line] = word;
+        }
+
+        @Override
+        public long evaluateFaulty(int gate, int pinLine, long pinWord) {
+            return compiled.evaluateWord(gate, faulty, pinLine, pinWord);
+        }
+
+        @Override
+        public void simulateFaulty(int firstGate) {
+            compiled.simulateWords(faulty, firstGate);
+        }
+
+        @Override
+        public boolean outputsDiffer(long mask) {
+            for (int po : compiled.primaryOutputs) {
+                if (((good[po] ^ faulty[po]) & mask) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
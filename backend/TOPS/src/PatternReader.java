@@ -0,0 +1,230 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a pattern file written by {@link PatternWriter} chunk by chunk, so fault simulation can
+ * stream pattern sets far larger than memory. The format, text or binary, is detected from the
+ * first bytes of the file.
+ */
+public class PatternReader implements Closeable {
+    private DataInputStream in;
+    private boolean binary;
+    private List<String> inputNames;
+    private List<String> comments = new ArrayList<>();
+    private int lineNumber;
+
+    // Binary chunk being consumed, and the next pattern of it to return
+    private PatternSet pending;
+    private int pendingNext;
+
+    /**
+     * Opens a pattern file and reads its header.
+     *
+     * @param path The pattern file.
+     * @throws IOException If the file cannot be read or its header is malformed.
+     */
+    public PatternReader(Path path) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        in.mark(8);
+        long magic = 0;
+        int read = 0;
+        while (read < 8) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            magic = magic << 8 | b;
+            read++;
+        }
+        this.binary = read == 8 && magic == PatternWriter.MAGIC;
+        if (binary) {
+            readBinaryHeader();
+        } else {
+            in.reset();
+            readTextHeader();
+        }
+    }
+
+    /**
+     * Returns the primary input IDs of the file, in column order.
+     */
+    public List<String> getInputNames() {
+        return inputNames;
+    }
+
+    /**
+     * Returns the comment lines of the file header, without the leading {@code #} of text files.
+     */
+    public List<String> getComments() {
+        return comments;
+    }
+
+    /**
+     * Reads the next patterns of the file.
+     *
+     * @param maxPatterns Most patterns to return; a multiple of 64 keeps the copy word-aligned.
+     * @return Up to {@code maxPatterns} patterns, or null at the end of the file.
+     */
+    public PatternSet read(int maxPatterns) throws IOException {
+        if (maxPatterns < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + maxPatterns);
+        }
+        PatternSet chunk = new PatternSet(inputNames, maxPatterns);
+        if (binary) {
+            while (chunk.size() < maxPatterns) {
+                if (pending == null || pendingNext == pending.size()) {
+                    pending = readBinaryChunk();
+                    pendingNext = 0;
+                    if (pending == null) {
+                        break;
+                    }
+                }
+                int count = Math.min(maxPatterns - chunk.size(), pending.size() - pendingNext);
+                chunk.addAll(pending, pendingNext, count);
+                pendingNext += count;
+            }
+        } else {
+            byte[] values = new byte[inputNames.size()];
+            String line;
+            while (chunk.size() < maxPatterns && (line = nextLine()) != null) {
+                parsePattern(line, values);
+                chunk.add(values);
+            }
+        }
+        return chunk.size() == 0 ? null : chunk;
+    }
+
+    /**
+     * Reads all remaining patterns into one set.
+     */
+    public PatternSet readAll() throws IOException {
+        PatternSet all = new PatternSet(inputNames);
+        PatternSet chunk;
+        while ((chunk = read(1 << 16)) != null) {
+            all.addAll(chunk, 0, chunk.size());
+        }
+        return all;
+    }
+
+    /**
+     * Reads a whole pattern file.
+     */
+    public static PatternSet readAll(Path path) throws IOException {
+        try (PatternReader reader = new PatternReader(path)) {
+            return reader.readAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readBinaryHeader() throws IOException {
+        int version = in.readInt();
+        if (version < 1 || version > PatternWriter.VERSION) {
+            throw new IOException("Unsupported pattern file version: " + version);
+        }
+        int numInputs = in.readInt();
+        if (numInputs < 0) {
+            throw new IOException("Invalid input count: " + numInputs);
+        }
+        List<String> names = new ArrayList<>(numInputs);
+        for (int i = 0; i < numInputs; i++) {
+            names.add(in.readUTF());
+        }
+        this.inputNames = List.copyOf(names);
+        if (version >= 2) {
+            int numComments = in.readInt();
+            if (numComments < 0) {
+                throw new IOException("Invalid comment count: " + numComments);
+            }
+            for (int c = 0; c < numComments; c++) {
+                comments.add(in.readUTF());
+            }
+        }
+        this.comments = List.copyOf(comments);
+    }
+
+    private PatternSet readBinaryChunk() throws IOException {
+        int count;
+        try {
+            count = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (count < 1) {
+            throw new IOException("Invalid pattern chunk size: " + count);
+        }
+        int words = (count + 63) >>> 6;
+        PatternSet chunk = new PatternSet(inputNames, count);
+        long[] column = new long[words];
+        for (int i = 0; i < inputNames.size(); i++) {
+            for (int w = 0; w < words; w++) {
+                column[w] = in.readLong();
+            }
+            System.arraycopy(column, 0, chunk.column(i), 0, words);
+        }
+        chunk.setSize(count);
+        return chunk;
+    }
+
+    private void readTextHeader() throws IOException {
+        String header = nextLine();
+        if (header == null || !header.startsWith("INPUTS")) {
+            throw new IOException("Missing INPUTS header at line " + lineNumber);
+        }
+        String[] names = header.substring("INPUTS".length()).trim().split("\\s+");
+        this.inputNames = names.length == 1 && names[0].isEmpty() ? List.of() : List.copyOf(Arrays.asList(names));
+        this.comments = List.copyOf(comments);
+    }
+
+    private void parsePattern(String line, byte[] values) throws IOException {
+        int i = 0;
+        for (int c = 0; c < line.length(); c++) {
+            char ch = line.charAt(c);
+            if (ch == '0' || ch == '1') {
+                if (i == values.length) {
+                    throw new IOException("Too many values at line " + lineNumber);
+                }
+                values[i++] = (byte) (ch - '0');
+            } else if (!Character.isWhitespace(ch)) {
+                throw new IOException("Invalid value '" + ch + "' at line " + lineNumber);
+            }
+        }
+        if (i != values.length) {
+            throw new IOException("Expected " + values.length + " values but found " + i + " at line " + lineNumber);
+        }
+    }
+
+    /**
+     * Returns the next line that is neither blank nor a comment, or null at the end of the file.
+     */
+    private String nextLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            line.reset();
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                line.write(b);
+            }
+            if (b < 0 && line.size() == 0) {
+                return null;
+            }
+            lineNumber++;
+            String text = line.toString(StandardCharsets.UTF_8).trim();
+            if (!text.isEmpty() && !text.startsWith("#")) {
+                return text;
+            }
+            if (inputNames == null && text.startsWith("#")) {
+                // Comments before the header describe the file
+                comments.add(text.substring(1).trim());
+            }
+        }
+    }
+}
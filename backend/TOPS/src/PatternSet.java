@@ -0,0 +1,308 @@
+import java.util.*;
+
+/**
+ * Compact store of test patterns.
+ * <p>
+ * Values are packed one bit per pattern in a {@code long[]} column per primary input, in header
+ * order: bit {@code p % 64} of {@code column[i][p / 64]} is the value of input {@code i} in pattern
+ * {@code p}. A word of a column is therefore exactly the 64-pattern input word the
+ * pattern-parallel engines simulate, and a pattern costs one bit per input instead of a map entry.
+ */
+public class PatternSet {
+    private List<String> inputNames;
+    private long[][] columns;
+    private int size;
+
+    public PatternSet(List<String> inputNames) {
+        this(inputNames, 64);
+    }
+
+    /**
+     * @param inputNames Primary input IDs, in column order.
+     * @param capacity   Number of patterns to reserve room for.
+     */
+    public PatternSet(List<String> inputNames, int capacity) {
+        this.inputNames = List.copyOf(inputNames);
+        this.columns = new long[inputNames.size()][Math.max(1, (capacity + 63) / 64)];
+    }
+
+    /**
+     * Returns every combination of the first {@code maxInputs} inputs, the others held at 0.
+     */
+    public static PatternSet exhaustive(List<String> inputNames, int maxInputs) {
+        int enumerated = Math.min(inputNames.size(), maxInputs);
+        int count = 1 << enumerated;
+        PatternSet patterns = new PatternSet(inputNames, count);
+        for (int i = 0; i < enumerated; i++) {
+            for (int p = 0; p < count; p++) {
+                patterns.columns[i][p >>> 6] |= (long) ((p >> i) & 1) << p;
+            }
+        }
+        patterns.size = count;
+        return patterns;
+    }
+
+    /**
+     * Returns {@code count} uniformly random patterns.
+     */
+    public static PatternSet random(List<String> inputNames, int count, Random random) {
+        PatternSet patterns = new PatternSet(inputNames, count);
+        for (long[] column : patterns.columns) {
+            for (int w = 0; w < column.length; w++) {
+                column[w] = random.nextLong();
+            }
+        }
+        patterns.size = count;
+        patterns.clearTail();
+        return patterns;
+    }
+
+    /**
+     * Packs test vectors given as maps from input IDs to values.
+     */
+    public static PatternSet fromMaps(List<String> inputNames, List<Map<String, Integer>> testVectors) {
+        PatternSet patterns = new PatternSet(inputNames, testVectors.size());
+        for (Map<String, Integer> vector : testVectors) {
+            patterns.add(vector);
+        }
+        return patterns;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getNumInputs() {
+        return inputNames.size();
+    }
+
+    public List<String> getInputNames() {
+        return inputNames;
+    }
+
+    /**
+     * Returns the number of 64-pattern words per column in use.
+     */
+    public int getNumBlocks() {
+        return (size + 63) / 64;
+    }
+
+    /**
+     * Appends a pattern.
+     *
+     * @param values Value per input, in column order.
+     */
+    public void add(byte[] values) {
+        if (values.length < inputNames.size()) {
+            throw new IllegalArgumentException("Pattern has " + values.length + " values for " + inputNames.size() + " inputs");
+        }
+        ensureCapacity(size + 1);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][size >>> 6] |= (long) (values[i] & 1) << size;
+        }
+        size++;
+    }
+
+    /**
+     * Appends a pattern given as a map from input IDs to values.
+     */
+    public void add(Map<String, Integer> vector) {
+        ensureCapacity(size + 1);
+        for (int i = 0; i < columns.length; i++) {
+            Integer v = vector.get(inputNames.get(i));
+            if (v == null) {
+                throw new IllegalStateException("Input value for signal " + inputNames.get(i) + " is missing.");
+            }
+            columns[i][size >>> 6] |= (long) (v & 1) << size;
+        }
+        size++;
+    }
+
+    /**
+     * Appends up to 64 patterns given as one word per input, pattern {@code t} in bit {@code t}.
+     *
+     * @param words One word per input, in column order.
+     * @param count Number of patterns in the words.
+     */
+    public void addWords(long[] words, int count) {
+        if (count < 0 || count > 64) {
+            throw new IllegalArgumentException("A word holds 0 to 64 patterns: " + count);
+        }
+        ensureCapacity(size + count);
+        long mask = count == 64 ? -1L : (1L << count) - 1;
+        int shift = size & 63;
+        for (int i = 0; i < columns.length; i++) {
+            long word = words[i] & mask;
+            columns[i][size >>> 6] |= word << shift;
+            if (shift != 0 && shift + count > 64) {
+                columns[i][(size >>> 6) + 1] |= word >>> (64 - shift);
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Appends {@code count} patterns of another set with the same inputs, starting at {@code from}.
+     */
+    public void addAll(PatternSet other, int from, int count) {
+        if (!other.inputNames.equals(inputNames)) {
+            throw new IllegalArgumentException("Pattern sets have different inputs");
+        }
+        ensureCapacity(size + count);
+        if ((size & 63) == 0 && (from & 63) == 0) {
+            // Both ends are word aligned: copy whole words
+            for (int i = 0; i < columns.length; i++) {
+                System.arraycopy(other.columns[i], from >>> 6, columns[i], size >>> 6, (count + 63) >>> 6);
+            }
+            size += count;
+            clearTail();
+            return;
+        }
+        for (int p = 0; p < count; p++) {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i][size >>> 6] |= (long) other.get(from + p, i) << size;
+            }
+            size++;
+        }
+    }
+
+    public int get(int pattern, int input) {
+        checkPattern(pattern);
+        return (int) (columns[input][pattern >>> 6] >>> pattern) & 1;
+    }
+
+    /**
+     * Returns 64 consecutive patterns of one input, starting at pattern {@code 64 * block}. Bits
+     * past the last pattern are 0.
+     */
+    public long word(int input, int block) {
+        return columns[input][block];
+    }
+
+    public void clear() {
+        for (long[] column : columns) {
+            Arrays.fill(column, 0L);
+        }
+        size = 0;
+    }
+
+    /**
+     * Checks the header against the primary inputs of a circuit.
+     *
+     * @param compiled The compiled circuit.
+     * @return The column of every primary input, by compiled input index.
+     * @throws IllegalStateException If an input of the circuit has no column.
+     */
+    public int[] columnsFor(CompiledCircuit compiled) {
+        return columnsFor(compiled.getPrimaryInputNames());
+    }
+
+    /**
+     * Checks the header against primary input names in compiled order.
+     *
+     * @param primaryInputs The primary input names.
+     * @return The column of every primary input, by compiled input index.
+     * @throws IllegalStateException If an input has no column.
+     */
+    public int[] columnsFor(List<String> primaryInputs) {
+        Map<String, Integer> position = new HashMap<>();
+        for (int i = 0; i < inputNames.size(); i++) {
+            position.put(inputNames.get(i), i);
+        }
+        int[] columnOf = new int[primaryInputs.size()];
+        for (int i = 0; i < columnOf.length; i++) {
+            Integer column = position.get(primaryInputs.get(i));
+            if (column == null) {
+                throw new IllegalStateException("Input value for signal " + primaryInputs.get(i) + " is missing.");
+            }
+            columnOf[i] = column;
+        }
+        return columnOf;
+    }
+
+    /**
+     * Copies one pattern into the primary-input slots of a line value array.
+     *
+     * @param columnOf Column per compiled input, from {@link #columnsFor}.
+     */
+    public void loadInputs(int pattern, int[] columnOf, byte[] values) {
+        checkPattern(pattern);
+        for (int i = 0; i < columnOf.length; i++) {
+            values[i] = (byte) ((columns[columnOf[i]][pattern >>> 6] >>> pattern) & 1);
+        }
+    }
+
+    /**
+     * Copies a 64-pattern block into the primary-input words of a line value array.
+     *
+     * @param columnOf Column per compiled input, from {@link #columnsFor}.
+     */
+    public void loadInputWords(int block, int[] columnOf, long[] values) {
+        for (int i = 0; i < columnOf.length; i++) {
+            values[i] = columns[columnOf[i]][block];
+        }
+    }
+
+    /**
+     * Expands the patterns into one map per pattern, for engines taking that form.
+     */
+    public List<Map<String, Integer>> toMaps() {
+        List<Map<String, Integer>> testVectors = new ArrayList<>(size);
+        for (int p = 0; p < size; p++) {
+            Map<String, Integer> vector = new HashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                vector.put(inputNames.get(i), get(p, i));
+            }
+            testVectors.add(vector);
+        }
+        return testVectors;
+    }
+
+    long[] column(int input) {
+        return columns[input];
+    }
+
+    /**
+     * Sets the pattern count after the columns have been filled directly.
+     */
+    void setSize(int size) {
+        ensureCapacity(size);
+        this.size = size;
+        clearTail();
+    }
+
+    private void ensureCapacity(int patterns) {
+        int words = (patterns + 63) >>> 6;
+        if (columns.length == 0 || words <= columns[0].length) {
+            return;
+        }
+        int grown = Math.max(words, columns[0].length * 2);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Arrays.copyOf(columns[i], grown);
+        }
+    }
+
+    /**
+     * Zeroes the bits past the last pattern.
+     */
+    private void clearTail() {
+        if (columns.length == 0) {
+            return;
+        }
+        int fromWord = size >>> 6;
+        for (long[] column : columns) {
+            if ((size & 63) != 0) {
+                column[fromWord] &= (1L << size) - 1;
+                Arrays.fill(column, fromWord + 1, column.length, 0L);
+            } else {
+                Arrays.fill(column, fromWord, column.length, 0L);
+            }
+        }
+    }
+
+    private void checkPattern(int pattern) {
+        if (pattern < 0 || pattern >= size) {
+            throw new IndexOutOfBoundsException("Pattern " + pattern + " of " + size);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes a pattern file chunk by chunk, so a pattern set never has to be held in full.
+ * <p>
+ * Text files start with an {@code INPUTS} header naming the primary inputs in column order,
+ * followed by one line of {@code 0}/{@code 1} characters per pattern. Lines starting with
+ * {@code #} are comments; those before the header, such as the statistics of the run that
+ * generated the patterns, are returned by {@link PatternReader#getComments()}.
+ * <p>
+ * Binary files, big-endian:
+ * <pre>
+ *   long  magic "TOPSPAT1"
+ *   int   version
+ *   int   numInputs, then numInputs names (modified UTF-8, length-prefixed)
+ *   int   numComments, then numComments comment lines, encoded the same way (version 2)
+ *   repeated chunks:
+ *     int    count
+ *     long[] (count + 63) / 64 words per input, in column order
+ * </pre>
+ * A chunk written from a {@link PatternSet} holds its packed columns as they are.
+ */
+public class PatternWriter implements Closeable {
+    static final long MAGIC = 0x544F505350415431L; // "TOPSPAT1"
+    static final int VERSION = 2;
+
+    public enum Format { TEXT, BINARY }
+
+    private List<String> inputNames;
+    private Format format;
+    private DataOutputStream out;
+    private long written;
+
+    /**
+     * Creates the file and writes its header.
+     *
+     * @param path       The pattern file.
+     * @param inputNames Primary input IDs, in column order.
+     * @param format     Text or binary encoding.
+     */
+    public PatternWriter(Path path, List<String> inputNames, Format format) throws IOException {
+        this(path, inputNames, format, List.of());
+    }
+
+    /**
+     * Creates the file and writes its header, with comment lines describing the patterns.
+     *
+     * @param path       The pattern file.
+     * @param inputNames Primary input IDs, in column order.
+     * @param format     Text or binary encoding.
+     * @param comments   Comment lines, without line breaks.
+     */
+    public PatternWriter(Path path, List<String> inputNames, Format format, List<String> comments) throws IOException {
+        for (String comment : comments) {
+            if (comment.indexOf('\n') >= 0 || comment.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Comment spans several lines: " + comment);
+            }
+        }
+        this.inputNames = List.copyOf(inputNames);
+        this.format = format;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        if (format == Format.BINARY) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(inputNames.size());
+            for (String name : inputNames) {
+                out.writeUTF(name);
+            }
+            out.writeInt(comments.size());
+            for (String comment : comments) {
+                out.writeUTF(comment);
+            }
+        } else {
+            for (String comment : comments) {
+                writeLine("# " + comment);
+            }
+            StringBuilder header = new StringBuilder("INPUTS");
+            for (String name : inputNames) {
+                header.append(' ').append(name);
+            }
+            writeLine(header);
+        }
+    }
+
+    /**
+     * Appends every pattern of a set whose inputs match the header.
+     */
+    public void write(PatternSet patterns) throws IOException {
+        if (!patterns.getInputNames().equals(inputNames)) {
+            throw new IllegalArgumentException("Pattern set inputs do not match the file header");
+        }
+        if (patterns.size() == 0) {
+            return;
+        }
+        if (format == Format.BINARY) {
+            out.writeInt(patterns.size());
+            for (int i = 0; i < patterns.getNumInputs(); i++) {
+                long[] column = patterns.column(i);
+                for (int w = 0; w < patterns.getNumBlocks(); w++) {
+                    out.writeLong(column[w]);
+                }
+            }
+        } else {
+            StringBuilder line = new StringBuilder(patterns.getNumInputs());
+            for (int p = 0; p < patterns.size(); p++) {
+                line.setLength(0);
+                for (int i = 0; i < patterns.getNumInputs(); i++) {
+                    line.append((char) ('0' + patterns.get(p, i)));
+                }
+                writeLine(line);
+            }
+        }
+        written += patterns.size();
+    }
+
+    /**
+     * Returns the number of patterns written so far.
+     */
+    public long getPatternCount() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeLine(CharSequence line) throws IOException {
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+}
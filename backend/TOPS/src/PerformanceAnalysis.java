@@ -12,6 +12,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -28,31 +29,42 @@ public class PerformanceAnalysis {
             Map<String, Map<String, List<Double>>> performanceData = new HashMap<>();
 
             for (String benchmarkFile : benchmarkFiles) {
-                Circuit circuit = new Circuit();
-                circuit.parseBenchFile(benchmarkFile);
-
-                // Generate faults
-                List<Fault> faults = new ArrayList<>();
-                for (Gate gate : circuit.gates) {
-                    String node = gate.getOutput().getId();
-                    faults.add(new Fault(node, 0)); // Stuck-at-0
-                    faults.add(new Fault(node, 1)); // Stuck-at-1
-                }
-
-                // Initialize FaultSimulator
-                FaultSimulator faultSimulator = new FaultSimulator(circuit);
+                // Load the levelized netlist, from its binary cache when up to date
+                CompiledCircuit compiled = NetlistCache.load(benchmarkFile);
+
+                // Generate the collapsed fault list
+                FaultListBuilder faultListBuilder = new FaultListBuilder(compiled);
+                List<Fault> faults = faultListBuilder.buildCollapsed();
+                System.out.printf("Benchmark: %s, Faults: %d of %d after collapsing%n",
+                        benchmarkFile, faults.size(), faultListBuilder.getUncollapsedCount());
+
+                // Initialize FaultSimulator and the alternative engines
+                FaultSimulator faultSimulator = new FaultSimulator(compiled);
+                Map<String, FaultSimulationEngine> engines = new LinkedHashMap<>();
+                engines.put("Pattern-Parallel", new PatternParallelFaultSimulator(compiled));
+                engines.put("Deductive", new DeductiveFaultSimulator(compiled));
+                engines.put("Critical Path Tracing", new CriticalPathTracer(compiled));
 
                 // Store performance for this benchmark
-                Map<String, List<Double>> times = new HashMap<>();
+                Map<String, List<Double>> times = new LinkedHashMap<>();
                 times.put("Serial", new ArrayList<>());
                 times.put("Parallel", new ArrayList<>());
+                for (String engine : engines.keySet()) {
+                    times.put(engine, new ArrayList<>());
+                }
 
                 for (int numVectors : vectorCounts) {
                     // Generate test vectors
-                    List<Map<String, Integer>> testVectors = generateTestVectors(circuit.primaryInputs, numVectors);
+                    List<Map<String, Integer>> testVectors = generateTestVectors(compiled.getPrimaryInputNames(), numVectors);
 
                     System.out.println("\nBenchmark: " + benchmarkFile + ", Test Vectors: " + numVectors);
 
+                    // Share one good-machine response cache between all engines
+                    GoodMachineCache goodMachineCache = faultSimulator.getGoodMachineCache(testVectors);
+                    for (FaultSimulationEngine engine : engines.values()) {
+                        engine.setGoodMachineCache(goodMachineCache);
+                    }
+
                     // Serial Simulation
                     double serialTime = faultSimulator.serialFaultSimulationWithMetrics(faults, testVectors);
                     times.get("Serial").add(serialTime);
@@ -65,6 +77,18 @@ public class PerformanceAnalysis {
                             "Benchmark: %s, Vectors: %d, Serial Time: %.2f sec, Parallel Time: %.2f sec%n",
                             benchmarkFile, numVectors, serialTime, parallelTime
                     );
+
+                    // Alternative engines
+                    for (Map.Entry<String, FaultSimulationEngine> engine : engines.entrySet()) {
+                        long startTime = System.currentTimeMillis();
+                        double coverage = engine.getValue().faultSimulation(faults, testVectors);
+                        double engineTime = (System.currentTimeMillis() - startTime) / 1000.0;
+                        times.get(engine.getKey()).add(engineTime);
+                        System.out.printf(
+                                "%s Fault Coverage: %.2f%%, Time: %.2f sec%n",
+                                engine.getKey(), coverage * 100, engineTime
+                        );
+                    }
                 }
 
                 performanceData.put(benchmarkFile, times);
@@ -72,12 +96,7 @@ public class PerformanceAnalysis {
 
             // Plot the performance data
             for (String benchmark : benchmarkFiles) {
-                createPerformanceChart(
-                        benchmark,
-                        vectorCounts,
-                        performanceData.get(benchmark).get("Serial"),
-                        performanceData.get(benchmark).get("Parallel")
-                );
+                createPerformanceChart(benchmark, vectorCounts, performanceData.get(benchmark));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -85,38 +104,24 @@ public class PerformanceAnalysis {
     }
 
     private static List<Map<String, Integer>> generateTestVectors(List<String> inputs, int numVectors) {
-        List<Map<String, Integer>> testVectors = new ArrayList<>();
-        Random random = new Random();
-
-        for (int i = 0; i < numVectors; i++) {
-            Map<String, Integer> vector = new HashMap<>();
-            for (String input : inputs) {
-                vector.put(input, random.nextInt(2)); // Random 0 or 1
-            }
-            testVectors.add(vector);
-        }
-
-        return testVectors;
+        // Draw 64 random vectors per word, then expand for the map-based engines
+        return PatternSet.random(inputs, numVectors, new Random()).toMaps();
     }
 
     private static void createPerformanceChart(
             String benchmarkName,
             int[] vectorCounts,
-            List<Double> serialTimes,
-            List<Double> parallelTimes
+            Map<String, List<Double>> times
     ) {
-        // Create datasets
-        XYSeries serialSeries = new XYSeries("Serial Fault Simulation");
-        XYSeries parallelSeries = new XYSeries("Parallel Fault Simulation");
-
-        for (int i = 0; i < vectorCounts.length; i++) {
-            serialSeries.add(vectorCounts[i], serialTimes.get(i));
-            parallelSeries.add(vectorCounts[i], parallelTimes.get(i));
-        }
-
+        // Create one dataset series per engine
         XYSeriesCollection dataset = new XYSeriesCollection();
-        dataset.addSeries(serialSeries);
-        dataset.addSeries(parallelSeries);
+        for (Map.Entry<String, List<Double>> engine : times.entrySet()) {
+            XYSeries series = new XYSeries(engine.getKey() + " Fault Simulation");
+            for (int i = 0; i < vectorCounts.length; i++) {
+                series.add(vectorCounts[i], engine.getValue().get(i));
+            }
+            dataset.addSeries(series);
+        }
 
         // Create the chart
         JFreeChart chart = ChartFactory.createXYLineChart(
@@ -137,8 +142,9 @@ public class PerformanceAnalysis {
         plot.setRangeGridlinePaint(Color.lightGray);
 
         XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
-        renderer.setSeriesShapesVisible(0, true);
-        renderer.setSeriesShapesVisible(1, true);
+        for (int i = 0; i < dataset.getSeriesCount(); i++) {
+            renderer.setSeriesShapesVisible(i, true);
+        }
         plot.setRenderer(renderer);
 
         NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Random-pattern test generation, the phase that removes the easily detected faults before
+ * deterministic ATPG.
+ * <p>
+ * An {@link Lfsr} with a phase shifter produces 64 patterns per word, which go straight into the
+ * pattern-parallel simulator with fault dropping. The coverage after every block is recorded, and
+ * generation stops once the coverage gained per block stays below a threshold for a number of
+ * consecutive blocks, or when every fault is detected or the pattern limit is reached.
+ * <p>
+ * Only blocks that detect at least one new fault are kept in the resulting pattern set. Dropping
+ * the others does not change which faults the set detects.
+ */
+public class RandomPatternGenerator {
+    public static final double DEFAULT_MIN_BLOCK_COVERAGE = 0.001;
+    public static final int DEFAULT_PATIENCE = 4;
+    public static final int DEFAULT_MAX_PATTERNS = 1 << 16;
+
+    private CompiledCircuit compiled;
+    private Lfsr lfsr;
+    private PatternParallelFaultSimulator simulator;
+    private double minBlockCoverage = DEFAULT_MIN_BLOCK_COVERAGE;
+    private int patience = DEFAULT_PATIENCE;
+    private int maxPatterns = DEFAULT_MAX_PATTERNS;
+
+    public RandomPatternGenerator(CompiledCircuit compiled) {
+        this(compiled, new Lfsr(Lfsr.DEFAULT_DEGREE, compiled.getNumInputs(), 1));
+    }
+
+    /**
+     * @param compiled The compiled circuit.
+     * @param lfsr     Pattern source with one phase shifter output per primary input.
+     */
+    public RandomPatternGenerator(CompiledCircuit compiled, Lfsr lfsr) {
+        if (lfsr.getNumOutputs() != compiled.getNumInputs()) {
+            throw new IllegalArgumentException("LFSR has " + lfsr.getNumOutputs() + " outputs for "
+                    + compiled.getNumInputs() + " primary inputs");
+        }
+        this.compiled = compiled;
+        this.lfsr = lfsr;
+        this.simulator = new PatternParallelFaultSimulator(compiled);
+    }
+
+    /**
+     * Sets the stopping rule: generation ends after {@code patience} consecutive blocks each
+     * detecting less than {@code minBlockCoverage} of the fault list.
+     */
+    public void setStoppingRule(double minBlockCoverage, int patience) {
+        if (minBlockCoverage < 0 || patience < 1) {
+            throw new IllegalArgumentException("Invalid stopping rule: " + minBlockCoverage + ", " + patience);
+        }
+        this.minBlockCoverage = minBlockCoverage;
+        this.patience = patience;
+    }
+
+    public void setMaxPatterns(int maxPatterns) {
+        if (maxPatterns < 1) {
+            throw new IllegalArgumentException("Pattern limit must be positive: " + maxPatterns);
+        }
+        this.maxPatterns = maxPatterns;
+    }
+
+    /**
+     * Applies LFSR blocks to a fault list until the stopping rule fires.
+     *
+     * @param faults The fault list.
+     * @return The kept patterns, the coverage curve and the faults left undetected.
+     */
+    public Result generate(List<Fault> faults) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+        int[] remaining = PatternParallelFaultSimulator.allFaults(index);
+        int remainingCount = remaining.length;
+
+        Result result = new Result(new PatternSet(compiled.getPrimaryInputNames()));
+        long[] words = new long[compiled.getNumInputs()];
+        int detectedFaults = 0;
+        int quietBlocks = 0;
+
+        while (remainingCount > 0 && result.patternsApplied < maxPatterns && quietBlocks < patience) {
+            int count = Math.min(64, maxPatterns - result.patternsApplied);
+            lfsr.nextBlock(words);
+            int kept = simulator.simulateBlock(index, words, count, remaining, remainingCount, detected);
+            int newlyDetected = remainingCount - kept;
+            remainingCount = kept;
+            detectedFaults += newlyDetected;
+            result.patternsApplied += count;
+
+            if (newlyDetected > 0) {
+                result.patterns.addWords(words, count);
+            }
+            quietBlocks = (double) newlyDetected / faults.size() < minBlockCoverage ? quietBlocks + 1 : 0;
+            result.curvePatterns.add(result.patternsApplied);
+            result.curveCoverage.add((double) detectedFaults / faults.size());
+        }
+
+        for (int k = 0; k < remainingCount; k++) {
+            result.undetected.add(faults.get(remaining[k]));
+        }
+        return result;
+    }
+
+    /**
+     * Outcome of a generation run.
+     */
+    public static class Result {
+        private PatternSet patterns;
+        private int patternsApplied;
+        private List<Integer> curvePatterns = new ArrayList<>();
+        private List<Double> curveCoverage = new ArrayList<>();
+        private List<Fault> undetected = new ArrayList<>();
+
+        Result(PatternSet patterns) {
+            this.patterns = patterns;
+        }
+
+        /**
+         * Returns the patterns of the blocks that detected new faults.
+         */
+        public PatternSet getPatterns() {
+            return patterns;
+        }
+
+        /**
+         * Returns the number of patterns simulated, kept or not.
+         */
+        public int getPatternsApplied() {
+            return patternsApplied;
+        }
+
+        /**
+         * Returns the patterns applied after every block, the x axis of the coverage curve.
+         */
+        public List<Integer> getCurvePatterns() {
+            return curvePatterns;
+        }
+
+        /**
+         * Returns the fault coverage after every block.
+         */
+        public List<Double> getCurveCoverage() {
+            return curveCoverage;
+        }
+
+        public double getCoverage() {
+            return curveCoverage.isEmpty() ? 0.0 : curveCoverage.get(curveCoverage.size() - 1);
+        }
+
+        /**
+         * Returns the faults no pattern detected, the target list for deterministic ATPG.
+         */
+        public List<Fault> getUndetectedFaults() {
+            return undetected;
+        }
+
+        /**
+         * Writes the coverage curve as CSV.
+         */
+        public void writeCurve(Path path) throws IOException {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+                out.println("patterns,coverage");
+                for (int b = 0; b < curvePatterns.size(); b++) {
+                    out.printf(Locale.ROOT, "%d,%.6f%n", curvePatterns.get(b), curveCoverage.get(b));
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs random-pattern generation on a benchmark and writes the kept patterns and the coverage
+     * curve.
+     * <p>
+     * Arguments: {@code <bench file> [pattern file] [min coverage per block] [max patterns]}. The
+     * pattern file is binary; the curve goes to the same path with {@code .curve.csv} appended.
+     */
+    public static void main(String[] args) {
+        try {
+            String benchFilePath = args.length > 0 ? args[0] : "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c7522.bench";
+            Path patternFile = Path.of(args.length > 1 ? args[1] : benchFilePath + ".pat");
+            CompiledCircuit compiled = NetlistCache.load(benchFilePath);
+
+            List<Fault> faults = new FaultListBuilder(compiled).buildCollapsed();
+            RandomPatternGenerator generator = new RandomPatternGenerator(compiled);
+            if (args.length > 2) {
+                generator.setStoppingRule(Double.parseDouble(args[2]), DEFAULT_PATIENCE);
+            }
+            if (args.length > 3) {
+                generator.setMaxPatterns(Integer.parseInt(args[3]));
+            }
+
+            long startTime = System.currentTimeMillis();
+            Result result = generator.generate(faults);
+            long generationTime = System.currentTimeMillis() - startTime;
+
+            try (PatternWriter writer = new PatternWriter(patternFile, compiled.getPrimaryInputNames(),
+                    PatternWriter.Format.BINARY)) {
+                writer.write(result.getPatterns());
+            }
+            Path curveFile = Path.of(patternFile + ".curve.csv");
+            result.writeCurve(curveFile);
+
+            System.out.printf("%s: %d faults, %.2f%% coverage after %d patterns (%d kept) in %d ms%n",
+                    benchFilePath, faults.size(), result.getCoverage() * 100, result.getPatternsApplied(),
+                    result.getPatterns().size(), generationTime);
+            System.out.println("Undetected faults left for ATPG: " + result.getUndetectedFaults().size());
+            System.out.println("Patterns written to " + patternFile + ", coverage curve to " + curveFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * SAT-based test generation, the complete engine behind the faults {@link TopsAtpg} aborts.
+ * <p>
+ * A fault becomes a miter in CNF. The good circuit is encoded once, gate by gate, by the Tseitin
+ * rules of its gate types, and only as far as the faults need: the input cones of the outputs they
+ * reach. The fault gets a faulty copy of its fanout cone, fed by the good lines outside it, and a
+ * difference variable per reached primary output; the test exists if some output differs. Every
+ * clause of the faulty copy is guarded by an activation literal, assumed while the fault is solved
+ * and retired afterwards with a unit clause, so the good-circuit clauses and the clauses learned
+ * from them stay in the {@link CdclSolver} for the next fault. Faults in the same output cone thus
+ * share both the encoding and what the solver has learned about it.
+ * <p>
+ * That state is scoped to one cone: the solver is rebuilt whenever a fault belongs to another
+ * {@link #outputCone output cone} than the last one, and also once it holds more than
+ * {@code VARIABLE_SLACK} variables beyond one per circuit line, since every retired copy still has
+ * to be decided for a model. Callers get the most reuse by passing the faults grouped by cone.
+ * <p>
+ * A satisfiable miter gives the test; an unsatisfiable one proves the fault redundant. A fault
+ * reaching the conflict limit is reported as aborted.
+ */
+public class SatAtpg {
+    public static final int DEFAULT_CONFLICT_LIMIT = 10000;
+    private static final int SIMPLIFY_INTERVAL = 32;
+    // Room for retired copies beyond the good circuit, so small circuits do not reset on every fault
+    private static final int VARIABLE_SLACK = 1024;
+
+    private CompiledCircuit compiled;
+    private CircuitDominators dominators;
+    private int conflictLimit = DEFAULT_CONFLICT_LIMIT;
+
+    private CdclSolver solver;
+    private int solverCone;     // output cone of the faults the solver has seen
+    private int trueLit;
+    private int[] goodLit;      // per line, -1 until encoded
+    private int retired;        // faults retired since the last simplification
+
+    // Faulty copy of the current fault
+    private int[] faultyLit;
+    private int[] coneStamp;
+    private int epoch;
+    private int[] coneGates;
+    private int[] stack;
+
+    private long totalConflicts;
+    private long totalDecisions;
+
+    public SatAtpg(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        this.dominators = compiled.dominators();
+        int numLines = compiled.getNumLines();
+        this.goodLit = new int[numLines];
+        this.faultyLit = new int[numLines];
+        this.coneStamp = new int[numLines];
+        this.coneGates = new int[compiled.getNumGates()];
+        this.stack = new int[numLines];
+        reset();
+    }
+
+    /**
+     * Sets the number of conflicts after which a fault is given up as aborted.
+     */
+    public void setConflictLimit(int conflictLimit) {
+        if (conflictLimit < 1) {
+            throw new IllegalArgumentException("Conflict limit must be positive: " + conflictLimit);
+        }
+        this.conflictLimit = conflictLimit;
+    }
+
+    public long getTotalConflicts() {
+        return totalConflicts;
+    }
+
+    public long getTotalDecisions() {
+        return totalDecisions;
+    }
+
+    /**
+     * Returns the output cone of a fault: the first primary output, by position in the output list,
+     * its effect can reach, or -1 if it reaches none. Faults of one cone share the good-circuit
+     * encoding of that output's input cone.
+     *
+     * @param line The faulty line.
+     * @param gate The gate of a fanout-branch fault, or -1 for a stem fault.
+     */
+    public int outputCone(int line, int gate) {
+        return dominators.getFirstReachableOutput(gate >= 0 ? compiled.numInputs + gate : line);
+    }
+
+    /**
+     * Generates a test for a stem or fanout-branch stuck-at fault.
+     *
+     * @param fault The target fault.
+     * @return The outcome, with the pattern when the fault is detected. Backtracks count solver
+     * conflicts.
+     */
+    public TopsAtpg.Result generate(Fault fault) {
+        if (fault.stuckAtValue != 0 && fault.stuckAtValue != 1) {
+            throw new IllegalArgumentException("Invalid stuck-at value for fault: " + fault);
+        }
+        return generate(compiled.lineId(fault.node), compiled.branchGate(fault), fault.stuckAtValue);
+    }
+
+    /**
+     * Generates a test for a fault given by line id.
+     *
+     * @param line The faulty line.
+     * @param gate The gate of a fanout-branch fault, or -1 for a stem fault.
+     * @param sa   The stuck value.
+     */
+    public TopsAtpg.Result generate(int line, int gate, int sa) {
+        int site = gate >= 0 ? compiled.numInputs + gate : line;
+        if (!dominators.reachesOutput(site)) {
+            return new TopsAtpg.Result(TopsAtpg.Status.REDUNDANT, null, 0, 0);
+        }
+        // Learned clauses are kept within one output cone; retired copies are not kept for long
+        int cone = outputCone(line, gate);
+        if (cone != solverCone || solver.getNumVars() > compiled.getNumLines() + VARIABLE_SLACK || !solver.isOk()) {
+            reset();
+            solverCone = cone;
+        }
+
+        int activation = 2 * solver.newVar();
+        int guard = activation ^ 1;
+        int outputs = encodeFaultyCone(line, gate, sa, guard);
+
+        // Activate the fault, and make some output differ
+        solver.addClause(guard, goodLit(line) ^ sa);
+        int[] anyOutput = new int[outputs + 1];
+        anyOutput[0] = guard;
+        int k = 1;
+        for (int po : compiled.primaryOutputs) {
+            if (coneStamp[po] == epoch) {
+                int differ = 2 * solver.newVar();
+                int good = goodLit(po);
+                solver.addClause(differ ^ 1, good, faultyLit[po]);
+                solver.addClause(differ ^ 1, good ^ 1, faultyLit[po] ^ 1);
+                anyOutput[k++] = differ;
+            }
+        }
+        solver.addClause(anyOutput);
+
+        long conflictsBefore = solver.getConflicts();
+        long decisionsBefore = solver.getDecisions();
+        CdclSolver.Status status = solver.solve(new int[]{activation}, conflictLimit);
+        int conflicts = (int) (solver.getConflicts() - conflictsBefore);
+        int decisions = (int) (solver.getDecisions() - decisionsBefore);
+        totalConflicts += conflicts;
+        totalDecisions += decisions;
+
+        byte[] pattern = null;
+        if (status == CdclSolver.Status.SAT) {
+            pattern = new byte[compiled.numInputs];
+            for (int i = 0; i < pattern.length; i++) {
+                pattern[i] = goodLit[i] < 0 ? TopsAtpg.UNASSIGNED : (byte) (solver.modelValue(goodLit[i] >>> 1) ? 1 : 0);
+            }
+        }
+
+        // Retire the faulty copy; learned clauses over the good circuit stay
+        solver.addClause(guard);
+        if (++retired == SIMPLIFY_INTERVAL) {
+            solver.simplify();
+            retired = 0;
+        }
+
+        TopsAtpg.Status result = switch (status) {
+            case SAT -> TopsAtpg.Status.DETECTED;
+            case UNSAT -> TopsAtpg.Status.REDUNDANT;
+            case UNKNOWN -> TopsAtpg.Status.ABORTED;
+        };
+        return new TopsAtpg.Result(result, pattern, conflicts, decisions);
+    }
+
+    private void reset() {
+        solver = new CdclSolver();
+        trueLit = 2 * solver.newVar();
+        solver.addClause(trueLit);
+        Arrays.fill(goodLit, -1);
+        retired = 0;
+    }
+
+    /**
+     * Encodes the faulty copy of the fanout cone of a fault, guarded, and marks its lines.
+     *
+     * @return The number of primary outputs in the cone.
+     */
+    private int encodeFaultyCone(int line, int gate, int sa, int guard) {
+        epoch++;
+        int constant = sa == 1 ? trueLit : trueLit ^ 1;
+        int count = 0;
+        int top = 0;
+        if (gate >= 0) {
+            // Only the gate fed by the branch sees the fault
+            coneGates[count++] = gate;
+            coneStamp[compiled.numInputs + gate] = epoch;
+            stack[top++] = compiled.numInputs + gate;
+        } else {
+            coneStamp[line] = epoch;
+            faultyLit[line] = constant;
+            stack[top++] = line;
+        }
+        while (top > 0) {
+            int l = stack[--top];
+            for (int i = compiled.fanoutOffset[l]; i < compiled.fanoutOffset[l + 1]; i++) {
+                int g = compiled.fanout[i];
+                int out = compiled.numInputs + g;
+                if (coneStamp[out] != epoch) {
+                    coneStamp[out] = epoch;
+                    coneGates[count++] = g;
+                    stack[top++] = out;
+                }
+            }
+        }
+        // Gates are in level order, so sorting gives every input before its readers
+        Arrays.sort(coneGates, 0, count);
+
+        for (int c = 0; c < count; c++) {
+            int g = coneGates[c];
+            int from = compiled.faninOffset[g];
+            int[] inputs = new int[compiled.faninOffset[g + 1] - from];
+            for (int i = 0; i < inputs.length; i++) {
+                int in = compiled.fanin[from + i];
+                if (g == gate && in == line) {
+                    inputs[i] = constant;
+                } else if (coneStamp[in] == epoch) {
+                    inputs[i] = faultyLit[in];
+                } else {
+                    inputs[i] = goodLit(in);
+                }
+            }
+            int out = compiled.numInputs + g;
+            faultyLit[out] = 2 * solver.newVar();
+            encodeGate(compiled.gateType[g], inputs, faultyLit[out], guard);
+        }
+
+        int outputs = 0;
+        for (int po : compiled.primaryOutputs) {
+            if (coneStamp[po] == epoch) {
+                outputs++;
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * Returns the literal of a line of the good circuit, encoding its input cone on first use.
+     */
+    private int goodLit(int line) {
+        if (goodLit[line] >= 0) {
+            return goodLit[line];
+        }
+        int top = 0;
+        stack[top++] = line;
+        while (top > 0) {
+            int l = stack[top - 1];
+            if (goodLit[l] >= 0) {
+                top--;
+                continue;
+            }
+            if (l < compiled.numInputs) {
+                goodLit[l] = 2 * solver.newVar();
+                top--;
+                continue;
+            }
+            int g = l - compiled.numInputs;
+            int from = compiled.faninOffset[g];
+            int to = compiled.faninOffset[g + 1];
+            boolean ready = true;
+            for (int i = from; i < to; i++) {
+                if (goodLit[compiled.fanin[i]] < 0) {
+                    // A line shared by several waiting gates may be stacked more than once
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    }
+                    stack[top++] = compiled.fanin[i];
+                    ready = false;
+                }
+            }
+            if (!ready) {
+                continue;
+            }
+            int[] inputs = new int[to - from];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = goodLit[compiled.fanin[from + i]];
+            }
+            goodLit[l] = 2 * solver.newVar();
+            encodeGate(compiled.gateType[g], inputs, goodLit[l], -1);
+            top--;
+        }
+        return goodLit[line];
+    }
+
+    /**
+     * Adds the Tseitin clauses of a gate.
+     *
+     * @param type   Gate opcode.
+     * @param inputs Input literals.
+     * @param out    Output literal.
+     * @param guard  Literal added to every clause, or -1 for none.
+     */
+    private void encodeGate(byte type, int[] inputs, int out, int guard) {
+        // Inverting gates are their base gate with the output negated
+        int z = out ^ (type & 1);
+        switch (type & ~1) {
+            case CompiledCircuit.AND -> {
+                int[] all = new int[inputs.length + 1];
+                for (int i = 0; i < inputs.length; i++) {
+                    clause(guard, z ^ 1, inputs[i]);
+                    all[i] = inputs[i] ^ 1;
+                }
+                all[inputs.length] = z;
+                clause(guard, all);
+            }
+            case CompiledCircuit.OR -> {
+                int[] all = new int[inputs.length + 1];
+                for (int i = 0; i < inputs.length; i++) {
+                    clause(guard, z, inputs[i] ^ 1);
+                    all[i] = inputs[i];
+                }
+                all[inputs.length] = z ^ 1;
+                clause(guard, all);
+            }
+            case CompiledCircuit.XOR -> {
+                // A chain of two-input XORs through fresh variables
+                int acc = inputs[0];
+                for (int i = 1; i < inputs.length; i++) {
+                    int t = i == inputs.length - 1 ? z : 2 * solver.newVar();
+                    clause(guard, t ^ 1, acc, inputs[i]);
+                    clause(guard, t ^ 1, acc ^ 1, inputs[i] ^ 1);
+                    clause(guard, t, acc ^ 1, inputs[i]);
+                    clause(guard, t, acc, inputs[i] ^ 1);
+                    acc = t;
+                }
+                if (inputs.length == 1) {
+                    clause(guard, z ^ 1, acc);
+                    clause(guard, z, acc ^ 1);
+                }
+            }
+            default -> {
+                // BUF and NOT
+                clause(guard, z ^ 1, inputs[0]);
+                clause(guard, z, inputs[0] ^ 1);
+            }
+        }
+    }
+
+    private void clause(int guard, int... lits) {
+        if (guard < 0) {
+            solver.addClause(lits);
+            return;
+        }
+        int[] guarded = Arrays.copyOf(lits, lits.length + 1);
+        guarded[lits.length] = guard;
+        solver.addClause(guarded);
+    }
+
+    /**
+     * Runs TOPS on the collapsed fault list of a benchmark and SAT on every fault it aborts.
+     */
+    public static void main(String[] args) {
+        try {
+            String benchFilePath = args.length > 0 ? args[0] : "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c7522.bench";
+            CompiledCircuit compiled = NetlistCache.load(benchFilePath);
+            NetlistCache.loadLearning(benchFilePath, compiled);
+            List<Fault> faults = new FaultListBuilder(compiled).buildCollapsed();
+            TopsAtpg tops = new TopsAtpg(compiled);
+            SatAtpg sat = new SatAtpg(compiled);
+            FaultIndex index = new FaultIndex(compiled, faults);
+
+            Map<TopsAtpg.Status, Integer> counts = new EnumMap<>(TopsAtpg.Status.class);
+            List<Integer> aborted = new ArrayList<>();
+            long startTime = System.currentTimeMillis();
+            for (int f = 0; f < index.size(); f++) {
+                TopsAtpg.Result result = tops.generate(index.line[f], index.gate[f], index.stuckAt[f]);
+                if (result.getStatus() == TopsAtpg.Status.ABORTED) {
+                    aborted.add(f);
+                } else {
+                    counts.merge(result.getStatus(), 1, Integer::sum);
+                }
+            }
+            // One output cone after another, so the solver keeps what it learns about each
+            aborted.sort(Comparator.comparingInt(f -> sat.outputCone(index.line[f], index.gate[f])));
+            for (int f : aborted) {
+                TopsAtpg.Result result = sat.generate(index.line[f], index.gate[f], index.stuckAt[f]);
+                counts.merge(result.getStatus(), 1, Integer::sum);
+            }
+            long atpgTime = System.currentTimeMillis() - startTime;
+
+            System.out.println(benchFilePath + ": " + faults.size() + " faults in " + atpgTime + " ms, "
+                    + aborted.size() + " aborted by TOPS and passed to SAT");
+            for (TopsAtpg.Status status : TopsAtpg.Status.values()) {
+                System.out.println(status + ": " + counts.getOrDefault(status, 0));
+            }
+            System.out.println("SAT conflicts: " + sat.getTotalConflicts() + ", decisions: " + sat.getTotalDecisions());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+/**
+ * SCOAP testability measures of a compiled circuit.
+ * <p>
+ * {@code cc0[l]} and {@code cc1[l]} estimate the effort of setting line {@code l} to 0 or 1, as
+ * the number of lines that must be assigned: 1 for a primary input, and for a gate output the cost
+ * of the cheapest input combination producing the value, plus one. {@code co[l]} estimates the
+ * effort of observing the line at a primary output: 0 at an output, and through a gate the
+ * observability of the gate output plus the cost of setting every other input non-controlling,
+ * plus one. A stem is as observable as its most observable branch.
+ * <p>
+ * Gates are in level order, so controllability is one forward pass and observability one
+ * reverse pass. Costs saturate at {@link #INFINITE} rather than overflow on deep circuits.
+ * Built once per circuit through {@link CompiledCircuit#scoap()}.
+ */
+public class Scoap {
+    public static final int INFINITE = Integer.MAX_VALUE / 4;
+
+    final int[] cc0;
+    final int[] cc1;
+    final int[] co;
+
+    Scoap(CompiledCircuit compiled) {
+        int numLines = compiled.numLines;
+        this.cc0 = new int[numLines];
+        this.cc1 = new int[numLines];
+        this.co = new int[numLines];
+
+        for (int i = 0; i < compiled.numInputs; i++) {
+            cc0[i] = 1;
+            cc1[i] = 1;
+        }
+        for (int g = 0; g < compiled.numGates; g++) {
+            controllability(compiled, g);
+        }
+
+        Arrays.fill(co, INFINITE);
+        for (int po : compiled.primaryOutputs) {
+            co[po] = 0;
+        }
+        for (int g = compiled.numGates - 1; g >= 0; g--) {
+            observability(compiled, g);
+        }
+    }
+
+    public int getCc0(int line) {
+        return cc0[line];
+    }
+
+    public int getCc1(int line) {
+        return cc1[line];
+    }
+
+    public int getCo(int line) {
+        return co[line];
+    }
+
+    /**
+     * Returns the controllability of a line to a value.
+     */
+    public int cc(int line, int value) {
+        return value == 0 ? cc0[line] : cc1[line];
+    }
+
+    private void controllability(CompiledCircuit compiled, int g) {
+        byte type = compiled.gateType[g];
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        int zero;
+        int one;
+        if (type == CompiledCircuit.XOR || type == CompiledCircuit.XNOR) {
+            // Cheapest input combination of even and of odd parity
+            zero = cc0[compiled.fanin[from]];
+            one = cc1[compiled.fanin[from]];
+            for (int i = from + 1; i < to; i++) {
+                int in = compiled.fanin[i];
+                int even = Math.min(add(zero, cc0[in]), add(one, cc1[in]));
+                int odd = Math.min(add(zero, cc1[in]), add(one, cc0[in]));
+                zero = even;
+                one = odd;
+            }
+        } else if (type == CompiledCircuit.OR || type == CompiledCircuit.NOR) {
+            // Any input at 1, or all inputs at 0
+            zero = 0;
+            one = INFINITE;
+            for (int i = from; i < to; i++) {
+                int in = compiled.fanin[i];
+                zero = add(zero, cc0[in]);
+                one = Math.min(one, cc1[in]);
+            }
+        } else {
+            // AND, and BUF/NOT as a one-input AND: any input at 0, or all inputs at 1
+            zero = INFINITE;
+            one = 0;
+            for (int i = from; i < to; i++) {
+                int in = compiled.fanin[i];
+                zero = Math.min(zero, cc0[in]);
+                one = add(one, cc1[in]);
+            }
+        }
+        int out = compiled.numInputs + g;
+        if ((type & 1) != 0) {
+            cc0[out] = add(one, 1);
+            cc1[out] = add(zero, 1);
+        } else {
+            cc0[out] = add(zero, 1);
+            cc1[out] = add(one, 1);
+        }
+    }
+
+    private void observability(CompiledCircuit compiled, int g) {
+        int out = compiled.numInputs + g;
+        if (co[out] >= INFINITE) {
+            return;
+        }
+        byte type = compiled.gateType[g];
+        int from = compiled.faninOffset[g];
+        int to = compiled.faninOffset[g + 1];
+        boolean parity = type == CompiledCircuit.XOR || type == CompiledCircuit.XNOR;
+        int[] nonControlling = type == CompiledCircuit.OR || type == CompiledCircuit.NOR ? cc0 : cc1;
+
+        // Cost of holding every input at its non-controlling value, less the pin observed
+        int sides = 0;
+        for (int i = from; i < to; i++) {
+            int in = compiled.fanin[i];
+            sides = add(sides, parity ? Math.min(cc0[in], cc1[in]) : nonControlling[in]);
+        }
+        for (int i = from; i < to; i++) {
+            int in = compiled.fanin[i];
+            int own = parity ? Math.min(cc0[in], cc1[in]) : nonControlling[in];
+            int others = sides >= INFINITE ? INFINITE : sides - own;
+            co[in] = Math.min(co[in], add(add(co[out], others), 1));
+        }
+    }
+
+    private static int add(int a, int b) {
+        return Math.min(INFINITE, a + b);
+    }
+}
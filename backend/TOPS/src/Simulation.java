@@ -2,9 +2,28 @@ import java.util.*;
 
 public class Simulation {
     private Circuit circuit;
+    private CompiledCircuit compiled;
+    private LevelParallelSimulator levelParallel;  // null to simulate on the calling thread
 
     public Simulation(Circuit circuit) {
         this.circuit = circuit;
+        this.compiled = CompiledCircuit.compile(circuit);
+    }
+
+    public Simulation(CompiledCircuit compiled) {
+        this.compiled = compiled;
+    }
+
+    public CompiledCircuit getCompiledCircuit() {
+        return compiled;
+    }
+
+    /**
+     * Spreads the levels of every later run over a level-parallel simulator of the same circuit,
+     * for lower latency on very wide circuits; null goes back to the calling thread.
+     */
+    public void setLevelParallelSimulator(LevelParallelSimulator levelParallel) {
+        this.levelParallel = levelParallel;
     }
 
     /**
@@ -12,6 +31,10 @@ public class Simulation {
      * Returns a list of line IDs in topological order.
      */
     public List<String> levelizeCircuit() {
+        if (circuit == null) {
+            // A compiled netlist is already stored in level order
+            return Arrays.asList(compiled.lineNames);
+        }
         Map<String, Integer> inDegree = new HashMap<>();
         Map<String, List<String>> adjacencyList = new HashMap<>();
         List<String> topologicalOrder = new ArrayList<>();
@@ -68,49 +91,27 @@ public class Simulation {
      * Returns a map of output line IDs to their computed values.
      */
     public Map<String, Integer> simulate(Map<String, Integer> inputValues) {
-        List<String> topologicalOrder = levelizeCircuit();
-        Map<String, Integer> values = new HashMap<>(inputValues);
+        byte[] values = new byte[compiled.getNumLines()];
 
         // Ensure all primary inputs have values
-        for (String input : circuit.primaryInputs) {
-            if (!values.containsKey(input)) {
-                throw new IllegalStateException("Input value for signal " + input + " is missing.");
-            }
-        }
+        compiled.loadInputs(inputValues, values);
 
-        // Create a mapping from output line IDs to their respective gates
-        Map<String, Gate> outputToGate = new HashMap<>();
-        for (Gate gate : circuit.gates) {
-            String outputId = gate.getOutput().getId();
-            if (outputToGate.containsKey(outputId)) {
-                throw new IllegalStateException("Multiple gates have the same output: " + outputId);
-            }
-            outputToGate.put(outputId, gate);
-        }
+        // Evaluate gates in level order over the compiled netlist
+        simulate(values);
 
-        // Evaluate gates in topological order
-        for (String node : topologicalOrder) {
-            // If the node is an output of a gate, evaluate it
-            if (outputToGate.containsKey(node)) {
-                Gate gate = outputToGate.get(node);
-
-                // Evaluate the gate using the current values map
-                int outputValue = gate.evaluate(values);
-                values.put(gate.getOutput().getId(), outputValue);
-            }
-            // If the node is a primary input, its value is already in the values map
-        }
+        return compiled.outputValues(values);
+    }
 
-        // Collect output values
-        Map<String, Integer> outputValues = new HashMap<>();
-        for (String output : circuit.primaryOutputs) {
-            if (values.containsKey(output)) {
-                outputValues.put(output, values.get(output));
-            } else {
-                throw new IllegalStateException("Output signal " + output + " was not computed.");
-            }
+    /**
+     * Simulates the circuit in place over a dense value array, without allocating.
+     *
+     * @param values Line values indexed by compiled line id; primary inputs must be set.
+     */
+    public void simulate(byte[] values) {
+        if (levelParallel != null) {
+            levelParallel.simulate(values);
+        } else {
+            compiled.simulate(values);
         }
-
-        return outputValues;
     }
 }
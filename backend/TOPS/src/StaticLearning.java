@@ -0,0 +1,385 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Global implications learned once per circuit, in the manner of SOCRATES static learning.
+ * <p>
+ * Every line is set to 0 and to 1 in turn, in the good machine, and direct implications are run
+ * forward and backward: a gate output follows from its inputs, every input of an AND at 1 (OR at
+ * 0) follows from the output, and the last unknown input of a gate follows when the output needs
+ * it. Whenever {@code l = v} implies {@code m = w} and {@code w} is the value gate {@code m} takes
+ * with all inputs non-controlling, the contrapositive {@code m = !w => l = !v} is kept: a gate at
+ * its controlled value says nothing about its inputs, so direct implication alone never finds it.
+ * An assignment whose implication runs into a contradiction makes the line a constant of the
+ * other value.
+ * <p>
+ * Implications are stored in CSR form keyed by {@code 2 * line + value}, each entry again
+ * {@code 2 * line + value}. Lines are independent of each other, so they are learned in parallel
+ * chunks, each with its own implication state. {@link NetlistCache#loadLearning} keeps the table
+ * in a file next to the netlist cache; otherwise it is built on first use through
+ * {@link CompiledCircuit#staticLearning()}.
+ */
+public class StaticLearning {
+    public static final byte NOT_CONSTANT = 2;
+    private static final int CHUNK_LINES = 256;
+
+    final int[] offset;     // implications of line l at value v are implied[offset[2l + v] .. offset[2l + v + 1])
+    final int[] implied;    // 2 * line + value
+    final byte[] constant;  // per line: 0, 1, or NOT_CONSTANT
+    final int[] constantLines;
+
+    StaticLearning(int[] offset, int[] implied, byte[] constant) {
+        this.offset = offset;
+        this.implied = implied;
+        this.constant = constant;
+        int count = 0;
+        for (byte c : constant) {
+            if (c != NOT_CONSTANT) {
+                count++;
+            }
+        }
+        this.constantLines = new int[count];
+        for (int line = 0, k = 0; k < count; line++) {
+            if (constant[line] != NOT_CONSTANT) {
+                constantLines[k++] = line;
+            }
+        }
+    }
+
+    /**
+     * Learns the implications of a circuit.
+     *
+     * @param compiled    The compiled circuit.
+     * @param parallelism Number of worker threads.
+     * @return The implication table.
+     */
+    public static StaticLearning learn(CompiledCircuit compiled, int parallelism) {
+        int numLines = compiled.getNumLines();
+        int numChunks = (numLines + CHUNK_LINES - 1) / CHUNK_LINES;
+        List<Callable<Learner>> tasks = new ArrayList<>(numChunks);
+        ThreadLocal<Learner> learners = ThreadLocal.withInitial(() -> new Learner(compiled));
+        for (int c = 0; c < numChunks; c++) {
+            int chunk = c;
+            tasks.add(() -> {
+                Learner learner = learners.get();
+                int first = chunk * CHUNK_LINES;
+                learner.learn(first, Math.min(numLines, first + CHUNK_LINES));
+                return learner;
+            });
+        }
+
+        // Every thread collects the findings of all chunks it ran
+        Set<Learner> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Learner> future : pool.invokeAll(tasks)) {
+                all.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Static learning interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Static learning failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        // Counting sort of the learned pairs by antecedent
+        int[] offset = new int[2 * numLines + 1];
+        byte[] constant = new byte[numLines];
+        Arrays.fill(constant, NOT_CONSTANT);
+        for (Learner learner : all) {
+            for (int k = 0; k < learner.pairCount; k++) {
+                offset[learner.pairs[2 * k] + 1]++;
+            }
+            for (int k = 0; k < learner.constantCount; k++) {
+                int c = learner.constants[k];
+                constant[c >>> 1] = (byte) (c & 1);
+            }
+        }
+        for (int key = 0; key < 2 * numLines; key++) {
+            offset[key + 1] += offset[key];
+        }
+        int[] implied = new int[offset[2 * numLines]];
+        int[] fill = Arrays.copyOf(offset, 2 * numLines);
+        for (Learner learner : all) {
+            for (int k = 0; k < learner.pairCount; k++) {
+                implied[fill[learner.pairs[2 * k]]++] = learner.pairs[2 * k + 1];
+            }
+        }
+        return new StaticLearning(offset, implied, constant);
+    }
+
+    /**
+     * Returns the lines implied by a line at a value, as {@code 2 * line + value}.
+     */
+    public int[] getImplications(int line, int value) {
+        int key = 2 * line + value;
+        return Arrays.copyOfRange(implied, offset[key], offset[key + 1]);
+    }
+
+    /**
+     * Returns the value a line always has: 0, 1, or {@link #NOT_CONSTANT}.
+     */
+    public int getConstant(int line) {
+        return constant[line];
+    }
+
+    public int getNumImplications() {
+        return implied.length;
+    }
+
+    public int getNumConstants() {
+        return constantLines.length;
+    }
+
+    public int getNumLines() {
+        return constant.length;
+    }
+
+    /**
+     * Learns the lines of a range, recording the pairs and constants it finds.
+     */
+    private static class Learner {
+        private Implication implication;
+        private int[] pairs = new int[64];  // antecedent, consequent
+        private int pairCount;
+        private int[] constants = new int[8];
+        private int constantCount;
+
+        Learner(CompiledCircuit compiled) {
+            this.implication = new Implication(compiled, null);
+        }
+
+        void learn(int from, int to) {
+            for (int line = from; line < to; line++) {
+                for (int v = 0; v <= 1; v++) {
+                    if (!implication.imply(line, v)) {
+                        addConstant(2 * line + (v ^ 1));
+                    } else {
+                        for (int k = 1; k < implication.size(); k++) {
+                            int m = implication.line(k);
+                            int w = implication.value(m);
+                            if (isLearnable(implication.compiled, m, w)) {
+                                addPair(2 * m + (w ^ 1), 2 * line + (v ^ 1));
+                            }
+                        }
+                    }
+                    implication.clear();
+                }
+            }
+        }
+
+        /**
+         * Returns true if a line at a value is the output of a gate with all inputs
+         * non-controlling, the case where the contrapositive is not a direct implication.
+         */
+        private static boolean isLearnable(CompiledCircuit compiled, int m, int w) {
+            if (m < compiled.numInputs) {
+                return false;
+            }
+            int g = m - compiled.numInputs;
+            byte type = compiled.gateType[g];
+            if (type >= CompiledCircuit.XOR || compiled.faninOffset[g + 1] - compiled.faninOffset[g] < 2) {
+                return false;
+            }
+            int nonControlled = type == CompiledCircuit.AND || type == CompiledCircuit.NOR ? 1 : 0;
+            return w == nonControlled;
+        }
+
+        private void addPair(int antecedent, int consequent) {
+            if (2 * pairCount + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+            }
+            pairs[2 * pairCount] = antecedent;
+            pairs[2 * pairCount + 1] = consequent;
+            pairCount++;
+        }
+
+        private void addConstant(int constant) {
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, 2 * constants.length);
+            }
+            constants[constantCount++] = constant;
+        }
+    }
+
+    /**
+     * Direct implication in the three-valued good machine: forward and backward through the
+     * gates and, when a table is given, along its learned implications. Assignments accumulate
+     * until {@link #clear()}.
+     */
+    static class Implication {
+        static final byte X = 2;
+
+        final CompiledCircuit compiled;
+        private StaticLearning learned;
+        private byte[] value;
+        private int[] trail;
+        private int trailSize;
+
+        Implication(CompiledCircuit compiled, StaticLearning learned) {
+            this.compiled = compiled;
+            this.learned = learned;
+            this.value = new byte[compiled.getNumLines()];
+            this.trail = new int[compiled.getNumLines()];
+            Arrays.fill(value, X);
+        }
+
+        /**
+         * Returns the number of lines assigned.
+         */
+        int size() {
+            return trailSize;
+        }
+
+        /**
+         * Returns the k-th line assigned.
+         */
+        int line(int k) {
+            return trail[k];
+        }
+
+        /**
+         * Returns the value of a line: 0, 1 or {@link #X}.
+         */
+        int value(int line) {
+            return value[line];
+        }
+
+        void clear() {
+            while (trailSize > 0) {
+                value[trail[--trailSize]] = X;
+            }
+        }
+
+        /**
+         * Sets a line and runs implications to completion, using the trail as the queue.
+         *
+         * @return False on a contradiction; the assignments made so far are kept.
+         */
+        boolean imply(int line, int v) {
+            int head = trailSize;
+            if (!set(line, v)) {
+                return false;
+            }
+            for (; head < trailSize; head++) {
+                int l = trail[head];
+                if (l >= compiled.numInputs && !justify(l - compiled.numInputs)) {
+                    return false;
+                }
+                for (int i = compiled.fanoutOffset[l]; i < compiled.fanoutOffset[l + 1]; i++) {
+                    int g = compiled.fanout[i];
+                    if (!evaluate(g) || !justify(g)) {
+                        return false;
+                    }
+                }
+                if (learned != null) {
+                    int key = 2 * l + value[l];
+                    for (int i = learned.offset[key]; i < learned.offset[key + 1]; i++) {
+                        if (!set(learned.implied[i] >>> 1, learned.implied[i] & 1)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean set(int line, int v) {
+            if (value[line] == X) {
+                value[line] = (byte) v;
+                trail[trailSize++] = line;
+                return true;
+            }
+            return value[line] == v;
+        }
+
+        /**
+         * Implies a gate output from its inputs.
+         */
+        private boolean evaluate(int g) {
+            byte type = compiled.gateType[g];
+            int from = compiled.faninOffset[g];
+            int to = compiled.faninOffset[g + 1];
+            int result;
+            if (type == CompiledCircuit.XOR || type == CompiledCircuit.XNOR) {
+                result = 0;
+                for (int i = from; i < to && result != X; i++) {
+                    int v = value[compiled.fanin[i]];
+                    result = v == X ? X : result ^ v;
+                }
+            } else {
+                // AND-type reduces toward 0, OR-type toward 1; BUF and NOT as a one-input AND
+                int controlling = type == CompiledCircuit.OR || type == CompiledCircuit.NOR ? 1 : 0;
+                result = controlling ^ 1;
+                for (int i = from; i < to && result != controlling; i++) {
+                    int v = value[compiled.fanin[i]];
+                    if (v == controlling) {
+                        result = controlling;
+                    } else if (v == X) {
+                        result = X;
+                    }
+                }
+            }
+            if (result == X) {
+                return true;
+            }
+            return set(compiled.numInputs + g, result ^ (type & 1));
+        }
+
+        /**
+         * Implies gate inputs from a known output: all of them when the output needs every input
+         * non-controlling, and the last unknown one when only it can produce the output.
+         */
+        private boolean justify(int g) {
+            int out = value[compiled.numInputs + g];
+            if (out == X) {
+                return true;
+            }
+            byte type = compiled.gateType[g];
+            int from = compiled.faninOffset[g];
+            int to = compiled.faninOffset[g + 1];
+            out ^= type & 1;
+            int unknown = -1;
+            int unknownCount = 0;
+            if (type == CompiledCircuit.XOR || type == CompiledCircuit.XNOR) {
+                int parity = out;
+                for (int i = from; i < to; i++) {
+                    int in = compiled.fanin[i];
+                    if (value[in] == X) {
+                        unknown = in;
+                        unknownCount++;
+                    } else {
+                        parity ^= value[in];
+                    }
+                }
+                return unknownCount != 1 || set(unknown, parity);
+            }
+            int controlling = type == CompiledCircuit.OR || type == CompiledCircuit.NOR ? 1 : 0;
+            if (out != controlling) {
+                for (int i = from; i < to; i++) {
+                    if (!set(compiled.fanin[i], controlling ^ 1)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (int i = from; i < to; i++) {
+                int in = compiled.fanin[i];
+                if (value[in] == controlling) {
+                    return true;
+                }
+                if (value[in] == X) {
+                    unknown = in;
+                    unknownCount++;
+                }
+            }
+            // No input controls the gate yet: the only unknown one must
+            if (unknownCount == 0) {
+                return false;
+            }
+            return unknownCount != 1 || set(unknown, controlling);
+        }
+    }
+}
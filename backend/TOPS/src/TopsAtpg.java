@@ -0,0 +1,716 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Test pattern generator for single stuck-at faults, following the phases of the TOPS flow:
+ * fault sensitization, fault-cone tracing through the D-frontier, a decision stack with
+ * backtracking, and finally the primary-input pattern.
+ * <p>
+ * Lines carry D-algebra values from the {@link Logic} kernel: 0, 1, X, D (1 in the good machine, 0
+ * in the faulty one), D' (the reverse), and the nine-valued partial values known in one machine
+ * only. Decisions are made on primary inputs only, in the manner of PODEM:
+ * each objective (activate the fault, or push a D through a D-frontier gate) is backtraced along
+ * unassigned lines to a primary input, which is assigned and forward-implied. By default
+ * {@link Scoap} controllability orders the choices: both the frontier objective and every
+ * backtrace step take the input easiest to control to the value needed. (The classic rule of
+ * taking the hardest input when all inputs must agree backtracked more on the ISCAS circuits, and
+ * pushing the most observable D-frontier gate first aborted more faults on c7522; see
+ * {@link Guidance}.)
+ * <p>
+ * Before the search, the absolute dominators of the fault site are read from
+ * {@link CircuitDominators}. A fault effect must pass through each of them, so the inputs of
+ * their gates outside the fault cone must take non-controlling values. Any assignment
+ * contradicting one of these mandatory values is backtracked at once, even before the fault is
+ * activated.
+ * <p>
+ * With a {@link StaticLearning} table the mandatory values, fault activation and the lines learned
+ * to be constant are implied together in the good machine, directly and along the learned
+ * implications, before the search starts. A contradiction proves the fault redundant without a
+ * single decision; otherwise every implied value is mandatory as well and prunes the search.
+ * <p>
+ * Implication records every line it changes on an assignment trail. Undoing a decision pops the
+ * trail back to the mark taken before it, so a decision costs memory in proportion to the
+ * implications it made rather than a copy of every line value.
+ */
+public class TopsAtpg {
+    public static final byte UNASSIGNED = 2;
+    public static final int DEFAULT_BACKTRACK_LIMIT = 100;
+
+    public enum Status { DETECTED, REDUNDANT, ABORTED }
+
+    /**
+     * How far {@link Scoap} measures steer the search: not at all; controllability only, choosing
+     * the input to set at the D-frontier and at every backtrace step; or controllability and the
+     * observability of the D-frontier gates, pushing the most observable one first.
+     */
+    public enum Guidance { NONE, CONTROLLABILITY, FULL }
+
+    private CompiledCircuit compiled;
+    private CircuitDominators dominators;
+    private Scoap scoap;
+    private StaticLearning learning;
+    private StaticLearning.Implication necessary;
+    private Guidance guidance = Guidance.CONTROLLABILITY;
+    private int backtrackLimit = DEFAULT_BACKTRACK_LIMIT;
+    private byte[] value;
+
+    // Fault under test
+    private int faultLine;
+    private int faultGate;
+    private int stuckAt;
+
+    // Assignment trail: line and the value it had before
+    private int[] trailLine;
+    private byte[] trailOld;
+    private int trailSize;
+
+    // Decision stack: primary input, trail mark before the decision, and whether it was flipped
+    private int[] decisionInput;
+    private int[] decisionMark;
+    private boolean[] decisionFlipped;
+    private int decisionCount;
+
+    // Implication: level buckets as in the event-driven engine
+    private int[] queue;
+    private int[] levelFill;
+    private int[] levelStamp;
+    private int[] gateStamp;
+    private int epoch;
+
+    // Non-controlling values required on the side inputs of the dominator gates
+    private int[] mandatoryLine;
+    private byte[] mandatoryValue;
+    private int mandatoryCount;
+    private int[] faultConeStamp;
+    private int faultEpoch;
+
+    // Fault-cone tracing
+    private int[] frontier;
+    private int frontierSize;
+    private int[] coneStack;
+    private int[] coneStamp;
+    private int[] xPathStamp;
+    private boolean[] xPath;
+    private int traceEpoch;
+
+    private long totalBacktracks;
+    private long totalDecisions;
+
+    public TopsAtpg(Circuit circuit) {
+        this(CompiledCircuit.compile(circuit));
+    }
+
+    public TopsAtpg(CompiledCircuit compiled) {
+        this.compiled = compiled;
+        this.dominators = compiled.dominators();
+        this.scoap = compiled.scoap();
+        useLearning(compiled.staticLearning());
+        int numLines = compiled.getNumLines();
+        int numGates = compiled.getNumGates();
+        this.value = new byte[numLines];
+        // Values only gain knowledge, one machine at a time, so a line changes at most twice
+        this.trailLine = new int[2 * numLines];
+        this.trailOld = new byte[2 * numLines];
+        this.decisionInput = new int[compiled.getNumInputs()];
+        this.decisionMark = new int[compiled.getNumInputs()];
+        this.decisionFlipped = new boolean[compiled.getNumInputs()];
+        this.queue = new int[numGates];
+        this.levelFill = new int[compiled.getNumLevels() + 1];
+        this.levelStamp = new int[compiled.getNumLevels() + 1];
+        this.gateStamp = new int[numGates];
+        this.frontier = new int[numGates];
+        this.coneStack = new int[numGates];
+        this.coneStamp = new int[numGates];
+        this.xPathStamp = new int[numLines];
+        this.xPath = new boolean[numLines];
+        this.mandatoryLine = new int[Math.max(compiled.fanin.length, numLines)];
+        this.mandatoryValue = new byte[mandatoryLine.length];
+        this.faultConeStamp = new int[numLines];
+    }
+
+    /**
+     * Sets the number of backtracks after which a fault is given up as aborted.
+     */
+    public void setBacktrackLimit(int backtrackLimit) {
+        if (backtrackLimit < 0) {
+            throw new IllegalArgumentException("Backtrack limit must not be negative: " + backtrackLimit);
+        }
+        this.backtrackLimit = backtrackLimit;
+    }
+
+    /**
+     * Sets how testability measures order the search.
+     */
+    public void setGuidance(Guidance guidance) {
+        this.guidance = Objects.requireNonNull(guidance);
+    }
+
+    public Guidance getGuidance() {
+        return guidance;
+    }
+
+    /**
+     * Sets the learned implications used to extend the mandatory values, or null to use the
+     * dominators alone.
+     */
+    public void setStaticLearning(StaticLearning learning) {
+        useLearning(learning);
+    }
+
+    private void useLearning(StaticLearning learning) {
+        if (learning != null && learning.getNumLines() != compiled.getNumLines()) {
+            throw new IllegalArgumentException("Implication table does not match the circuit");
+        }
+        this.learning = learning;
+        this.necessary = learning == null ? null : new StaticLearning.Implication(compiled, learning);
+    }
+
+    /**
+     * Generates a test for a stem or fanout-branch stuck-at fault.
+     *
+     * @param fault The target fault.
+     * @return The outcome, with the pattern when the fault is detected.
+     */
+    public Result generate(Fault fault) {
+        if (fault.stuckAtValue != 0 && fault.stuckAtValue != 1) {
+            throw new IllegalArgumentException("Invalid stuck-at value for fault: " + fault);
+        }
+        return generate(compiled.lineId(fault.node), compiled.branchGate(fault), fault.stuckAtValue);
+    }
+
+    /**
+     * Generates a test for a fault given by line id.
+     *
+     * @param line The faulty line.
+     * @param gate The gate of a fanout-branch fault, or -1 for a stem fault.
+     * @param sa   The stuck value.
+     */
+    public Result generate(int line, int gate, int sa) {
+        this.faultLine = line;
+        this.faultGate = gate;
+        this.stuckAt = sa;
+        reset();
+
+        int site = gate >= 0 ? compiled.numInputs + gate : line;
+        if (!dominators.reachesOutput(site)) {
+            return finish(Status.REDUNDANT, 0, 0);
+        }
+        collectMandatoryValues(site);
+        if (!implyMandatoryValues()) {
+            return finish(Status.REDUNDANT, 0, 0);
+        }
+
+        int backtracks = 0;
+        int decisions = 0;
+        while (true) {
+            if (testFound()) {
+                return finish(Status.DETECTED, backtracks, decisions);
+            }
+            int objective = objective();
+            if (objective >= 0) {
+                // Backtrace the objective to an unassigned primary input and decide it
+                int input = backtrace(objective);
+                decide(input >>> 1, input & 1);
+                decisions++;
+                continue;
+            }
+            // No way forward under the current assignment
+            if (backtracks == backtrackLimit) {
+                return finish(Status.ABORTED, backtracks, decisions);
+            }
+            backtracks++;
+            if (!backtrack()) {
+                return finish(Status.REDUNDANT, backtracks, decisions);
+            }
+        }
+    }
+
+    public long getTotalBacktracks() {
+        return totalBacktracks;
+    }
+
+    public long getTotalDecisions() {
+        return totalDecisions;
+    }
+
+    /**
+     * Returns the current {@link Logic} value of a line.
+     */
+    public byte value(int line) {
+        return value[line];
+    }
+
+    private void reset() {
+        Arrays.fill(value, Logic.X);
+        trailSize = 0;
+        decisionCount = 0;
+        // A stuck primary input already shows its faulty value
+        if (faultGate < 0 && faultLine < compiled.numInputs) {
+            value[faultLine] = Logic.stuck(Logic.X, stuckAt);
+        }
+    }
+
+    private Result finish(Status status, int backtracks, int decisions) {
+        totalBacktracks += backtracks;
+        totalDecisions += decisions;
+        byte[] pattern = null;
+        if (status == Status.DETECTED) {
+            pattern = new byte[compiled.numInputs];
+            for (int i = 0; i < pattern.length; i++) {
+                pattern[i] = (byte) Logic.good(value[i]);
+            }
+        }
+        return new Result(status, pattern, backtracks, decisions);
+    }
+
+    private boolean testFound() {
+        for (int po : compiled.primaryOutputs) {
+            if (Logic.isError(value[po])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks the next objective: activate the fault while its site is unassigned, otherwise set a
+     * non-controlling value on an unassigned input of a D-frontier gate with an X-path to an
+     * output. Inputs unknown in the good machine are preferred; an input known there but still X
+     * in the faulty machine is justified in the faulty machine.
+     *
+     * @return {@code 4 * line + 2 * machine + value}, machine 1 being the faulty one, or -1 when the
+     * current assignment cannot lead to a test.
+     */
+    private int objective() {
+        for (int k = 0; k < mandatoryCount; k++) {
+            int v = Logic.good(value[mandatoryLine[k]]);
+            if (v != UNASSIGNED && v != mandatoryValue[k]) {
+                // A dominator is blocked: no path to an output is left
+                return -1;
+            }
+        }
+        int site = Logic.good(value[faultLine]);
+        if (site == UNASSIGNED) {
+            return 4 * faultLine + (stuckAt ^ 1);
+        }
+        if (site == stuckAt) {
+            // The fault cannot be activated any more
+            return -1;
+        }
+
+        traceFaultCone();
+        if (guidance == Guidance.NONE) {
+            // The first frontier gate with a side input left to set
+            int fallback = -1;
+            for (int k = 0; k < frontierSize; k++) {
+                int g = frontier[k];
+                int nonControlling = nonControllingValue(g);
+                for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                    int in = compiled.fanin[i];
+                    if (Logic.good(value[in]) == UNASSIGNED) {
+                        return 4 * in + nonControlling;
+                    }
+                    if (fallback < 0 && component(g, in, 1) == UNASSIGNED) {
+                        fallback = 4 * in + 2 + nonControlling;
+                    }
+                }
+            }
+            return fallback;
+        }
+
+        int best = -1;
+        for (int k = 0; k < frontierSize; k++) {
+            int g = frontier[k];
+            if (best < 0 || guidance == Guidance.FULL
+                    && scoap.co[compiled.numInputs + g] < scoap.co[compiled.numInputs + best]) {
+                best = g;
+            }
+        }
+        if (best < 0) {
+            return -1;
+        }
+
+        // Every side input must become non-controlling: start with the easiest
+        int nonControlling = nonControllingValue(best);
+        int objective = -1;
+        int fallback = -1;
+        int easiest = -1;
+        for (int i = compiled.faninOffset[best]; i < compiled.faninOffset[best + 1]; i++) {
+            int in = compiled.fanin[i];
+            if (Logic.good(value[in]) == UNASSIGNED) {
+                int cost = scoap.cc(in, nonControlling);
+                if (easiest < 0 || cost < easiest) {
+                    easiest = cost;
+                    objective = 4 * in + nonControlling;
+                }
+            } else if (fallback < 0 && component(best, in, 1) == UNASSIGNED) {
+                fallback = 4 * in + 2 + nonControlling;
+            }
+        }
+        return objective >= 0 ? objective : fallback;
+    }
+
+    /**
+     * Lists the non-controlling values needed on the inputs, outside the fault cone, of the gates
+     * every fault effect must pass: the gate of a branch fault and the gates driving the absolute
+     * dominators of the fault site.
+     */
+    private void collectMandatoryValues(int site) {
+        faultEpoch++;
+        int top = 0;
+        faultConeStamp[faultLine] = faultEpoch;
+        coneStack[top++] = faultLine;
+        while (top > 0) {
+            int line = coneStack[--top];
+            for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+                int out = compiled.numInputs + compiled.fanout[i];
+                if (faultConeStamp[out] != faultEpoch) {
+                    faultConeStamp[out] = faultEpoch;
+                    coneStack[top++] = out;
+                }
+            }
+        }
+
+        mandatoryCount = 0;
+        if (faultGate >= 0) {
+            addSideInputs(faultGate);
+        }
+        for (int d : dominators.getDominators(site)) {
+            addSideInputs(d - compiled.numInputs);
+        }
+    }
+
+    /**
+     * Extends the mandatory values with everything they imply in the good machine, together with
+     * fault activation and the constant lines.
+     *
+     * @return False if they contradict each other, so that no test exists.
+     */
+    private boolean implyMandatoryValues() {
+        if (necessary == null) {
+            return true;
+        }
+        necessary.clear();
+        boolean consistent = true;
+        for (int line : learning.constantLines) {
+            consistent &= necessary.imply(line, learning.constant[line]);
+        }
+        consistent &= necessary.imply(faultLine, stuckAt ^ 1);
+        for (int k = 0; consistent && k < mandatoryCount; k++) {
+            consistent = necessary.imply(mandatoryLine[k], mandatoryValue[k]);
+        }
+        if (!consistent) {
+            return false;
+        }
+        mandatoryCount = necessary.size();
+        for (int k = 0; k < mandatoryCount; k++) {
+            mandatoryLine[k] = necessary.line(k);
+            mandatoryValue[k] = (byte) necessary.value(mandatoryLine[k]);
+        }
+        return true;
+    }
+
+    private void addSideInputs(int g) {
+        byte type = compiled.gateType[g];
+        if (type == CompiledCircuit.XOR || type == CompiledCircuit.XNOR
+                || compiled.faninOffset[g + 1] - compiled.faninOffset[g] < 2) {
+            return;
+        }
+        for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+            int in = compiled.fanin[i];
+            if (faultConeStamp[in] != faultEpoch) {
+                mandatoryLine[mandatoryCount] = in;
+                mandatoryValue[mandatoryCount] = (byte) nonControllingValue(g);
+                mandatoryCount++;
+            }
+        }
+    }
+
+    /**
+     * Collects the D-frontier by tracing the fault cone forward from the fault site through lines
+     * carrying D or D': gates whose output is still X and that have an X-path to a primary output.
+     */
+    private void traceFaultCone() {
+        traceEpoch++;
+        frontierSize = 0;
+        int top = 0;
+        if (faultGate >= 0) {
+            coneStack[top++] = faultGate;
+            coneStamp[faultGate] = traceEpoch;
+        } else if (Logic.isError(value[faultLine])) {
+            top = pushReaders(faultLine, top);
+        }
+        while (top > 0) {
+            int g = coneStack[--top];
+            int out = compiled.numInputs + g;
+            if (Logic.isError(value[out])) {
+                top = pushReaders(out, top);
+            } else if (Logic.isOpen(value[out]) && xPathToOutput(out)) {
+                frontier[frontierSize++] = g;
+            }
+        }
+    }
+
+    private int pushReaders(int line, int top) {
+        for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+            int r = compiled.fanout[i];
+            if (coneStamp[r] != traceEpoch) {
+                coneStamp[r] = traceEpoch;
+                coneStack[top++] = r;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Returns true if a path of X lines leads from a line to a primary output, memoized for the
+     * current trace.
+     */
+    private boolean xPathToOutput(int line) {
+        if (xPathStamp[line] == traceEpoch) {
+            return xPath[line];
+        }
+        boolean found = compiled.isOutput[line];
+        for (int i = compiled.fanoutOffset[line]; !found && i < compiled.fanoutOffset[line + 1]; i++) {
+            int out = compiled.numInputs + compiled.fanout[i];
+            found = Logic.isOpen(value[out]) && xPathToOutput(out);
+        }
+        xPathStamp[line] = traceEpoch;
+        xPath[line] = found;
+        return found;
+    }
+
+    /**
+     * Walks an objective back to an unassigned primary input through lines that are X in the
+     * objective's machine, adjusting the wanted value for inversions.
+     *
+     * @return {@code 2 * input + value}.
+     */
+    private int backtrace(int objective) {
+        int line = objective >>> 2;
+        int machine = (objective >>> 1) & 1;
+        int wanted = objective & 1;
+        while (line >= compiled.numInputs) {
+            int g = line - compiled.numInputs;
+            byte type = compiled.gateType[g];
+            wanted ^= type & 1;
+            if (type == CompiledCircuit.XOR || type == CompiledCircuit.XNOR) {
+                // Remaining X inputs are taken as 0
+                for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                    int v = component(g, compiled.fanin[i], machine);
+                    if (v != UNASSIGNED) {
+                        wanted ^= v;
+                    }
+                }
+            }
+            // Follow the unassigned input cheapest to set to the wanted value
+            int next = -1;
+            int bestCost = 0;
+            for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                int in = compiled.fanin[i];
+                if (component(g, in, machine) != UNASSIGNED) {
+                    continue;
+                }
+                int cost = guidance == Guidance.NONE ? 0 : scoap.cc(in, wanted);
+                if (next < 0 || cost < bestCost) {
+                    next = in;
+                    bestCost = cost;
+                }
+            }
+            line = next;
+        }
+        return 2 * line + wanted;
+    }
+
+    /**
+     * Returns the bit of one machine seen by a gate on an input pin: 0, 1 or 2 for X.
+     */
+    private int component(int g, int in, int machine) {
+        if (machine == 0) {
+            return Logic.good(value[in]);
+        }
+        return g == faultGate && in == faultLine ? stuckAt : Logic.faulty(value[in]);
+    }
+
+    private void decide(int input, int v) {
+        decisionInput[decisionCount] = input;
+        decisionMark[decisionCount] = trailSize;
+        decisionFlipped[decisionCount] = false;
+        decisionCount++;
+        assign(input, v);
+    }
+
+    /**
+     * Undoes decisions until one can be flipped to its other value.
+     *
+     * @return False if every decision has been tried both ways.
+     */
+    private boolean backtrack() {
+        while (decisionCount > 0) {
+            int d = decisionCount - 1;
+            int input = decisionInput[d];
+            int tried = Logic.good(value[input]);
+            undo(decisionMark[d]);
+            if (!decisionFlipped[d]) {
+                decisionFlipped[d] = true;
+                assign(input, tried ^ 1);
+                return true;
+            }
+            decisionCount--;
+        }
+        return false;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            value[trailLine[trailSize]] = trailOld[trailSize];
+        }
+    }
+
+    private void set(int line, byte v) {
+        trailLine[trailSize] = line;
+        trailOld[trailSize] = value[line];
+        trailSize++;
+        value[line] = v;
+    }
+
+    /**
+     * Assigns a primary input and forward-implies it in level order.
+     */
+    private void assign(int input, int v) {
+        int faulty = faultGate < 0 && faultLine == input ? stuckAt : v;
+        set(input, Logic.of(v, faulty));
+
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            epoch = 1;
+            Arrays.fill(gateStamp, 0);
+            Arrays.fill(levelStamp, 0);
+        }
+        int pending = schedule(input);
+        int numLevels = compiled.getNumLevels();
+        for (int level = 1; level <= numLevels && pending > 0; level++) {
+            if (levelStamp[level] != epoch) {
+                continue;
+            }
+            int base = compiled.levelOffset[level - 1];
+            for (int k = 0; k < levelFill[level]; k++) {
+                int g = queue[base + k];
+                int out = compiled.numInputs + g;
+                pending--;
+                byte next = evaluate(g);
+                if (next != value[out]) {
+                    set(out, next);
+                    pending += schedule(out);
+                }
+            }
+        }
+    }
+
+    private int schedule(int line) {
+        int scheduled = 0;
+        for (int i = compiled.fanoutOffset[line]; i < compiled.fanoutOffset[line + 1]; i++) {
+            int g = compiled.fanout[i];
+            if (gateStamp[g] == epoch) {
+                continue;
+            }
+            gateStamp[g] = epoch;
+            int level = compiled.gateLevel[g];
+            if (levelStamp[level] != epoch) {
+                levelStamp[level] = epoch;
+                levelFill[level] = 0;
+            }
+            queue[compiled.levelOffset[level - 1] + levelFill[level]++] = g;
+            scheduled++;
+        }
+        return scheduled;
+    }
+
+    /**
+     * Evaluates a gate in both machines, applying the fault where it sits.
+     */
+    private byte evaluate(int g) {
+        int v = g == faultGate
+                ? Logic.evaluate(compiled, g, value, faultLine, stuckAt)
+                : Logic.evaluate(compiled, g, value);
+        if (faultGate < 0 && compiled.numInputs + g == faultLine) {
+            v = Logic.stuck(v, stuckAt);
+        }
+        return (byte) v;
+    }
+
+    private int nonControllingValue(int g) {
+        byte type = compiled.gateType[g];
+        if (type == CompiledCircuit.AND || type == CompiledCircuit.NAND) {
+            return 1;
+        }
+        // OR-type inputs want 0, and 0 is as good as any for XOR
+        return 0;
+    }
+
+    /**
+     * Outcome of test generation for one fault.
+     */
+    public static class Result {
+        private Status status;
+        private byte[] pattern;
+        private int backtracks;
+        private int decisions;
+
+        Result(Status status, byte[] pattern, int backtracks, int decisions) {
+            this.status = status;
+            this.pattern = pattern;
+            this.backtracks = backtracks;
+            this.decisions = decisions;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the test, one value per primary input in compiled order: 0, 1, or {@link #UNASSIGNED}
+         * for an input the test leaves free. Null unless the fault was detected.
+         */
+        public byte[] getPattern() {
+            return pattern;
+        }
+
+        public int getBacktracks() {
+            return backtracks;
+        }
+
+        public int getDecisions() {
+            return decisions;
+        }
+    }
+
+    /**
+     * Generates tests for the collapsed fault list of a benchmark and reports the outcome.
+     */
+    public static void main(String[] args) {
+        try {
+            String benchFilePath = args.length > 0 ? args[0] : "C:\\Users\\User\\Desktop\\UNI\\2024Fall\\COE529\\Project\\tops-algorithm\\backend\\TOPS\\src\\bench\\c499.bench";
+            CompiledCircuit compiled = NetlistCache.load(benchFilePath);
+            NetlistCache.loadLearning(benchFilePath, compiled);
+            List<Fault> faults = new FaultListBuilder(compiled).buildCollapsed();
+            TopsAtpg atpg = new TopsAtpg(compiled);
+
+            Map<Status, Integer> counts = new EnumMap<>(Status.class);
+            long startTime = System.currentTimeMillis();
+            for (Fault fault : faults) {
+                counts.merge(atpg.generate(fault).getStatus(), 1, Integer::sum);
+            }
+            long atpgTime = System.currentTimeMillis() - startTime;
+
+            System.out.println(benchFilePath + ": " + faults.size() + " faults in " + atpgTime + " ms");
+            for (Status status : Status.values()) {
+                System.out.println(status + ": " + counts.getOrDefault(status, 0));
+            }
+            System.out.println("Decisions: " + atpg.getTotalDecisions() + ", backtracks: " + atpg.getTotalBacktracks());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
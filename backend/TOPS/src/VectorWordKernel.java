@@ -0,0 +1,56 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link WideWordKernel} on the Vector API: each line is one {@link LongVector} of the preferred
+ * species, 256 patterns on AVX2 and 512 on AVX-512. Only loaded through
+ * {@link WideWordKernel#create}, which falls back to the scalar kernel when
+ * {@code jdk.incubator.vector} is missing.
+ */
+class VectorWordKernel extends WideWordKernel {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    VectorWordKernel(CompiledCircuit compiled) {
+        super(compiled, SPECIES.length());
+    }
+
+    @Override
+    public String getName() {
+        return "Vector API, " + SPECIES.vectorBitSize() + " bits";
+    }
+
+    @Override
+    public void simulate(long[] values, int firstGate) {
+        int words = wordsPerLine;
+        byte[] gateType = compiled.gateType;
+        int[] faninOffset = compiled.faninOffset;
+        int[] fanin = compiled.fanin;
+        for (int g = firstGate; g < compiled.numGates; g++) {
+            int from = faninOffset[g];
+            int to = faninOffset[g + 1];
+            LongVector acc = LongVector.fromArray(SPECIES, values, fanin[from] * words);
+            switch (gateType[g] & ~1) {
+                case CompiledCircuit.AND:
+                    for (int i = from + 1; i < to; i++) {
+                        acc = acc.and(LongVector.fromArray(SPECIES, values, fanin[i] * words));
+                    }
+                    break;
+                case CompiledCircuit.OR:
+                    for (int i = from + 1; i < to; i++) {
+                        acc = acc.or(LongVector.fromArray(SPECIES, values, fanin[i] * words));
+                    }
+                    break;
+                default: // XOR, BUF, NOT
+                    for (int i = from + 1; i < to; i++) {
+                        acc = acc.lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, values, fanin[i] * words));
+                    }
+                    break;
+            }
+            if ((gateType[g] & 1) != 0) {
+                acc = acc.not();
+            }
+            acc.intoArray(values, (compiled.numInputs + g) * words);
+        }
+    }
+}
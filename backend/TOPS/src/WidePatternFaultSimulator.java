@@ -0,0 +1,128 @@
+import java.util.*;
+
+/**
+ * PPSFP fault simulation over a {@link WideWordKernel}: every pass simulates
+ * {@code 64 * wordsPerLine} patterns, 512 with one AVX-512 vector per line, instead of the 64 of
+ * {@link PatternParallelFaultSimulator}. Fault injection and dropping work as there, with the
+ * activation and output checks done over all words of a pass.
+ * <p>
+ * Wider passes cut the per-fault overhead of the narrow simulator eightfold on large random
+ * pattern sets, but a fault is only dropped at the end of a pass, so sets much smaller than a
+ * pass gain nothing.
+ */
+public class WidePatternFaultSimulator implements FaultSimulationEngine {
+    private CompiledCircuit compiled;
+    private WideWordKernel kernel;
+    private int words;
+    private long[] good;
+    private long[] faulty;
+    private long[] mask;
+    private long[] pinned;
+
+    public WidePatternFaultSimulator(CompiledCircuit compiled) {
+        this(compiled, WideWordKernel.create(compiled));
+    }
+
+    public WidePatternFaultSimulator(CompiledCircuit compiled, WideWordKernel kernel) {
+        this.compiled = compiled;
+        this.kernel = kernel;
+        this.words = kernel.getWordsPerLine();
+        this.good = kernel.newValues();
+        this.faulty = kernel.newValues();
+        this.mask = new long[words];
+        this.pinned = new long[words];
+    }
+
+    public WideWordKernel getKernel() {
+        return kernel;
+    }
+
+    @Override
+    public double faultSimulation(List<Fault> faults, List<Map<String, Integer>> testVectors) {
+        return faultSimulation(faults, PatternSet.fromMaps(compiled.getPrimaryInputNames(), testVectors));
+    }
+
+    /**
+     * Simulates a packed pattern set, one pass of {@code 64 * wordsPerLine} patterns at a time.
+     *
+     * @param faults   The fault list.
+     * @param patterns Patterns whose header covers every primary input.
+     * @return The fault coverage.
+     */
+    public double faultSimulation(List<Fault> faults, PatternSet patterns) {
+        FaultIndex index = new FaultIndex(compiled, faults);
+        boolean[] detected = new boolean[index.size()];
+        int[] remaining = PatternParallelFaultSimulator.allFaults(index);
+        int remainingCount = remaining.length;
+        int[] columnOf = patterns.columnsFor(compiled);
+
+        for (int first = 0; first < patterns.getNumBlocks() && remainingCount > 0; first += words) {
+            loadPass(patterns, columnOf, first);
+            kernel.simulate(good, 0);
+            remainingCount = PatternParallelFaultSimulator.dropDetected(index, remaining, remainingCount, detected,
+                    this::detectsInPass);
+        }
+        return PatternParallelFaultSimulator.coverage(index, detected, faults.size());
+    }
+
+    /**
+     * Loads the 64-pattern blocks {@code first .. first + words - 1} into the primary inputs and
+     * sets the mask of the patterns they hold.
+     */
+    private void loadPass(PatternSet patterns, int[] columnOf, int first) {
+        int numBlocks = patterns.getNumBlocks();
+        for (int w = 0; w < words; w++) {
+            int block = first + w;
+            int count = Math.max(0, Math.min(64, patterns.size() - 64 * block));
+            mask[w] = count == 64 ? -1L : (1L << count) - 1;
+            for (int i = 0; i < columnOf.length; i++) {
+                good[i * words + w] = block < numBlocks ? patterns.word(columnOf[i], block) : 0L;
+            }
+        }
+    }
+
+    /**
+     * Injects a fault into the current pass and propagates it from the first gate it can change,
+     * as {@link PatternParallelFaultSimulator} does for one word per line.
+     *
+     * @param faultLine The faulty line id.
+     * @param faultGate The gate of a fanout-branch fault, or -1 for a stem fault.
+     * @param stuckAt   The stuck value.
+     * @return True if any pattern of the pass detects the fault.
+     */
+    private boolean detectsInPass(int faultLine, int faultGate, int stuckAt) {
+        long stuckWord = stuckAt == 0 ? 0L : -1L;
+
+        // No pattern in the pass activates the fault
+        long activated = 0;
+        for (int w = 0; w < words; w++) {
+            activated |= (good[faultLine * words + w] ^ stuckWord) & mask[w];
+        }
+        if (activated == 0) {
+            return false;
+        }
+
+        int firstGate;
+        if (faultGate >= 0) {
+            System.arraycopy(good, 0, faulty, 0, (compiled.numInputs + faultGate) * words);
+            kernel.evaluateWithPin(faultGate, faulty, faultLine, stuckWord, pinned);
+            System.arraycopy(pinned, 0, faulty, (compiled.numInputs + faultGate) * words, words);
+            firstGate = faultGate + 1;
+        } else {
+            firstGate = faultLine < compiled.numInputs ? 0 : compiled.driver(faultLine) + 1;
+            System.arraycopy(good, 0, faulty, 0, (compiled.numInputs + firstGate) * words);
+            Arrays.fill(faulty, faultLine * words, (faultLine + 1) * words, stuckWord);
+        }
+
+        kernel.simulate(faulty, firstGate);
+
+        for (int po : compiled.primaryOutputs) {
+            for (int w = po * words; w < (po + 1) * words; w++) {
+                if (((good[w] ^ faulty[w]) & mask[w - po * words]) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Gate evaluation over several 64-bit words per line, so one pass over the netlist simulates
+ * {@code 64 * getWordsPerLine()} patterns.
+ * <p>
+ * Values are laid out line by line: line {@code l} holds words
+ * {@code [l * wordsPerLine, (l + 1) * wordsPerLine)}. The width is the preferred vector length, so
+ * every line starts on a vector boundary relative to the array and is read and written with one
+ * whole-vector load or store.
+ * <p>
+ * {@link #create} uses {@code VectorWordKernel}, built on the incubating Vector API, when the
+ * {@code jdk.incubator.vector} module is present at run time ({@code --add-modules
+ * jdk.incubator.vector}). That class is only reached by reflection, so a JVM without the module
+ * gets the scalar kernel, whose inner loops over the words of a line are left to C2's
+ * auto-vectorizer.
+ */
+public abstract class WideWordKernel {
+    public static final int DEFAULT_WORDS_PER_LINE = 8;  // one 512-bit vector
+
+    final CompiledCircuit compiled;
+    final int wordsPerLine;
+
+    WideWordKernel(CompiledCircuit compiled, int wordsPerLine) {
+        if (wordsPerLine < 1) {
+            throw new IllegalArgumentException("Words per line must be positive: " + wordsPerLine);
+        }
+        this.compiled = compiled;
+        this.wordsPerLine = wordsPerLine;
+    }
+
+    /**
+     * Returns the Vector API kernel at the preferred species when the module is available, and
+     * the scalar kernel with {@link #DEFAULT_WORDS_PER_LINE} words per line otherwise.
+     *
+     * @param compiled The compiled circuit.
+     * @return The kernel.
+     */
+    public static WideWordKernel create(CompiledCircuit compiled) {
+        try {
+            return (WideWordKernel) Class.forName("VectorWordKernel")
+                    .getDeclaredConstructor(CompiledCircuit.class)
+                    .newInstance(compiled);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return scalar(compiled, DEFAULT_WORDS_PER_LINE);
+        }
+    }
+
+    /**
+     * Returns the scalar kernel.
+     *
+     * @param compiled     The compiled circuit.
+     * @param wordsPerLine Words per line.
+     * @return The kernel.
+     */
+    public static WideWordKernel scalar(CompiledCircuit compiled, int wordsPerLine) {
+        return new Scalar(compiled, wordsPerLine);
+    }
+
+    public int getWordsPerLine() {
+        return wordsPerLine;
+    }
+
+    /**
+     * Returns the number of patterns simulated per pass.
+     */
+    public int getPatternsPerPass() {
+        return 64 * wordsPerLine;
+    }
+
+    /**
+     * Returns a short description of the implementation, for reports.
+     */
+    public abstract String getName();
+
+    /**
+     * Allocates a value array for every line of the circuit.
+     */
+    public long[] newValues() {
+        return new long[compiled.getNumLines() * wordsPerLine];
+    }
+
+    /**
+     * Re-evaluates every gate from {@code firstGate} onward.
+     *
+     * @param values    Line words in the layout of {@link #newValues()}; the words of every line
+     *                  before the first gate's output must be set.
+     * @param firstGate The first gate to evaluate.
+     */
+    public abstract void simulate(long[] values, int firstGate);
+
+    /**
+     * Evaluates one gate with the words of one of its input lines replaced, for a fault on a
+     * fanout branch.
+     *
+     * @param g        The gate index.
+     * @param values   Line words.
+     * @param pinLine  The input line whose value is replaced.
+     * @param pinWord  The word every pattern of that input sees.
+     * @param out      Receives the output words of the gate.
+     */
+    void evaluateWithPin(int g, long[] values, int pinLine, long pinWord, long[] out) {
+        int type = compiled.gateType[g] & ~1;
+        long invert = (compiled.gateType[g] & 1) == 0 ? 0L : -1L;
+        for (int w = 0; w < wordsPerLine; w++) {
+            long acc = type == CompiledCircuit.AND ? -1L : 0L;
+            for (int i = compiled.faninOffset[g]; i < compiled.faninOffset[g + 1]; i++) {
+                int in = compiled.fanin[i];
+                long v = in == pinLine ? pinWord : values[in * wordsPerLine + w];
+                if (type == CompiledCircuit.AND) {
+                    acc &= v;
+                } else if (type == CompiledCircuit.OR) {
+                    acc |= v;
+                } else {
+                    acc ^= v;
+                }
+            }
+            out[w] = acc ^ invert;
+        }
+    }
+
+    /**
+     * Plain {@code long} loops over the words of a line.
+     */
+    private static class Scalar extends WideWordKernel {
+        Scalar(CompiledCircuit compiled, int wordsPerLine) {
+            super(compiled, wordsPerLine);
+        }
+
+        @Override
+        public String getName() {
+            return "scalar, " + wordsPerLine + " words";
+        }
+
+        @Override
+        public void simulate(long[] values, int firstGate) {
+            int words = wordsPerLine;
+            byte[] gateType = compiled.gateType;
+            int[] faninOffset = compiled.faninOffset;
+            int[] fanin = compiled.fanin;
+            for (int g = firstGate; g < compiled.numGates; g++) {
+                int out = (compiled.numInputs + g) * words;
+                int from = faninOffset[g];
+                int to = faninOffset[g + 1];
+                System.arraycopy(values, fanin[from] * words, values, out, words);
+                switch (gateType[g] & ~1) {
+                    case CompiledCircuit.AND:
+                        for (int i = from + 1; i < to; i++) {
+                            int in = fanin[i] * words;
+                            for (int w = 0; w < words; w++) {
+                                values[out + w] &= values[in + w];
+                            }
+                        }
+                        break;
+                    case CompiledCircuit.OR:
+                        for (int i = from + 1; i < to; i++) {
+                            int in = fanin[i] * words;
+                            for (int w = 0; w < words; w++) {
+                                values[out + w] |= values[in + w];
+                            }
+                        }
+                        break;
+                    default: // XOR, BUF, NOT
+                        for (int i = from + 1; i < to; i++) {
+                            int in = fanin[i] * words;
+                            for (int w = 0; w < words; w++) {
+                                values[out + w] ^= values[in + w];
+                            }
+                        }
+                        break;
+                }
+                if ((gateType[g] & 1) != 0) {
+                    for (int w = 0; w < words; w++) {
+                        values[out + w] = ~values[out + w];
+                    }
+                }
+            }
+        }
+    }
+}